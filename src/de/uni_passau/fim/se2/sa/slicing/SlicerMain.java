@@ -7,14 +7,26 @@
 import de.uni_passau.fim.se2.sa.slicing.cfg.LocalVariableTable;
 import de.uni_passau.fim.se2.sa.slicing.cfg.Node;
 import de.uni_passau.fim.se2.sa.slicing.cfg.ProgramGraph;
+import de.uni_passau.fim.se2.sa.slicing.coverage.CoverageSnapshot;
 import de.uni_passau.fim.se2.sa.slicing.coverage.CoverageTracker;
+import de.uni_passau.fim.se2.sa.slicing.coverage.ExecutionTrace;
+import de.uni_passau.fim.se2.sa.slicing.coverage.TraceRecorder;
+import de.uni_passau.fim.se2.sa.slicing.graph.OnlineDynamicSlice;
 import de.uni_passau.fim.se2.sa.slicing.graph.ProgramDependenceGraph;
+import de.uni_passau.fim.se2.sa.slicing.graph.SliceCache;
+import de.uni_passau.fim.se2.sa.slicing.graph.SliceOptions;
+import de.uni_passau.fim.se2.sa.slicing.graph.SliceResult;
 import de.uni_passau.fim.se2.sa.slicing.output.ByteCodeExtractor;
 import de.uni_passau.fim.se2.sa.slicing.output.Extractor;
 import de.uni_passau.fim.se2.sa.slicing.output.SourceLineExtractor;
 import de.uni_passau.fim.se2.sa.slicing.output.XMLFileExtractor;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -50,9 +62,20 @@ public final class SlicerMain implements Callable<Integer> {
   private Path targetFilePath;
   private boolean xmlExtraction;
   private Map<String, LocalVariableTable> localVariableTables;
+  private ClassNode classNode;
   private MethodNode methodNode;
+  private Node programLocation;
   private boolean dynamicSlicing;
   private String testCase;
+  private boolean allTests;
+  private boolean parallel;
+  /** The hit counts of the sliced nodes per executed test, if the agent counts hits. */
+  private final Map<String, Map<Node, Integer>> hitCounts = new HashMap<>();
+  private boolean thinSlicing;
+  private String threadName;
+  private int maxDistance = Integer.MAX_VALUE;
+  private int maxNodes = Integer.MAX_VALUE;
+  private long sliceCacheWords;
 
   public static void main(String[] pArgs) {
     new CommandLine(new SlicerMain()).execute(pArgs);
@@ -67,28 +90,40 @@ public Integer call() throws Exception {
   }
 
   private void run() throws IOException {
-    if (dynamicSlicing) {
+    if (dynamicSlicing || allTests) {
       if (!SlicerAgent.wasInvoked()) {
         throw new IllegalStateException(
             "The SlicerAgent must have been invoked for dynamic slicing");
       }
+    }
 
-      SlicerUtil.executeTest(className, testCase);
+    Preconditions.checkState(!parallel || allTests, "Only all tests can be executed concurrently");
+    Preconditions.checkState(
+        sliceCacheWords == 0 || allTests, "Only the slices of all tests are cached");
+    if (allTests) {
+      Preconditions.checkState(!dynamicSlicing, "Either a single test or all tests can be executed");
+      final StringBuilder result = new StringBuilder();
+      for (Map.Entry<String, Set<Node>> slice : executeAllTests().entrySet()) {
+        result.append("// ").append(slice.getKey()).append(System.lineSeparator());
+        result
+            .append(createExtractor(slice.getValue(), slice.getKey()).extract())
+            .append(System.lineSeparator());
+      }
+      if (targetFilePath == null) {
+        System.out.print(result);
+      } else {
+        Files.writeString(targetFilePath, result);
+      }
+      reportSampling();
+      return;
     }
 
     final Set<Node> slice = executeSlicing();
-
-    final Extractor extractor;
-    if (sourceFilePath != null) {
-      extractor =
-          new SourceLineExtractor(
-              sourceFilePath, localVariableTables, className, methodNode, slice);
-    } else if (xmlExtraction) {
-      extractor = new XMLFileExtractor(slice);
-    } else {
-      extractor = new ByteCodeExtractor(slice);
+    if (dynamicSlicing) {
+      reportSampling();
     }
 
+    final Extractor extractor = createExtractor(slice, testCase);
     if (targetFilePath == null) {
       System.out.println(extractor.extract());
     } else {
@@ -96,9 +131,186 @@ private void run() throws IOException {
     }
   }
 
+  /** Warns that the dynamic slices are approximate if the agent sampled the coverage. */
+  private void reportSampling() {
+    final int samplingInterval = CoverageTracker.getSamplingInterval();
+    if (samplingInterval > 1) {
+      System.err.printf(
+          "Coverage sampled once every %d probe hits on average; slices may miss statements%n",
+          samplingInterval);
+    }
+  }
+
+  /**
+   * Creates the extractor of a slice.
+   *
+   * @param pTest The test whose execution was sliced, or {@code null} for a static slice
+   */
+  private Extractor createExtractor(final Set<Node> pSlice, final String pTest) {
+    if (sourceFilePath != null) {
+      return new SourceLineExtractor(
+          sourceFilePath, localVariableTables, className, methodNode, pSlice);
+    } else if (xmlExtraction) {
+      return new XMLFileExtractor(
+          pSlice,
+          hitCounts.getOrDefault(pTest, Map.of()),
+          pTest == null ? 1 : CoverageTracker.getSamplingInterval());
+    } else {
+      return new ByteCodeExtractor(pSlice);
+    }
+  }
+
   private Set<Node> executeSlicing() throws IOException {
+    final ProgramDependenceGraph pdg = loadMethod();
+
+    Preconditions.checkState(
+        threadName == null || dynamicSlicing, "Thread coverage is only available dynamically");
+    if (thinSlicing) {
+      Preconditions.checkState(!dynamicSlicing, "Thin slices are only available statically");
+      return pdg.thinSlice(programLocation);
+    }
+
+    if (dynamicSlicing && TraceRecorder.isOnline()) {
+      final OnlineDynamicSlice onlineSlice = pdg.onlineDynamicSlice(programLocation);
+      TraceRecorder.addListener(
+          threadName, classNode.name, methodNode.name, methodNode.desc, onlineSlice);
+      try {
+        SlicerUtil.executeTest(className, testCase);
+      } finally {
+        TraceRecorder.removeListener(onlineSlice);
+      }
+      final Set<Node> slice = onlineSlice.getSlice();
+      hitCounts.put(testCase, SlicerUtil.hitCounts(pdg, slice, threadName));
+      return slice;
+    }
+
+    if (dynamicSlicing) {
+      SlicerUtil.executeTest(className, testCase);
+      final Set<Node> slice = sliceExecution(pdg, null, threadName);
+      hitCounts.put(testCase, SlicerUtil.hitCounts(pdg, slice, threadName));
+      return slice;
+    }
+    return backwardSlice(pdg, null);
+  }
+
+  /**
+   * Executes all tests of the class's test class in one launcher session and slices each of them.
+   *
+   * <p>With {@code --parallel}, the tests are executed concurrently, each recording into a
+   * coverage context of its own, and their slices are computed in parallel on the shared graph.
+   *
+   * @return The dynamic slice of each test, keyed by the test's name in execution order, or in
+   *     alphabetical order if the tests were executed concurrently
+   */
+  private Map<String, Set<Node>> executeAllTests() throws IOException {
+    final ProgramDependenceGraph pdg = loadMethod();
+    Preconditions.checkState(!thinSlicing, "Thin slices are only available statically");
+    Preconditions.checkState(
+        !TraceRecorder.isOnline(), "Online slicing requires a single test case");
+
+    SliceCache sliceCache = null;
+    if (sliceCacheWords > 0) {
+      // Tests with equal coverage of the method have equal slices, which are then computed once.
+      sliceCache = new SliceCache(sliceCacheWords);
+      pdg.setSliceCache(sliceCache);
+    }
+    try {
+      return executeAllTests(pdg);
+    } finally {
+      if (sliceCache != null) {
+        System.err.printf(
+            "Slice cache: %d hits, %d misses%n",
+            sliceCache.getStats().hitCount(), sliceCache.getStats().missCount());
+      }
+    }
+  }
+
+  private Map<String, Set<Node>> executeAllTests(final ProgramDependenceGraph pdg) {
+    final Map<String, Set<Node>> slices = new LinkedHashMap<>();
+    if (parallel) {
+      Preconditions.checkState(
+          threadName == null, "Concurrent tests are sliced by their own coverage contexts");
+      final Map<String, String> contexts =
+          SlicerUtil.executeTestsConcurrently(className, List.of());
+      final List<Set<Node>> contextSlices =
+          contexts.values().parallelStream()
+              .map(pContext -> sliceExecution(pdg, null, pContext))
+              .toList();
+      int i = 0;
+      for (Map.Entry<String, String> context : contexts.entrySet()) {
+        final Set<Node> slice = contextSlices.get(i++);
+        slices.put(context.getKey(), slice);
+        hitCounts.put(context.getKey(), SlicerUtil.hitCounts(pdg, slice, context.getValue()));
+      }
+      return slices;
+    }
+
+    SlicerUtil.executeTestClass(
+        className,
+        (pTest, pCoverage) -> {
+          final Set<Node> slice = sliceExecution(pdg, pCoverage, threadName);
+          slices.put(pTest, slice);
+          hitCounts.put(
+              pTest,
+              threadName == null
+                  ? SlicerUtil.hitCounts(pdg, slice, pCoverage)
+                  : SlicerUtil.hitCounts(pdg, slice, threadName));
+        });
+    return slices;
+  }
+
+  /**
+   * Slices the test that was executed last, from its trace if the method was traced and from its
+   * coverage otherwise. The slice is empty if the test did not execute the criterion.
+   *
+   * @param pCoverage The coverage of the test, or {@code null} to query the coverage tracker
+   * @param pThreadName The thread or coverage context that executed the test, or {@code null} for
+   *     all threads
+   */
+  private Set<Node> sliceExecution(
+      final ProgramDependenceGraph pPDG,
+      final CoverageSnapshot pCoverage,
+      final String pThreadName) {
+    // Block probes without the trace strategy provide an empty trace.
+    final Optional<ExecutionTrace> trace =
+        SlicerAgent.isTracing()
+            ? TraceRecorder.getTrace(pThreadName, classNode.name, methodNode.name, methodNode.desc)
+            : Optional.empty();
+    if (trace.isPresent()) {
+      return pPDG.dynamicSlice(programLocation, trace.get());
+    }
+    // The traversal skips uncovered nodes instead of slicing a reduced copy of the graph.
+    final BitSet coveredNodes =
+        pCoverage != null && pThreadName == null
+            ? SlicerUtil.coveredNodes(pPDG, pCoverage)
+            : SlicerUtil.coveredNodes(pPDG, pThreadName);
+    return backwardSlice(pPDG, coveredNodes);
+  }
+
+  /**
+   * Slices the criterion, restricted to the covered nodes if given.
+   *
+   * @param pCoveredNodes The indices of the covered nodes, or {@code null} for a static slice
+   */
+  private Set<Node> backwardSlice(final ProgramDependenceGraph pPDG, final BitSet pCoveredNodes) {
+    if (maxDistance == Integer.MAX_VALUE && maxNodes == Integer.MAX_VALUE) {
+      return pPDG.backwardSlice(programLocation, pCoveredNodes);
+    }
+
+    final SliceResult result =
+        pPDG.backwardSlice(
+            programLocation, new SliceOptions(maxDistance, maxNodes), pCoveredNodes);
+    if (result.truncated()) {
+      System.err.printf(
+          "Slice truncated after %d nodes at dependence distance %d%n",
+          result.nodes().size(), result.distance());
+    }
+    return result.nodes();
+  }
+
+  private ProgramDependenceGraph loadMethod() throws IOException {
     final int apiLevel = Opcodes.ASM9;
-    final ClassNode classNode = new ClassNode(apiLevel);
+    classNode = new ClassNode(apiLevel);
     final ClassReader classReader = new ClassReader(className);
     classReader.accept(classNode, 0);
 
@@ -113,20 +325,15 @@ private Set<Node> executeSlicing() throws IOException {
             .orElse(null);
     Preconditions.checkNotNull(methodNode, "Could not find an appropriate method!");
 
-    ProgramDependenceGraph pdg = new ProgramDependenceGraph(classNode, methodNode);
-    final Node programLocation =
+    final ProgramDependenceGraph pdg = new ProgramDependenceGraph(classNode, methodNode);
+    programLocation =
         getProgramLocation(
             pdg.getCFG(),
             methodNode,
             localVariableTables.get(methodNode.name + ": " + methodNode.desc),
             lineNumber,
             variableName);
-
-    if (dynamicSlicing) {
-      pdg = SlicerUtil.simplify(pdg);
-    }
-
-    return pdg.backwardSlice(programLocation);
+    return pdg;
   }
 
   private Node getProgramLocation(
@@ -286,4 +493,75 @@ public void setDynamicSlicing(final String pTestCase) {
     dynamicSlicing = true;
     testCase = pTestCase;
   }
+
+  // @formatter:off
+  @Option(
+      names = {"--alltests"},
+      description =
+          "Create a dynamic slice for every test of the test class, executing all tests in a single"
+              + " session")
+  // @formatter:on
+  public void setAllTests(final boolean pAllTests) {
+    allTests = pAllTests;
+  }
+
+  // @formatter:off
+  @Option(
+      names = {"--parallel"},
+      description =
+          "Execute the tests of --alltests concurrently and slice them in parallel; requires the"
+              + " agent option coverage=per_thread")
+  // @formatter:on
+  public void setParallel(final boolean pParallel) {
+    parallel = pParallel;
+  }
+
+  // @formatter:off
+  @Option(
+      names = {"--thread"},
+      description =
+          "Create the dynamic slice from the coverage of the given thread only; requires the agent"
+              + " option coverage=per_thread")
+  // @formatter:on
+  public void setThreadName(final String pThreadName) {
+    threadName = pThreadName;
+  }
+
+  // @formatter:off
+  @Option(
+      names = {"--thin"},
+      description = "Create a thin slice that only follows value-carrying data dependences")
+  // @formatter:on
+  public void setThinSlicing(final boolean pThinSlicing) {
+    thinSlicing = pThinSlicing;
+  }
+
+  // @formatter:off
+  @Option(
+      names = {"--maxdistance"},
+      description = "Stop the slice at the given dependence distance from the criterion")
+  // @formatter:on
+  public void setMaxDistance(final int pMaxDistance) {
+    maxDistance = pMaxDistance;
+  }
+
+  // @formatter:off
+  @Option(
+      names = {"--maxnodes"},
+      description = "Stop the slice once it contains the given number of nodes")
+  // @formatter:on
+  public void setMaxNodes(final int pMaxNodes) {
+    maxNodes = pMaxNodes;
+  }
+
+  // @formatter:off
+  @Option(
+      names = {"--slice-cache"},
+      description =
+          "Cache the slices of --alltests in at most the given number of 64-bit words, such that"
+              + " tests with equal coverage are sliced once")
+  // @formatter:on
+  public void setSliceCacheWords(final long pSliceCacheWords) {
+    sliceCacheWords = pSliceCacheWords;
+  }
 }
@@ -1,16 +1,37 @@
 package de.uni_passau.fim.se2.sa.slicing;
 
+import com.google.common.base.Preconditions;
 import de.uni_passau.fim.se2.sa.slicing.cfg.Node;
 import de.uni_passau.fim.se2.sa.slicing.cfg.ProgramGraph;
+import de.uni_passau.fim.se2.sa.slicing.coverage.CoverageMode;
+import de.uni_passau.fim.se2.sa.slicing.coverage.CoverageSnapshot;
 import de.uni_passau.fim.se2.sa.slicing.coverage.CoverageTracker;
+import de.uni_passau.fim.se2.sa.slicing.coverage.TraceRecorder;
+import de.uni_passau.fim.se2.sa.slicing.graph.IndexedGraph;
 import de.uni_passau.fim.se2.sa.slicing.graph.ProgramDependenceGraph;
+import de.uni_passau.fim.se2.sa.slicing.graph.SliceAggregation;
+import org.junit.platform.engine.DiscoverySelector;
+import org.junit.platform.engine.TestExecutionResult;
 import org.junit.platform.engine.discovery.DiscoverySelectors;
+import org.junit.platform.engine.support.descriptor.MethodSource;
 import org.junit.platform.launcher.Launcher;
 import org.junit.platform.launcher.LauncherDiscoveryRequest;
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestIdentifier;
 import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
 import org.junit.platform.launcher.core.LauncherFactory;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
 
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
 
 public class SlicerUtil {
 
@@ -23,6 +44,7 @@ public class SlicerUtil {
     public static void executeTest(String className, String testCase) {
         try {
             CoverageTracker.reset();
+            TraceRecorder.reset();
 
             Launcher junitLauncher = LauncherFactory.create();
 
@@ -39,26 +61,346 @@ public static void executeTest(String className, String testCase) {
         }
     }
 
+    /**
+     * Executes all tests of the test class of the given class in a single launcher session and
+     * records the coverage of every test separately.
+     *
+     * @param className The name of the class to be tested.
+     * @return The coverage of each executed test, keyed by the test's name in execution order.
+     */
+    public static Map<String, CoverageSnapshot> executeTestClass(String className) {
+        return executeTestClass(className, (test, coverage) -> {});
+    }
+
+    /**
+     * Executes all tests of the test class of the given class in a single launcher session, see
+     * {@link #executeTestClass(String)}.
+     *
+     * <p>The coverage and traces are reset before every test. The callback is invoked after every
+     * test, while its traces are still available from the
+     * {@link de.uni_passau.fim.se2.sa.slicing.coverage.TraceRecorder}.
+     *
+     * @param className The name of the class to be tested.
+     * @param afterTest The callback receiving the name and the coverage of every executed test.
+     * @return The coverage of each executed test, keyed by the test's name in execution order.
+     */
+    public static Map<String, CoverageSnapshot> executeTestClass(
+            String className, BiConsumer<String, CoverageSnapshot> afterTest) {
+        PerTestCoverageListener listener = new PerTestCoverageListener(afterTest);
+        try {
+            Launcher junitLauncher = LauncherFactory.create();
+
+            String assumedTestClass = className + "Test";
+
+            LauncherDiscoveryRequest testRequest = LauncherDiscoveryRequestBuilder.request()
+                    .selectors(DiscoverySelectors.selectClass(assumedTestClass))
+                    .build();
+
+            junitLauncher.execute(testRequest, listener);
+        } catch (Exception ex) {
+            System.err.println("Test execution failed for " + className + ": " + ex.getMessage());
+            ex.printStackTrace();
+        }
+        return listener.coverage;
+    }
+
+    /**
+     * Executes tests of the test class of the given class concurrently, in a single launcher session.
+     *
+     * <p>Every test records its coverage and traces into a context of its own, see
+     * {@link CoverageTracker#enterContext(String)}, which is queried like a thread by the returned
+     * context name, e.g., by {@link #simplify(ProgramDependenceGraph, String)}. Hits of threads that
+     * a test starts itself are not attributed to its context.
+     *
+     * @param className The name of the class to be tested.
+     * @param testCases The names of the test cases to be executed, or an empty collection to execute
+     *                  all tests of the test class.
+     * @return The context of each executed test, keyed by the test's name in alphabetical order.
+     * @throws IllegalStateException if coverage is not recorded per thread.
+     */
+    public static Map<String, String> executeTestsConcurrently(String className, Collection<String> testCases) {
+        Preconditions.checkState(CoverageTracker.getMode().isPerThread(),
+                "Concurrent test execution requires per-thread coverage");
+        CoverageTracker.reset();
+        TraceRecorder.reset();
+
+        ContextListener listener = new ContextListener();
+        try {
+            Launcher junitLauncher = LauncherFactory.create();
+
+            String assumedTestClass = className + "Test";
+
+            List<DiscoverySelector> selectors = testCases.isEmpty()
+                    ? List.of(DiscoverySelectors.selectClass(assumedTestClass))
+                    : testCases.stream()
+                            .<DiscoverySelector>map(test -> DiscoverySelectors.selectMethod(assumedTestClass, test))
+                            .toList();
+            LauncherDiscoveryRequest testRequest = LauncherDiscoveryRequestBuilder.request()
+                    .selectors(selectors)
+                    .configurationParameter("junit.jupiter.execution.parallel.enabled", "true")
+                    .configurationParameter("junit.jupiter.execution.parallel.mode.default", "concurrent")
+                    .build();
+
+            junitLauncher.execute(testRequest, listener);
+        } catch (Exception ex) {
+            System.err.println("Test execution failed for " + className + ": " + ex.getMessage());
+            ex.printStackTrace();
+        }
+        synchronized (listener.contexts) {
+            return new TreeMap<>(listener.contexts);
+        }
+    }
+
     /**
      * Simplifies the given program dependence graph by removing all nodes and corresponding edges
      * that were not covered by the executed test.
      *
+     * <p>If the sliced method was instrumented, only the lines executed in that very method are
+     * considered; if it was instrumented with block probes, the executed instructions are used.
+     * Otherwise, the lines executed in any instrumented method are used.
+     *
      * @param pPDG The program dependence graph to simplify.
      * @return The simplified program dependence graph.
      */
     public static ProgramDependenceGraph simplify(final ProgramDependenceGraph pPDG) {
-        Set<Integer> coveredLines = CoverageTracker.getVisitedLines();
+        return simplify(pPDG, (String) null);
+    }
+
+    /**
+     * Simplifies the given program dependence graph by removing all nodes and corresponding edges
+     * that were not covered by the given thread, see {@link #simplify(ProgramDependenceGraph)}.
+     *
+     * <p>The coverage of single threads is only available if it was recorded in
+     * {@link de.uni_passau.fim.se2.sa.slicing.coverage.CoverageMode#PER_THREAD} mode.
+     *
+     * @param pPDG       The program dependence graph to simplify.
+     * @param pThreadName The name of the thread whose coverage is used, or {@code null} for all threads.
+     * @return The simplified program dependence graph.
+     */
+    public static ProgramDependenceGraph simplify(final ProgramDependenceGraph pPDG, final String pThreadName) {
+        Coverage coverage = trackerCoverage(pPDG, pThreadName);
+        return coverage == null ? pPDG : reduce(pPDG, coverage.lines(), coverage.instructions());
+    }
+
+    /**
+     * Simplifies the given program dependence graph by removing all nodes and corresponding edges
+     * that were not covered according to a coverage snapshot, see
+     * {@link #simplify(ProgramDependenceGraph)}.
+     *
+     * @param pPDG      The program dependence graph to simplify.
+     * @param pCoverage The coverage of the executed test, e.g., as recorded by
+     *                  {@link #executeTestClass(String)}.
+     * @return The simplified program dependence graph.
+     */
+    public static ProgramDependenceGraph simplify(final ProgramDependenceGraph pPDG, final CoverageSnapshot pCoverage) {
+        Coverage coverage = snapshotCoverage(pPDG, pCoverage);
+        return coverage == null ? pPDG : reduce(pPDG, coverage.lines(), coverage.instructions());
+    }
+
+    /**
+     * Executes all tests of the test class of the given class in a single launcher session, see
+     * {@link #executeTestClass(String)}, and aggregates their slices for the given criterion.
+     *
+     * <p>The slice of every test is restricted to the nodes it covered, like a slice of
+     * {@link #simplify(ProgramDependenceGraph, CoverageSnapshot)}, but all slices are computed on
+     * the unchanged graph.
+     *
+     * @param className  The name of the class to be tested.
+     * @param pPDG       The program dependence graph of the sliced method.
+     * @param pCriterion The slicing criterion.
+     * @return The aggregated slices of all executed tests.
+     */
+    public static SliceAggregation aggregateSlices(
+            String className, final ProgramDependenceGraph pPDG, final Node pCriterion) {
+        SliceAggregation aggregation = pPDG.aggregateSlices(pCriterion);
+        executeTestClass(className, (test, coverage) -> aggregation.add(test, coveredNodes(pPDG, coverage)));
+        return aggregation;
+    }
+
+    /**
+     * Determines the nodes of the given program dependence graph that were covered according to a
+     * coverage snapshot, using the same coverage as
+     * {@link #simplify(ProgramDependenceGraph, CoverageSnapshot)}.
+     *
+     * @param pPDG      The program dependence graph.
+     * @param pCoverage The coverage of the executed test.
+     * @return The indices of the covered nodes in {@link ProgramDependenceGraph#getIndexedGraph()},
+     *         or {@code null} if no coverage was recorded and all nodes are considered covered.
+     */
+    public static BitSet coveredNodes(final ProgramDependenceGraph pPDG, final CoverageSnapshot pCoverage) {
+        Coverage coverage = snapshotCoverage(pPDG, pCoverage);
+        return coverage == null ? null : coveredNodes(pPDG, coverage);
+    }
+
+    /**
+     * Determines the nodes of the given program dependence graph that were covered by the given
+     * thread, using the same coverage as {@link #simplify(ProgramDependenceGraph, String)}.
+     *
+     * <p>In contrast to simplifying the graph, no graph is copied: the result restricts the
+     * traversal of {@link ProgramDependenceGraph#backwardSlice(Node, BitSet)} to the covered nodes.
+     *
+     * @param pPDG        The program dependence graph.
+     * @param pThreadName The name of the thread or coverage context whose coverage is used, or
+     *                    {@code null} for all threads.
+     * @return The indices of the covered nodes in {@link ProgramDependenceGraph#getIndexedGraph()},
+     *         or {@code null} if no coverage was recorded and all nodes are considered covered.
+     */
+    public static BitSet coveredNodes(final ProgramDependenceGraph pPDG, final String pThreadName) {
+        Coverage coverage = trackerCoverage(pPDG, pThreadName);
+        return coverage == null ? null : coveredNodes(pPDG, coverage);
+    }
+
+    /**
+     * Determines how often the given nodes were executed, as counted in
+     * {@link CoverageMode#COUNTING} mode.
+     *
+     * <p>If the sliced method was instrumented with block probes, a node is counted by the
+     * executions of its instruction; otherwise, by the executions of its line.
+     *
+     * @param pPDG        The program dependence graph of the sliced method.
+     * @param pNodes      The nodes to count, e.g., a dynamic slice.
+     * @param pThreadName The name of the thread or coverage context whose hits are counted, or
+     *                    {@code null} for all threads.
+     * @return The hit count of every executed node in the order of the given nodes; empty if the
+     *         hits were not counted.
+     */
+    public static Map<Node, Integer> hitCounts(
+            final ProgramDependenceGraph pPDG, final Collection<Node> pNodes, final String pThreadName) {
+        ClassNode classNode = pPDG.getClassNode();
+        MethodNode methodNode = pPDG.getMethodNode();
+        if (classNode == null || methodNode == null) {
+            return Map.of();
+        }
+        return hitCounts(methodNode, pNodes,
+                CoverageTracker.getLineHitCounts(pThreadName, classNode.name, methodNode.name, methodNode.desc),
+                CoverageTracker
+                        .getInstructionHitCounts(pThreadName, classNode.name, methodNode.name, methodNode.desc)
+                        .orElse(null));
+    }
+
+    /**
+     * Determines how often the given nodes were executed according to a coverage snapshot, see
+     * {@link #hitCounts(ProgramDependenceGraph, Collection, String)}.
+     *
+     * @param pPDG      The program dependence graph of the sliced method.
+     * @param pNodes    The nodes to count, e.g., a dynamic slice.
+     * @param pCoverage The coverage of the executed test.
+     * @return The hit count of every executed node in the order of the given nodes; empty if the
+     *         hits were not counted.
+     */
+    public static Map<Node, Integer> hitCounts(
+            final ProgramDependenceGraph pPDG, final Collection<Node> pNodes, final CoverageSnapshot pCoverage) {
+        ClassNode classNode = pPDG.getClassNode();
+        MethodNode methodNode = pPDG.getMethodNode();
+        if (classNode == null || methodNode == null) {
+            return Map.of();
+        }
+        return hitCounts(methodNode, pNodes,
+                pCoverage.getLineHitCounts(classNode.name, methodNode.name, methodNode.desc),
+                pCoverage.getInstructionHitCounts(classNode.name, methodNode.name, methodNode.desc).orElse(null));
+    }
+
+    private static Map<Node, Integer> hitCounts(
+            MethodNode methodNode, Collection<Node> nodes, Map<Integer, Integer> lineCounts, int[] instructionCounts) {
+        Map<Node, Integer> counts = new LinkedHashMap<>();
+        for (Node n : nodes) {
+            int index = n.getInstruction() == null ? -1 : methodNode.instructions.indexOf(n.getInstruction());
+            int count = instructionCounts != null
+                    ? (index >= 0 && index < instructionCounts.length ? instructionCounts[index] : 0)
+                    : lineCounts.getOrDefault(n.getLineNumber(), 0);
+            if (count > 0) {
+                counts.put(n, count);
+            }
+        }
+        return counts;
+    }
+
+    private static BitSet coveredNodes(ProgramDependenceGraph pPDG, Coverage coverage) {
+        MethodNode methodNode = pPDG.getMethodNode();
+        IndexedGraph graph = pPDG.getIndexedGraph();
+        BitSet coveredNodes = new BitSet(graph.size());
+        for (int i = 0; i < graph.size(); i++) {
+            if (isCovered(graph.getNode(i), methodNode, coverage.lines(), coverage.instructions())) {
+                coveredNodes.set(i);
+            }
+        }
+        return coveredNodes;
+    }
+
+    /**
+     * Queries the coverage tracker for the coverage of the sliced method, or returns {@code null}
+     * if no coverage was recorded.
+     */
+    private static Coverage trackerCoverage(ProgramDependenceGraph pPDG, String pThreadName) {
+        Set<Integer> coveredLines = pThreadName == null
+                ? CoverageTracker.getVisitedLines()
+                : CoverageTracker.getVisitedLinesPerThread().getOrDefault(pThreadName, Set.of());
 
         if (coveredLines.isEmpty()) {
-            return pPDG;
+            return null;
         }
 
+        ClassNode classNode = pPDG.getClassNode();
+        MethodNode methodNode = pPDG.getMethodNode();
+        BitSet coveredInstructions = null;
+        if (classNode != null && methodNode != null
+                && CoverageTracker.isInstrumented(classNode.name, methodNode.name, methodNode.desc)) {
+            if (pThreadName == null) {
+                coveredLines = CoverageTracker.getVisitedLines(classNode.name, methodNode.name, methodNode.desc);
+                coveredInstructions = CoverageTracker
+                        .getVisitedInstructions(classNode.name, methodNode.name, methodNode.desc)
+                        .orElse(null);
+            } else {
+                coveredLines = CoverageTracker
+                        .getVisitedLines(pThreadName, classNode.name, methodNode.name, methodNode.desc);
+                coveredInstructions = CoverageTracker
+                        .getVisitedInstructions(pThreadName, classNode.name, methodNode.name, methodNode.desc)
+                        .orElse(null);
+            }
+        }
+        return new Coverage(coveredLines, coveredInstructions);
+    }
+
+    /**
+     * Extracts the coverage of the sliced method from a snapshot, or returns {@code null} if no
+     * coverage was recorded.
+     */
+    private static Coverage snapshotCoverage(ProgramDependenceGraph pPDG, CoverageSnapshot pCoverage) {
+        Set<Integer> coveredLines = pCoverage.getVisitedLines();
+
+        if (coveredLines.isEmpty()) {
+            return null;
+        }
+
+        ClassNode classNode = pPDG.getClassNode();
+        MethodNode methodNode = pPDG.getMethodNode();
+        BitSet coveredInstructions = null;
+        if (classNode != null && methodNode != null
+                && pCoverage.isInstrumented(classNode.name, methodNode.name, methodNode.desc)) {
+            coveredLines = pCoverage.getVisitedLines(classNode.name, methodNode.name, methodNode.desc);
+            coveredInstructions = pCoverage
+                    .getVisitedInstructions(classNode.name, methodNode.name, methodNode.desc)
+                    .orElse(null);
+        }
+        return new Coverage(coveredLines, coveredInstructions);
+    }
+
+    private static boolean isCovered(
+            Node n, MethodNode methodNode, Set<Integer> coveredLines, BitSet coveredInstructions) {
+        int ln = n.getLineNumber();
+        return ln > 0 && (coveredInstructions != null
+                ? coveredInstructions.get(methodNode.instructions.indexOf(n.getInstruction()))
+                : coveredLines.contains(ln));
+    }
+
+    private static ProgramDependenceGraph reduce(
+            ProgramDependenceGraph pPDG, Set<Integer> coveredLines, BitSet coveredInstructions) {
+        MethodNode methodNode = pPDG.getMethodNode();
         ProgramGraph fullGraph = pPDG.computeResult();
         ProgramGraph reducedGraph = new ProgramGraph();
 
         for (Node n : fullGraph.getNodes()) {
-            int ln = n.getLineNumber();
-            if (ln > 0 && coveredLines.contains(ln)) {
+            if (isCovered(n, methodNode, coveredLines, coveredInstructions)) {
                 reducedGraph.addNode(n);
             }
         }
@@ -73,4 +415,81 @@ public static ProgramDependenceGraph simplify(final ProgramDependenceGraph pPDG)
 
         return new ProgramDependenceGraph(reducedGraph);
     }
+
+    /**
+     * The covered lines of the sliced method, or of all instrumented methods if it was not
+     * instrumented, and its covered instructions if it was instrumented with block probes.
+     */
+    private record Coverage(Set<Integer> lines, BitSet instructions) {}
+
+    /** Resets the coverage before every test and snapshots it after the test. */
+    private static final class PerTestCoverageListener implements TestExecutionListener {
+
+        private final BiConsumer<String, CoverageSnapshot> afterTest;
+        private final Map<String, CoverageSnapshot> coverage = new LinkedHashMap<>();
+
+        private PerTestCoverageListener(BiConsumer<String, CoverageSnapshot> pAfterTest) {
+            afterTest = pAfterTest;
+        }
+
+        @Override
+        public void executionStarted(TestIdentifier testIdentifier) {
+            if (testIdentifier.isTest()) {
+                CoverageTracker.reset();
+                TraceRecorder.reset();
+            }
+        }
+
+        @Override
+        public void executionFinished(TestIdentifier testIdentifier, TestExecutionResult testExecutionResult) {
+            if (!testIdentifier.isTest()) {
+                return;
+            }
+            String name = testName(testIdentifier, coverage.keySet());
+            CoverageSnapshot snapshot = CoverageTracker.snapshot();
+            coverage.put(name, snapshot);
+            afterTest.accept(name, snapshot);
+        }
+    }
+
+    /**
+     * Records every test into a coverage context of its own; the events of a test are delivered on
+     * the thread executing it.
+     */
+    private static final class ContextListener implements TestExecutionListener {
+
+        private final Map<String, String> contexts = new HashMap<>();
+
+        @Override
+        public void executionStarted(TestIdentifier testIdentifier) {
+            if (testIdentifier.isTest()) {
+                CoverageTracker.enterContext(testIdentifier.getUniqueId());
+                TraceRecorder.enterContext(testIdentifier.getUniqueId());
+            }
+        }
+
+        @Override
+        public void executionFinished(TestIdentifier testIdentifier, TestExecutionResult testExecutionResult) {
+            if (!testIdentifier.isTest()) {
+                return;
+            }
+            CoverageTracker.exitContext();
+            TraceRecorder.exitContext();
+            synchronized (contexts) {
+                contexts.put(testName(testIdentifier, contexts.keySet()), testIdentifier.getUniqueId());
+            }
+        }
+    }
+
+    private static String testName(TestIdentifier testIdentifier, Set<String> takenNames) {
+        String name = testIdentifier.getSource()
+                .filter(MethodSource.class::isInstance)
+                .map(source -> ((MethodSource) source).getMethodName())
+                .orElse(testIdentifier.getDisplayName());
+        if (takenNames.contains(name)) {
+            // Repeated and parameterized tests share their method.
+            name = name + " " + testIdentifier.getDisplayName();
+        }
+        return name;
+    }
 }
@@ -0,0 +1,194 @@
+package de.uni_passau.fim.se2.sa.slicing.agent;
+
+import de.uni_passau.fim.se2.sa.slicing.coverage.CoverageMode;
+import de.uni_passau.fim.se2.sa.slicing.instrumentation.MethodFilter;
+import de.uni_passau.fim.se2.sa.slicing.instrumentation.ProbeGranularity;
+import de.uni_passau.fim.se2.sa.slicing.instrumentation.ProbeStrategy;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The options passed to the {@link SlicerAgent}.
+ *
+ * <p>The agent argument has the form {@code [target][,key=value...]}, where the target is the
+ * package (prefix) to instrument. The following keys are supported:
+ *
+ * <ul>
+ *   <li>{@code probes}: the probe granularity, either {@code line} (default) or {@code block}
+ *   <li>{@code strategy}: the probe code, one of {@code invoke} (default), {@code inline}, {@code
+ *       first_hit}, or {@code trace}; the latter records execution traces for dynamic slicing and
+ *       requires block probes
+ *   <li>{@code cache}: the directory of a persistent cache of instrumented classes (default: no
+ *       cache)
+ *   <li>{@code method}: a method to instrument, given as {@code [class#]name[:descriptor]}; may be
+ *       repeated, and all methods are instrumented if it is absent
+ *   <li>{@code action}: when attaching to a running JVM, either {@code add} (default) to add
+ *       probes or {@code remove} to remove the probes of a previous attachment
+ *   <li>{@code coverage}: where hits are recorded, one of {@code shared} (default), {@code
+ *       per_thread}, or {@code counting}, which also counts the hits per thread; the latter two
+ *       require the {@code invoke} or {@code trace} strategy
+ *   <li>{@code trace}: a file that execution traces are written to instead of being kept in memory
+ *       (default: in memory); requires the {@code trace} strategy
+ *   <li>{@code slicing}: how dynamic slices are computed, either {@code trace} (default) from the
+ *       recorded traces or {@code online} while the tests execute, without recording traces;
+ *       requires the {@code trace} strategy
+ *   <li>{@code sample}: record only about every n-th probe hit of each thread (default: {@code 1},
+ *       i.e., every hit), which yields approximate coverage at a fraction of the overhead; requires
+ *       the {@code invoke} strategy
+ * </ul>
+ *
+ * @param target The package (prefix) to instrument
+ * @param granularity The probe granularity
+ * @param strategy The probe strategy
+ * @param cacheDirectory The cache directory, or {@code null} if classes are not cached
+ * @param filter The methods to instrument
+ * @param removeProbes Whether an attached agent removes its probes instead of adding them
+ * @param coverageMode Where the probe hits are recorded
+ * @param traceFile The file execution traces are written to, or {@code null} if they are kept in
+ *     memory
+ * @param onlineSlicing Whether dynamic slices are computed during the execution instead of from
+ *     recorded traces
+ * @param samplingInterval The average number of probe hits per recorded hit
+ */
+public record AgentOptions(
+    String target,
+    ProbeGranularity granularity,
+    ProbeStrategy strategy,
+    Path cacheDirectory,
+    MethodFilter filter,
+    boolean removeProbes,
+    CoverageMode coverageMode,
+    Path traceFile,
+    boolean onlineSlicing,
+    int samplingInterval) {
+
+  static final String DEFAULT_TARGET = "de.uni_passau.fim.se2.sa.examples";
+
+  /**
+   * Parses an agent argument.
+   *
+   * @param pArguments The agent argument, may be {@code null}
+   * @return The parsed options
+   * @throws IllegalArgumentException if an option is malformed or unknown
+   */
+  public static AgentOptions parse(String pArguments) {
+    String target = DEFAULT_TARGET;
+    ProbeGranularity granularity = ProbeGranularity.LINE;
+    ProbeStrategy strategy = ProbeStrategy.INVOKE;
+    Path cacheDirectory = null;
+    List<String> methods = new ArrayList<>();
+    boolean removeProbes = false;
+    CoverageMode coverageMode = CoverageMode.SHARED;
+    Path traceFile = null;
+    boolean onlineSlicing = false;
+    int samplingInterval = 1;
+    if (pArguments == null || pArguments.isBlank()) {
+      return new AgentOptions(
+          target,
+          granularity,
+          strategy,
+          cacheDirectory,
+          MethodFilter.ALL,
+          removeProbes,
+          coverageMode,
+          traceFile,
+          onlineSlicing,
+          samplingInterval);
+    }
+
+    String[] parts = pArguments.split(",");
+    for (int i = 0; i < parts.length; i++) {
+      String part = parts[i].strip();
+      int separator = part.indexOf('=');
+      if (separator < 0) {
+        if (i != 0) {
+          throw new IllegalArgumentException("Expected key=value but got: " + part);
+        }
+        if (!part.isEmpty()) {
+          target = part;
+        }
+        continue;
+      }
+
+      String key = part.substring(0, separator).strip();
+      String value = part.substring(separator + 1).strip();
+      switch (key) {
+        case "probes" -> granularity = ProbeGranularity.valueOf(value.toUpperCase(Locale.ROOT));
+        case "strategy" -> strategy = ProbeStrategy.valueOf(value.toUpperCase(Locale.ROOT));
+        case "cache" -> cacheDirectory = Path.of(value);
+        case "method" -> methods.add(value);
+        case "action" -> removeProbes = parseAction(value);
+        case "coverage" -> coverageMode = CoverageMode.valueOf(value.toUpperCase(Locale.ROOT));
+        case "trace" -> traceFile = Path.of(value);
+        case "slicing" -> onlineSlicing = parseSlicing(value);
+        case "sample" -> samplingInterval = parseSamplingInterval(value);
+        default -> throw new IllegalArgumentException("Unknown agent option: " + key);
+      }
+    }
+    if (strategy == ProbeStrategy.TRACE && granularity != ProbeGranularity.BLOCK) {
+      throw new IllegalArgumentException("The trace strategy requires block probes");
+    }
+    if (traceFile != null && strategy != ProbeStrategy.TRACE) {
+      throw new IllegalArgumentException("A trace file requires the trace strategy");
+    }
+    if (onlineSlicing && (strategy != ProbeStrategy.TRACE || traceFile != null)) {
+      throw new IllegalArgumentException(
+          "Online slicing requires the trace strategy and records no trace file");
+    }
+    if (coverageMode.isPerThread()
+        && strategy != ProbeStrategy.INVOKE
+        && strategy != ProbeStrategy.TRACE) {
+      // Inlined probes store into the shared arrays, and first-hit probes disable themselves for
+      // all threads after the first hit.
+      throw new IllegalArgumentException(
+          "Per-thread coverage requires the invoke or trace strategy but got: " + strategy);
+    }
+    if (samplingInterval > 1 && strategy != ProbeStrategy.INVOKE) {
+      // Other probes do not call the tracker on every hit, and traces record every block anyway.
+      throw new IllegalArgumentException(
+          "Sampling requires the invoke strategy but got: " + strategy);
+    }
+    return new AgentOptions(
+        target,
+        granularity,
+        strategy,
+        cacheDirectory,
+        MethodFilter.of(methods),
+        removeProbes,
+        coverageMode,
+        traceFile,
+        onlineSlicing,
+        samplingInterval);
+  }
+
+  private static boolean parseSlicing(String pSlicing) {
+    return switch (pSlicing) {
+      case "trace" -> false;
+      case "online" -> true;
+      default -> throw new IllegalArgumentException("Unknown slicing mode: " + pSlicing);
+    };
+  }
+
+  private static int parseSamplingInterval(String pInterval) {
+    int interval;
+    try {
+      interval = Integer.parseInt(pInterval);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Expected a sampling interval but got: " + pInterval, e);
+    }
+    if (interval < 1) {
+      throw new IllegalArgumentException("The sampling interval must be positive: " + interval);
+    }
+    return interval;
+  }
+
+  private static boolean parseAction(String pAction) {
+    return switch (pAction) {
+      case "add" -> false;
+      case "remove" -> true;
+      default -> throw new IllegalArgumentException("Unknown agent action: " + pAction);
+    };
+  }
+}
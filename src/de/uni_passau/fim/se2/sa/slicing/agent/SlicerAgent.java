@@ -1,33 +1,175 @@
 package de.uni_passau.fim.se2.sa.slicing.agent;
 
+import com.sun.tools.attach.VirtualMachine;
+import de.uni_passau.fim.se2.sa.slicing.coverage.CoverageTracker;
+import de.uni_passau.fim.se2.sa.slicing.coverage.TraceRecorder;
 import de.uni_passau.fim.se2.sa.slicing.instrumentation.LineCoverageTransformer;
+import de.uni_passau.fim.se2.sa.slicing.instrumentation.ProbeStrategy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
+import java.util.Arrays;
 
 public final class SlicerAgent {
 
   private static boolean invoked = false;
-  private static final String DEFAULT_PACKAGE = "de.uni_passau.fim.se2.sa.examples";
+  private static volatile boolean tracing = false;
+
+  /** The transformer installed by {@link #agentmain}, or {@code null} if no probes are attached. */
+  private static LineCoverageTransformer attachedTransformer = null;
+
+  /**
+   * The instrumentation the attached transformer is registered with; every dynamic attachment
+   * receives its own instance, which only knows the transformers added through it.
+   */
+  private static Instrumentation attachedInstrumentation = null;
 
   private SlicerAgent() {}
 
   /**
    * Entry point for the agent.
    *
-   * @param pPackageToInstrument The package name to instrument
+   * @param pArguments The package name to instrument, optionally followed by options as described
+   *     in {@link AgentOptions}
    * @param pInstrumentation The instrumentation instance
    */
-  public static void premain(String pPackageToInstrument, Instrumentation pInstrumentation) {
+  public static void premain(String pArguments, Instrumentation pInstrumentation) {
     if (!invoked) {
-      String target =
-          pPackageToInstrument != null && !pPackageToInstrument.isBlank()
-              ? pPackageToInstrument
-              : DEFAULT_PACKAGE;
-      pInstrumentation.addTransformer(new LineCoverageTransformer(target));
+      AgentOptions options = AgentOptions.parse(pArguments);
+      CoverageTracker.setMode(options.coverageMode());
+      CoverageTracker.setSamplingInterval(options.samplingInterval());
+      recordTrace(options);
+      TraceRecorder.setOnline(options.onlineSlicing());
+      tracing = options.strategy() == ProbeStrategy.TRACE;
+      pInstrumentation.addTransformer(createTransformer(options));
       invoked = true;
     }
   }
 
+  /**
+   * Entry point for the agent when it is attached to a running JVM.
+   *
+   * <p>Adds probes to the already loaded target classes by retransforming them; classes loaded
+   * later are instrumented when they are loaded. With the option {@code action=remove}, the probes
+   * are removed again by retransforming the target classes without the transformer; the {@link
+   * CoverageTracker} then no longer reports the classes as instrumented and drops their coverage.
+   * Attaching again replaces the probes of a previous attachment.
+   *
+   * @param pArguments The agent arguments as described in {@link AgentOptions}
+   * @param pInstrumentation The instrumentation instance
+   * @throws UnmodifiableClassException if a target class cannot be retransformed
+   */
+  public static synchronized void agentmain(String pArguments, Instrumentation pInstrumentation)
+      throws UnmodifiableClassException {
+    AgentOptions options = AgentOptions.parse(pArguments);
+    if (attachedTransformer != null) {
+      LineCoverageTransformer previous = attachedTransformer;
+      attachedInstrumentation.removeTransformer(previous);
+      attachedTransformer = null;
+      attachedInstrumentation = null;
+      removeProbes(pInstrumentation, previous);
+    }
+    if (options.removeProbes()) {
+      tracing = false;
+      return;
+    }
+
+    CoverageTracker.setMode(options.coverageMode());
+    CoverageTracker.setSamplingInterval(options.samplingInterval());
+    recordTrace(options);
+    TraceRecorder.setOnline(options.onlineSlicing());
+    tracing = options.strategy() == ProbeStrategy.TRACE;
+    LineCoverageTransformer transformer = createTransformer(options);
+    pInstrumentation.addTransformer(transformer, true);
+    attachedTransformer = transformer;
+    attachedInstrumentation = pInstrumentation;
+    invoked = true;
+    retransformTargets(pInstrumentation, transformer);
+  }
+
+  /**
+   * Loads the agent into a running JVM.
+   *
+   * @param pProcessId The id of the process running the JVM
+   * @param pAgentJar The path of the agent's JAR file
+   * @param pArguments The agent arguments as described in {@link AgentOptions}
+   * @throws Exception if the JVM cannot be attached to or the agent fails to load
+   */
+  public static void attach(String pProcessId, String pAgentJar, String pArguments)
+      throws Exception {
+    VirtualMachine virtualMachine = VirtualMachine.attach(pProcessId);
+    try {
+      virtualMachine.loadAgent(pAgentJar, pArguments);
+    } finally {
+      virtualMachine.detach();
+    }
+  }
+
   public static boolean wasInvoked() {
     return invoked;
   }
+
+  /**
+   * Returns whether the probes record execution traces, i.e., whether the agent was invoked with
+   * the {@code trace} strategy.
+   *
+   * @return {@code true} if the {@link TraceRecorder} records the traced methods
+   */
+  public static boolean isTracing() {
+    return tracing;
+  }
+
+  private static LineCoverageTransformer createTransformer(AgentOptions pOptions) {
+    return new LineCoverageTransformer(
+        pOptions.target(),
+        pOptions.granularity(),
+        pOptions.strategy(),
+        pOptions.filter(),
+        pOptions.cacheDirectory());
+  }
+
+  private static void recordTrace(AgentOptions pOptions) {
+    if (pOptions.traceFile() == null) {
+      return;
+    }
+    try {
+      TraceRecorder.recordTo(pOptions.traceFile());
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not create trace file " + pOptions.traceFile(), e);
+    }
+  }
+
+  /**
+   * Retransforms the loaded target classes of a transformer.
+   *
+   * @return The retransformed classes
+   */
+  private static Class<?>[] retransformTargets(
+      Instrumentation pInstrumentation, LineCoverageTransformer pTransformer)
+      throws UnmodifiableClassException {
+    Class<?>[] targets =
+        Arrays.stream(pInstrumentation.getAllLoadedClasses())
+            .filter(pInstrumentation::isModifiableClass)
+            .filter(c -> pTransformer.isTarget(c.getName().replace('.', '/')))
+            .toArray(Class<?>[]::new);
+    if (targets.length > 0) {
+      pInstrumentation.retransformClasses(targets);
+    }
+    return targets;
+  }
+
+  /**
+   * Removes the probes of a previous attachment by retransforming its targets without it, and
+   * stops tracking them, such that their coverage is not taken for current.
+   */
+  private static void removeProbes(
+      Instrumentation pInstrumentation, LineCoverageTransformer pTransformer)
+      throws UnmodifiableClassException {
+    for (Class<?> target : retransformTargets(pInstrumentation, pTransformer)) {
+      String owner = target.getName().replace('.', '/');
+      CoverageTracker.unregisterClass(owner);
+      TraceRecorder.removeListeners(owner);
+    }
+  }
 }
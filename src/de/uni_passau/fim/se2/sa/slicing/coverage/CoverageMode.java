@@ -0,0 +1,31 @@
+package de.uni_passau.fim.se2.sa.slicing.coverage;
+
+/** Determines where the {@link CoverageTracker} records the hits of probes. */
+public enum CoverageMode {
+
+  /** All threads record their hits into the same probe arrays. */
+  SHARED,
+
+  /**
+   * Every thread records its hits into probe arrays of its own, which are allocated when the
+   * thread hits its first probe and merged when the coverage is queried. Threads never write to
+   * the same arrays, and the coverage of each thread can be queried separately.
+   */
+  PER_THREAD,
+
+  /**
+   * Like {@link #PER_THREAD}, but every thread also counts how often it hits each probe, in {@code
+   * int} arrays of its own that are summed when the counts are queried. Counting needs neither
+   * atomic updates nor locks, since no two threads increment the same counter.
+   */
+  COUNTING;
+
+  /**
+   * Returns whether every thread records into probe arrays of its own.
+   *
+   * @return {@code true} unless the mode is {@link #SHARED}
+   */
+  public boolean isPerThread() {
+    return this != SHARED;
+  }
+}
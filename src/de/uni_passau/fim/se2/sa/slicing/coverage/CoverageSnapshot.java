@@ -0,0 +1,119 @@
+package de.uni_passau.fim.se2.sa.slicing.coverage;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * An immutable copy of the coverage recorded by the {@link CoverageTracker} at a point in time.
+ *
+ * <p>Snapshots allow to keep the coverage of several test executions apart, since the tracker is
+ * reset before every execution. The queries mirror those of the tracker for merged threads.
+ */
+public final class CoverageSnapshot {
+
+  private final Set<Integer> visitedLines;
+  private final Map<String, Set<Integer>> methodLines;
+  private final Map<String, BitSet> methodInstructions;
+  private final Map<String, Map<Integer, Integer>> methodLineCounts;
+  private final Map<String, int[]> methodInstructionCounts;
+
+  CoverageSnapshot(
+      Set<Integer> pVisitedLines,
+      Map<String, Set<Integer>> pMethodLines,
+      Map<String, BitSet> pMethodInstructions,
+      Map<String, Map<Integer, Integer>> pMethodLineCounts,
+      Map<String, int[]> pMethodInstructionCounts) {
+    visitedLines = pVisitedLines;
+    methodLines = pMethodLines;
+    methodInstructions = pMethodInstructions;
+    methodLineCounts = pMethodLineCounts;
+    methodInstructionCounts = pMethodInstructionCounts;
+  }
+
+  /**
+   * Provides the lines visited in all instrumented methods, see {@link
+   * CoverageTracker#getVisitedLines()}.
+   *
+   * @return The set of visited lines in ascending order
+   */
+  public Set<Integer> getVisitedLines() {
+    return visitedLines;
+  }
+
+  /**
+   * Checks whether a method was instrumented when the snapshot was taken.
+   *
+   * @param pOwner The internal name of the class declaring the method
+   * @param pName The name of the method
+   * @param pDescriptor The descriptor of the method
+   * @return {@code true} if the coverage of the method was tracked
+   */
+  public boolean isInstrumented(String pOwner, String pName, String pDescriptor) {
+    return methodLines.containsKey(CoverageTracker.methodKey(pOwner, pName, pDescriptor));
+  }
+
+  /**
+   * Provides the visited lines of a single method, see {@link
+   * CoverageTracker#getVisitedLines(String, String, String)}.
+   *
+   * @param pOwner The internal name of the class declaring the method
+   * @param pName The name of the method
+   * @param pDescriptor The descriptor of the method
+   * @return The set of visited lines of the method in ascending order; empty if the method is not
+   *     instrumented
+   */
+  public Set<Integer> getVisitedLines(String pOwner, String pName, String pDescriptor) {
+    return methodLines.getOrDefault(
+        CoverageTracker.methodKey(pOwner, pName, pDescriptor), Collections.emptySet());
+  }
+
+  /**
+   * Provides the visited instructions of a method, see {@link
+   * CoverageTracker#getVisitedInstructions(String, String, String)}.
+   *
+   * @param pOwner The internal name of the class declaring the method
+   * @param pName The name of the method
+   * @param pDescriptor The descriptor of the method
+   * @return The indices of the visited instructions, or an empty optional if the method is not
+   *     instrumented with block probes
+   */
+  public Optional<BitSet> getVisitedInstructions(String pOwner, String pName, String pDescriptor) {
+    BitSet instructions =
+        methodInstructions.get(CoverageTracker.methodKey(pOwner, pName, pDescriptor));
+    return instructions == null ? Optional.empty() : Optional.of((BitSet) instructions.clone());
+  }
+
+  /**
+   * Provides how often the lines of a method were executed, see {@link
+   * CoverageTracker#getLineHitCounts(String, String, String)}.
+   *
+   * @param pOwner The internal name of the class declaring the method
+   * @param pName The name of the method
+   * @param pDescriptor The descriptor of the method
+   * @return The hit count of every executed line of the method; empty if the method is not
+   *     instrumented or its hits were not counted
+   */
+  public Map<Integer, Integer> getLineHitCounts(String pOwner, String pName, String pDescriptor) {
+    return methodLineCounts.getOrDefault(
+        CoverageTracker.methodKey(pOwner, pName, pDescriptor), Collections.emptyMap());
+  }
+
+  /**
+   * Provides how often the instructions of a method were executed, see {@link
+   * CoverageTracker#getInstructionHitCounts(String, String, String)}.
+   *
+   * @param pOwner The internal name of the class declaring the method
+   * @param pName The name of the method
+   * @param pDescriptor The descriptor of the method
+   * @return The hit count of every instruction, or an empty optional if the method is not
+   *     instrumented with block probes or its hits were not counted
+   */
+  public Optional<int[]> getInstructionHitCounts(String pOwner, String pName, String pDescriptor) {
+    int[] counts =
+        methodInstructionCounts.get(CoverageTracker.methodKey(pOwner, pName, pDescriptor));
+    return counts == null ? Optional.empty() : Optional.of(counts.clone());
+  }
+}
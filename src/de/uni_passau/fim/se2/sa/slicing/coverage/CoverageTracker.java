@@ -1,29 +1,186 @@
 package de.uni_passau.fim.se2.sa.slicing.coverage;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import java.lang.invoke.MethodHandles;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.LinkedHashSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Tracks line coverage information, i.e., which lines were executed and which were not.
  *
- * <p>The tracker is designed to track coverage information for a single class and a single
- * execution. It can be used for dynamic slicing.
+ * <p>Coverage is recorded in preallocated probe arrays: every instrumented method owns a {@code
+ * boolean[]} that is indexed by probe id, and line numbers that are tracked directly are recorded
+ * in an array indexed by line number. Recording a hit is a plain array store, which neither
+ * allocates nor locks and is safe under concurrent execution since all writers store the same
+ * value. The arrays are harvested when the coverage is queried.
+ *
+ * <p>Methods are interned to dense {@code int} ids by their owner, name, and descriptor, such
+ * that coverage can be queried per method and the same line number in different classes or
+ * methods is not conflated.
+ *
+ * <p>A probe either marks a single line ({@link #registerProbes(int, int[])}) or a basic block
+ * ({@link #registerBlockProbes(int, int[][], int[])}); the latter is mapped back to the lines and
+ * the instructions of the block when the coverage is queried.
+ *
+ * <p>In {@link CoverageMode#PER_THREAD} mode, every thread records into probe arrays of its own
+ * that are registered when the thread records its first hit. The queries merge the arrays of all
+ * threads, and the coverage of a single thread can be queried by the thread's name.
+ *
+ * <p>In {@link CoverageMode#COUNTING} mode, the threads additionally count the hits of every
+ * probe, such that the number of executions of lines and instructions can be queried. The count of
+ * a line is the largest count of the probes covering it; lines tracked via {@link
+ * #trackLineVisit(int)} are not counted.
+ *
+ * <p>With a sampling interval of {@code n} (see {@link #setSamplingInterval(int)}), every thread
+ * only records about every {@code n}-th hit of the probes that call this class: a countdown per
+ * thread skips the hits in between, which trades exact coverage for a fraction of the overhead.
+ *
+ * <p>A thread can also enter a named coverage context, e.g., while it executes a single test;
+ * its hits are then recorded into arrays of the context, which are queried like those of a thread
+ * by the context's name. Contexts keep the coverage of tests apart that run concurrently.
  */
 public final class CoverageTracker {
 
-  private static final Set<Integer> visitedLines = new LinkedHashSet<>();
+  /** Class files store line numbers as unsigned 16-bit values. */
+  private static final int MAX_LINE_NUMBER = 0xFFFF;
+
+  private static final boolean[] lineProbes = new boolean[MAX_LINE_NUMBER + 1];
+  private static final Set<Integer> otherLines = ConcurrentHashMap.newKeySet();
+
+  private static final Object registryLock = new Object();
+  private static final Map<String, Integer> methodIds = new HashMap<>();
+  private static volatile boolean[][] methodProbes = new boolean[16][];
+  private static volatile ProbeMap[] probeMaps = new ProbeMap[16];
+
+  private static volatile CoverageMode mode = CoverageMode.SHARED;
+  private static final Queue<ThreadProbes> threadProbes = new ConcurrentLinkedQueue<>();
+  private static final ThreadLocal<ThreadProbes> currentThreadProbes =
+      ThreadLocal.withInitial(CoverageTracker::registerThread);
+
+  private static volatile int samplingInterval = 1;
+  private static final ThreadLocal<Sampler> currentSampler = ThreadLocal.withInitial(Sampler::new);
 
   private CoverageTracker() {}
 
   /**
    * Provides the set of visited lines (identified by their line numbers).
    *
-   * @return The set of visited lines
+   * <p>The lines of all instrumented methods are merged; use {@link #getVisitedLines(String,
+   * String, String)} to query the coverage of a single method.
+   *
+   * @return The set of visited lines in ascending order
    */
   public static Set<Integer> getVisitedLines() {
-    return Collections.unmodifiableSet(visitedLines);
+    return visitedLines(null);
+  }
+
+  /**
+   * Provides the set of visited lines of every thread that recorded coverage in {@link
+   * CoverageMode#PER_THREAD} mode.
+   *
+   * <p>Threads with the same name are merged.
+   *
+   * @return The visited lines in ascending order, keyed by the name of the thread
+   */
+  public static Map<String, Set<Integer>> getVisitedLinesPerThread() {
+    Map<String, Set<Integer>> visitedLines = new TreeMap<>();
+    for (ThreadProbes buffer : threadProbes) {
+      visitedLines.computeIfAbsent(buffer.threadName, CoverageTracker::visitedLines);
+    }
+    return Collections.unmodifiableMap(visitedLines);
+  }
+
+  /**
+   * Records the hits of the current thread into the arrays of a new coverage context until {@link
+   * #exitContext()} is called.
+   *
+   * <p>Only hits of the current thread are attributed to the context, not those of threads it
+   * starts. Contexts require a mode that records per thread, see {@link
+   * CoverageMode#isPerThread()}.
+   *
+   * @param pContext The name of the context, which should not be the name of a thread
+   * @throws IllegalStateException if coverage is not recorded per thread
+   */
+  public static void enterContext(String pContext) {
+    Preconditions.checkState(
+        mode.isPerThread(), "Coverage contexts require per-thread coverage");
+    ThreadProbes context =
+        new ThreadProbes(pContext, Thread.currentThread(), currentThreadProbes.get());
+    threadProbes.add(context);
+    currentThreadProbes.set(context);
+  }
+
+  /**
+   * Ends the coverage context the current thread entered last; its coverage can be queried until
+   * the next {@link #reset()}.
+   *
+   * @throws IllegalStateException if the current thread is not in a context
+   */
+  public static void exitContext() {
+    ThreadProbes context = currentThreadProbes.get();
+    Preconditions.checkState(context.previous != null, "No coverage context was entered");
+    context.closed = true;
+    currentThreadProbes.set(context.previous);
+  }
+
+  /**
+   * Sets where probe hits are recorded.
+   *
+   * <p>Hits recorded before switching the mode are kept. The per-thread mode only applies to
+   * probes that call this class; probes that store into the probe arrays directly always record
+   * into the shared arrays.
+   *
+   * @param pMode The coverage mode
+   */
+  public static void setMode(CoverageMode pMode) {
+    mode = Preconditions.checkNotNull(pMode);
+  }
+
+  /**
+   * Provides where probe hits are recorded.
+   *
+   * @return The coverage mode
+   */
+  public static CoverageMode getMode() {
+    return mode;
+  }
+
+  /**
+   * Sets how many probe hits occur per recorded hit on average.
+   *
+   * <p>Only hits via {@link #hitProbe(int, int)} are sampled. The distance between two recorded
+   * hits of a thread varies randomly around the interval, such that a loop whose length divides
+   * the interval is not always sampled at the same probe. In {@link CoverageMode#COUNTING} mode,
+   * only the recorded hits are counted.
+   *
+   * @param pInterval The sampling interval, where {@code 1} records every hit
+   * @throws IllegalArgumentException if the interval is not positive
+   */
+  public static void setSamplingInterval(int pInterval) {
+    Preconditions.checkArgument(
+        pInterval >= 1, "Expected a positive interval but got %s", pInterval);
+    samplingInterval = pInterval;
+  }
+
+  /**
+   * Provides how many probe hits occur per recorded hit on average.
+   *
+   * @return The sampling interval, which is {@code 1} if every hit is recorded
+   */
+  public static int getSamplingInterval() {
+    return samplingInterval;
   }
 
   /**
@@ -33,7 +190,413 @@ public static Set<Integer> getVisitedLines() {
    */
   // Needs to be public to be callable during test execution
   public static void trackLineVisit(int pLineNumber) {
-      visitedLines.add(pLineNumber);
+    if (mode.isPerThread()) {
+      currentThreadProbes.get().trackLineVisit(pLineNumber);
+    } else if (pLineNumber >= 0 && pLineNumber <= MAX_LINE_NUMBER) {
+      lineProbes[pLineNumber] = true;
+    } else {
+      otherLines.add(pLineNumber);
+    }
+  }
+
+  /**
+   * Track a hit of a probe of an instrumented method.
+   *
+   * @param pMethodId The id of the method as returned by {@link #registerMethod(String, String,
+   *     String)}
+   * @param pProbeId The id of the probe within the method; invocations that started before the
+   *     method was instrumented again may pass ids of the previous probes, of which those beyond
+   *     the current probes are dropped
+   */
+  // Needs to be public to be callable during test execution
+  public static void hitProbe(int pMethodId, int pProbeId) {
+    int interval = samplingInterval;
+    if (interval > 1 && !currentSampler.get().sample(interval)) {
+      return;
+    }
+    CoverageMode current = mode;
+    if (current == CoverageMode.SHARED) {
+      boolean[] probes = methodProbes[pMethodId];
+      if (pProbeId < probes.length) {
+        probes[pProbeId] = true;
+      }
+    } else {
+      MethodHits method = currentThreadProbes.get().method(pMethodId);
+      if (pProbeId >= method.hits.length) {
+        return;
+      }
+      method.hits[pProbeId] = true;
+      if (current == CoverageMode.COUNTING) {
+        method.counters()[pProbeId]++;
+      }
+    }
+  }
+
+  /**
+   * Provides the id of an instrumented method.
+   *
+   * <p>This is the bootstrap method of the dynamic constant through which probes load the id of
+   * their method, such that instrumented code does not depend on the ids that were assigned while
+   * it was instrumented, e.g., when it is taken from a cache.
+   *
+   * @param pLookup The lookup of the instrumented class
+   * @param pName The name of the constant
+   * @param pType The type of the constant, i.e., {@code int}
+   * @param pMethodName The name of the instrumented method
+   * @param pDescriptor The descriptor of the instrumented method
+   * @return The id of the method as returned by {@link #registerMethod(String, String, String)}
+   */
+  // Needs to be public to be callable during test execution
+  public static int methodId(
+      MethodHandles.Lookup pLookup,
+      String pName,
+      Class<?> pType,
+      String pMethodName,
+      String pDescriptor) {
+    return registerMethod(
+        pLookup.lookupClass().getName().replace('.', '/'), pMethodName, pDescriptor);
+  }
+
+  /**
+   * Provides the probe array of an instrumented method.
+   *
+   * <p>This is the bootstrap method of the dynamic constant through which inlined probes load the
+   * array they store their hits into; {@link #reset()} clears the array in place, hence the
+   * constant stays valid.
+   *
+   * @param pLookup The lookup of the instrumented class
+   * @param pName The name of the constant
+   * @param pType The type of the constant, i.e., {@code boolean[]}
+   * @param pMethodId The id of the method as returned by {@link #registerMethod(String, String,
+   *     String)}
+   * @return The probe array of the method
+   */
+  // Needs to be public to be callable during test execution
+  public static boolean[] probes(
+      MethodHandles.Lookup pLookup, String pName, Class<?> pType, int pMethodId) {
+    return methodProbes[pMethodId];
+  }
+
+  /**
+   * Interns a method that is about to be instrumented and provides its id.
+   *
+   * <p>Registering the same method again yields the same id. The probes of the method must be
+   * registered via {@link #registerProbes(int, int[])} or {@link #registerBlockProbes(int, int[][],
+   * int[])} once the instrumentation of the method is complete, i.e., before the method can be
+   * executed.
+   *
+   * @param pOwner The internal name of the class declaring the method
+   * @param pName The name of the method
+   * @param pDescriptor The descriptor of the method
+   * @return The id of the method
+   */
+  public static int registerMethod(String pOwner, String pName, String pDescriptor) {
+    String key = methodKey(pOwner, pName, pDescriptor);
+    synchronized (registryLock) {
+      return methodIds.computeIfAbsent(key, pKey -> methodIds.size());
+    }
+  }
+
+  /**
+   * Checks whether a method has been instrumented, i.e., whether its coverage is tracked.
+   *
+   * @param pOwner The internal name of the class declaring the method
+   * @param pName The name of the method
+   * @param pDescriptor The descriptor of the method
+   * @return {@code true} if probes were registered for the method
+   */
+  public static boolean isInstrumented(String pOwner, String pName, String pDescriptor) {
+    return isTracked(lookupMethod(pOwner, pName, pDescriptor));
+  }
+
+  /**
+   * Stops tracking the methods of a class whose probes were removed.
+   *
+   * <p>The methods keep their ids but are no longer reported as instrumented, and their recorded
+   * hits are dropped. Invocations that started before the probes were removed may still hit them,
+   * which is not recorded. Instrumenting the class again registers its probes anew.
+   *
+   * @param pOwner The internal name of the class
+   */
+  public static void unregisterClass(String pOwner) {
+    String prefix = pOwner + '.';
+    synchronized (registryLock) {
+      boolean[][] probes = methodProbes;
+      ProbeMap[] maps = probeMaps;
+      for (Map.Entry<String, Integer> method : methodIds.entrySet()) {
+        int methodId = method.getValue();
+        if (method.getKey().startsWith(prefix)
+            && methodId < probes.length
+            && probes[methodId] != null
+            && !maps[methodId].removed()) {
+          maps[methodId] =
+              new ProbeMap(maps[methodId].lines(), maps[methodId].boundaries(), true);
+          probes[methodId] = new boolean[probes[methodId].length];
+        }
+      }
+      probeMaps = maps;
+      methodProbes = probes;
+    }
+  }
+
+  /**
+   * Provides the set of visited lines of a single method.
+   *
+   * @param pOwner The internal name of the class declaring the method
+   * @param pName The name of the method
+   * @param pDescriptor The descriptor of the method
+   * @return The set of visited lines of the method in ascending order; empty if the method is not
+   *     instrumented
+   */
+  public static Set<Integer> getVisitedLines(String pOwner, String pName, String pDescriptor) {
+    return getVisitedLines(null, pOwner, pName, pDescriptor);
+  }
+
+  /**
+   * Provides the set of visited lines of a single method as executed by a single thread.
+   *
+   * @param pThreadName The name of the thread, or {@code null} to merge all threads
+   * @param pOwner The internal name of the class declaring the method
+   * @param pName The name of the method
+   * @param pDescriptor The descriptor of the method
+   * @return The set of visited lines of the method in ascending order; empty if the method is not
+   *     instrumented
+   */
+  public static Set<Integer> getVisitedLines(
+      String pThreadName, String pOwner, String pName, String pDescriptor) {
+    Set<Integer> visitedLines = new TreeSet<>();
+    int methodId = lookupMethod(pOwner, pName, pDescriptor);
+    boolean[] hits = collectHits(methodId, pThreadName);
+    if (hits != null) {
+      collectLines(hits, probeMaps[methodId], visitedLines);
+    }
+    return Collections.unmodifiableSet(visitedLines);
+  }
+
+  /**
+   * Provides the visited instructions of a method that was instrumented with block probes.
+   *
+   * <p>Instructions are identified by their index in the method's instruction list as read from
+   * the original class file, including labels, line numbers, and frames.
+   *
+   * @param pOwner The internal name of the class declaring the method
+   * @param pName The name of the method
+   * @param pDescriptor The descriptor of the method
+   * @return The indices of the visited instructions, or an empty optional if the method is not
+   *     instrumented with block probes
+   */
+  public static Optional<BitSet> getVisitedInstructions(
+      String pOwner, String pName, String pDescriptor) {
+    return getVisitedInstructions(null, pOwner, pName, pDescriptor);
+  }
+
+  /**
+   * Provides the instructions of a method that a single thread visited, see {@link
+   * #getVisitedInstructions(String, String, String)}.
+   *
+   * @param pThreadName The name of the thread, or {@code null} to merge all threads
+   * @param pOwner The internal name of the class declaring the method
+   * @param pName The name of the method
+   * @param pDescriptor The descriptor of the method
+   * @return The indices of the visited instructions, or an empty optional if the method is not
+   *     instrumented with block probes
+   */
+  public static Optional<BitSet> getVisitedInstructions(
+      String pThreadName, String pOwner, String pName, String pDescriptor) {
+    int methodId = lookupMethod(pOwner, pName, pDescriptor);
+    boolean[] hits = collectHits(methodId, pThreadName);
+    if (hits == null) {
+      return Optional.empty();
+    }
+    return Optional.ofNullable(visitedInstructions(hits, probeMaps[methodId]));
+  }
+
+  /**
+   * Provides how often the lines of a method were executed, as counted in {@link
+   * CoverageMode#COUNTING} mode.
+   *
+   * @param pOwner The internal name of the class declaring the method
+   * @param pName The name of the method
+   * @param pDescriptor The descriptor of the method
+   * @return The hit count of every executed line of the method, keyed by the line in ascending
+   *     order; empty if the method is not instrumented or its hits were not counted
+   */
+  public static Map<Integer, Integer> getLineHitCounts(
+      String pOwner, String pName, String pDescriptor) {
+    return getLineHitCounts(null, pOwner, pName, pDescriptor);
+  }
+
+  /**
+   * Provides how often a single thread executed the lines of a method, see {@link
+   * #getLineHitCounts(String, String, String)}.
+   *
+   * @param pThreadName The name of the thread, or {@code null} to sum all threads
+   * @param pOwner The internal name of the class declaring the method
+   * @param pName The name of the method
+   * @param pDescriptor The descriptor of the method
+   * @return The hit count of every executed line of the method, keyed by the line in ascending
+   *     order; empty if the method is not instrumented or its hits were not counted
+   */
+  public static Map<Integer, Integer> getLineHitCounts(
+      String pThreadName, String pOwner, String pName, String pDescriptor) {
+    int methodId = lookupMethod(pOwner, pName, pDescriptor);
+    int[] counts = collectCounts(methodId, pThreadName);
+    if (counts == null) {
+      return Collections.emptyMap();
+    }
+    return lineHitCounts(counts, probeMaps[methodId]);
+  }
+
+  /**
+   * Provides how often the instructions of a method that was instrumented with block probes were
+   * executed, as counted in {@link CoverageMode#COUNTING} mode.
+   *
+   * @param pOwner The internal name of the class declaring the method
+   * @param pName The name of the method
+   * @param pDescriptor The descriptor of the method
+   * @return The hit count of every instruction, indexed like {@link
+   *     #getVisitedInstructions(String, String, String)}, or an empty optional if the method is not
+   *     instrumented with block probes; all counts are zero if the hits were not counted
+   */
+  public static Optional<int[]> getInstructionHitCounts(
+      String pOwner, String pName, String pDescriptor) {
+    return getInstructionHitCounts(null, pOwner, pName, pDescriptor);
+  }
+
+  /**
+   * Provides how often a single thread executed the instructions of a method, see {@link
+   * #getInstructionHitCounts(String, String, String)}.
+   *
+   * @param pThreadName The name of the thread, or {@code null} to sum all threads
+   * @param pOwner The internal name of the class declaring the method
+   * @param pName The name of the method
+   * @param pDescriptor The descriptor of the method
+   * @return The hit count of every instruction, indexed like {@link
+   *     #getVisitedInstructions(String, String, String)}, or an empty optional if the method is not
+   *     instrumented with block probes; all counts are zero if the hits were not counted
+   */
+  public static Optional<int[]> getInstructionHitCounts(
+      String pThreadName, String pOwner, String pName, String pDescriptor) {
+    int methodId = lookupMethod(pOwner, pName, pDescriptor);
+    int[] counts = collectCounts(methodId, pThreadName);
+    if (counts == null) {
+      return Optional.empty();
+    }
+    return Optional.ofNullable(instructionHitCounts(counts, probeMaps[methodId]));
+  }
+
+  /**
+   * Copies the coverage of all methods, merging all threads.
+   *
+   * @return The snapshot of the current coverage
+   */
+  public static CoverageSnapshot snapshot() {
+    return snapshot(null);
+  }
+
+  /**
+   * Copies the coverage of all methods as recorded by a single thread or coverage context.
+   *
+   * @param pThreadName The name of the thread or context, or {@code null} to merge all threads
+   * @return The snapshot of the current coverage
+   */
+  public static CoverageSnapshot snapshot(String pThreadName) {
+    Map<String, Integer> methods;
+    synchronized (registryLock) {
+      methods = new HashMap<>(methodIds);
+    }
+    Map<String, Set<Integer>> methodLines = new HashMap<>();
+    Map<String, BitSet> methodInstructions = new HashMap<>();
+    Map<String, Map<Integer, Integer>> methodLineCounts = new HashMap<>();
+    Map<String, int[]> methodInstructionCounts = new HashMap<>();
+    boolean counting = mode == CoverageMode.COUNTING;
+    methods.forEach(
+        (pKey, pMethodId) -> {
+          boolean[] hits = collectHits(pMethodId, pThreadName);
+          if (hits == null) {
+            return;
+          }
+          Set<Integer> lines = new TreeSet<>();
+          collectLines(hits, probeMaps[pMethodId], lines);
+          methodLines.put(pKey, Collections.unmodifiableSet(lines));
+          BitSet instructions = visitedInstructions(hits, probeMaps[pMethodId]);
+          if (instructions != null) {
+            methodInstructions.put(pKey, instructions);
+          }
+          if (counting) {
+            int[] counts = collectCounts(pMethodId, pThreadName);
+            methodLineCounts.put(pKey, lineHitCounts(counts, probeMaps[pMethodId]));
+            int[] instructionCounts = instructionHitCounts(counts, probeMaps[pMethodId]);
+            if (instructionCounts != null) {
+              methodInstructionCounts.put(pKey, instructionCounts);
+            }
+          }
+        });
+    return new CoverageSnapshot(
+        visitedLines(pThreadName),
+        methodLines,
+        methodInstructions,
+        methodLineCounts,
+        methodInstructionCounts);
+  }
+
+  /**
+   * Provides the instruction ranges of the blocks of a method that was instrumented with block
+   * probes.
+   *
+   * @param pOwner The internal name of the class declaring the method
+   * @param pName The name of the method
+   * @param pDescriptor The descriptor of the method
+   * @return The block boundaries as registered by {@link #registerBlockProbes(int, int[][],
+   *     int[])}, or an empty optional if the method is not instrumented with block probes
+   */
+  public static Optional<int[]> getBlockBoundaries(
+      String pOwner, String pName, String pDescriptor) {
+    int methodId = lookupMethod(pOwner, pName, pDescriptor);
+    if (!isTracked(methodId)) {
+      return Optional.empty();
+    }
+    int[] boundaries = probeMaps[methodId].boundaries();
+    return boundaries == null ? Optional.empty() : Optional.of(boundaries.clone());
+  }
+
+  /**
+   * Allocates the probe array of a method that is instrumented with one probe per line.
+   *
+   * @param pMethodId The id of the method as returned by {@link #registerMethod(String, String,
+   *     String)}
+   * @param pProbeLines The line number of each probe, indexed by probe id
+   */
+  public static void registerProbes(int pMethodId, int[] pProbeLines) {
+    int[][] lines = new int[pProbeLines.length][];
+    for (int probe = 0; probe < pProbeLines.length; probe++) {
+      lines[probe] = new int[] {pProbeLines[probe]};
+    }
+    register(pMethodId, new ProbeMap(lines, null, false));
+  }
+
+  /**
+   * Allocates the probe array of a method that is instrumented with one probe per basic block.
+   *
+   * @param pMethodId The id of the method as returned by {@link #registerMethod(String, String,
+   *     String)}
+   * @param pBlockLines The line numbers of the instructions of each block, indexed by probe id
+   * @param pBlockBoundaries The instruction indices at which the blocks start, followed by the
+   *     number of instructions; block {@code i} spans the instructions from {@code
+   *     pBlockBoundaries[i]} (inclusive) to {@code pBlockBoundaries[i + 1]} (exclusive)
+   */
+  public static void registerBlockProbes(
+      int pMethodId, int[][] pBlockLines, int[] pBlockBoundaries) {
+    Preconditions.checkArgument(
+        pBlockBoundaries.length == pBlockLines.length + 1,
+        "Expected %s block boundaries but got %s",
+        pBlockLines.length + 1,
+        pBlockBoundaries.length);
+    int[][] lines = new int[pBlockLines.length][];
+    for (int probe = 0; probe < pBlockLines.length; probe++) {
+      lines[probe] = pBlockLines[probe].clone();
+    }
+    register(pMethodId, new ProbeMap(lines, pBlockBoundaries.clone(), false));
   }
 
   /**
@@ -44,6 +607,399 @@ public static void trackLineVisit(int pLineNumber) {
    */
   @VisibleForTesting
   public static void reset() {
-    visitedLines.clear();
+    Arrays.fill(lineProbes, false);
+    otherLines.clear();
+    for (boolean[] probes : methodProbes) {
+      if (probes != null) {
+        Arrays.fill(probes, false);
+      }
+    }
+    // Terminated threads and closed contexts cannot record again, hence their buffers are dropped.
+    threadProbes.removeIf(ThreadProbes::isTerminated);
+    threadProbes.forEach(ThreadProbes::clear);
+    FirstHitCallSite.rearmAll();
+  }
+
+  private static ThreadProbes registerThread() {
+    ThreadProbes buffer = new ThreadProbes(Thread.currentThread());
+    threadProbes.add(buffer);
+    return buffer;
+  }
+
+  /**
+   * Harvests the visited lines of all methods and directly tracked lines.
+   *
+   * @param pThreadName The name of the thread, or {@code null} to merge all threads
+   */
+  private static Set<Integer> visitedLines(String pThreadName) {
+    Set<Integer> visitedLines = new TreeSet<>();
+    if (pThreadName == null) {
+      visitedLines.addAll(otherLines);
+      for (int line = 0; line <= MAX_LINE_NUMBER; line++) {
+        if (lineProbes[line]) {
+          visitedLines.add(line);
+        }
+      }
+    }
+    for (ThreadProbes buffer : threadProbes) {
+      if (pThreadName == null || pThreadName.equals(buffer.threadName)) {
+        buffer.collectLines(visitedLines);
+      }
+    }
+
+    int methods = methodProbes.length;
+    for (int method = 0; method < methods; method++) {
+      boolean[] hits = collectHits(method, pThreadName);
+      if (hits != null) {
+        // The mapping is published before the probes, hence it is read after them.
+        collectLines(hits, probeMaps[method], visitedLines);
+      }
+    }
+    return Collections.unmodifiableSet(visitedLines);
+  }
+
+  /**
+   * Merges the hits of a method that were recorded in the shared probe array and by the threads.
+   *
+   * @param pMethodId The id of the method, or {@code -1} for an unknown method
+   * @param pThreadName The name of the thread, or {@code null} to merge all threads
+   * @return The merged hits, or {@code null} if the method is not instrumented
+   */
+  private static boolean[] collectHits(int pMethodId, String pThreadName) {
+    if (!isTracked(pMethodId)) {
+      return null;
+    }
+    ProbeMap probeMap = probeMaps[pMethodId];
+    boolean[] hits = new boolean[probeMap.lines().length];
+    if (pThreadName == null) {
+      merge(methodProbes[pMethodId], hits);
+    }
+    for (ThreadProbes buffer : threadProbes) {
+      if (pThreadName == null || pThreadName.equals(buffer.threadName)) {
+        MethodHits method = buffer.recorded(pMethodId, probeMap);
+        if (method != null) {
+          merge(method.hits, hits);
+        }
+      }
+    }
+    return hits;
+  }
+
+  /**
+   * Sums the hit counts of a method that were recorded by the threads.
+   *
+   * @param pMethodId The id of the method, or {@code -1} for an unknown method
+   * @param pThreadName The name of the thread, or {@code null} to sum all threads
+   * @return The summed counts, or {@code null} if the method is not instrumented
+   */
+  private static int[] collectCounts(int pMethodId, String pThreadName) {
+    if (!isTracked(pMethodId)) {
+      return null;
+    }
+    ProbeMap probeMap = probeMaps[pMethodId];
+    int[] counts = new int[probeMap.lines().length];
+    for (ThreadProbes buffer : threadProbes) {
+      if (pThreadName == null || pThreadName.equals(buffer.threadName)) {
+        MethodHits method = buffer.recorded(pMethodId, probeMap);
+        int[] source = method == null ? null : method.counts;
+        if (source != null) {
+          for (int probe = 0; probe < counts.length; probe++) {
+            counts[probe] += source[probe];
+          }
+        }
+      }
+    }
+    return counts;
+  }
+
+  private static void merge(boolean[] pSource, boolean[] pTarget) {
+    if (pSource == null) {
+      return;
+    }
+    // The shared array may still be the one of a method's previous instrumentation.
+    int length = Math.min(pSource.length, pTarget.length);
+    for (int probe = 0; probe < length; probe++) {
+      pTarget[probe] |= pSource[probe];
+    }
+  }
+
+  private static void register(int pMethodId, ProbeMap pProbeMap) {
+    synchronized (registryLock) {
+      boolean[][] probes = methodProbes;
+      ProbeMap[] maps = probeMaps;
+      if (pMethodId >= probes.length) {
+        int capacity = Math.max(probes.length * 2, pMethodId + 1);
+        probes = Arrays.copyOf(probes, capacity);
+        maps = Arrays.copyOf(maps, capacity);
+      }
+      if (probes[pMethodId] == null || !pProbeMap.equals(maps[pMethodId])) {
+        // Keep the hits of a method that is instrumented again with unchanged probes. The threads
+        // replace their arrays of the method once they see the new mapping.
+        maps[pMethodId] = pProbeMap;
+        probes[pMethodId] = new boolean[pProbeMap.lines().length];
+      }
+      // Publish the mapping before the probes, such that readers never see probes without it.
+      probeMaps = maps;
+      methodProbes = probes;
+    }
+  }
+
+  /**
+   * Checks whether the probes of a method are registered and were not removed since.
+   *
+   * @param pMethodId The id of the method, or {@code -1} for an unknown method
+   */
+  private static boolean isTracked(int pMethodId) {
+    boolean[][] probes = methodProbes;
+    // The mapping is published before the probes, hence it is read after them.
+    return pMethodId >= 0
+        && pMethodId < probes.length
+        && probes[pMethodId] != null
+        && !probeMaps[pMethodId].removed();
+  }
+
+  private static int lookupMethod(String pOwner, String pName, String pDescriptor) {
+    synchronized (registryLock) {
+      return methodIds.getOrDefault(methodKey(pOwner, pName, pDescriptor), -1);
+    }
+  }
+
+  static String methodKey(String pOwner, String pName, String pDescriptor) {
+    return pOwner + '.' + pName + pDescriptor;
+  }
+
+  /** Maps the hits of block probes to the instructions of the blocks, if the method has blocks. */
+  private static BitSet visitedInstructions(boolean[] pHits, ProbeMap pProbeMap) {
+    int[] boundaries = pProbeMap.boundaries();
+    if (boundaries == null) {
+      return null;
+    }
+    BitSet visitedInstructions = new BitSet();
+    for (int probe = 0; probe < pHits.length; probe++) {
+      if (pHits[probe]) {
+        visitedInstructions.set(boundaries[probe], boundaries[probe + 1]);
+      }
+    }
+    return visitedInstructions;
+  }
+
+  /** Maps the counts of probes to lines, taking the largest count of the probes of each line. */
+  private static Map<Integer, Integer> lineHitCounts(int[] pCounts, ProbeMap pProbeMap) {
+    Map<Integer, Integer> lineCounts = new TreeMap<>();
+    for (int probe = 0; probe < pCounts.length; probe++) {
+      if (pCounts[probe] > 0) {
+        for (int line : pProbeMap.lines()[probe]) {
+          lineCounts.merge(line, pCounts[probe], Math::max);
+        }
+      }
+    }
+    return Collections.unmodifiableMap(lineCounts);
+  }
+
+  /** Maps the counts of block probes to the instructions of the blocks, if the method has blocks. */
+  private static int[] instructionHitCounts(int[] pCounts, ProbeMap pProbeMap) {
+    int[] boundaries = pProbeMap.boundaries();
+    if (boundaries == null) {
+      return null;
+    }
+    int[] instructionCounts = new int[boundaries[boundaries.length - 1]];
+    for (int probe = 0; probe < pCounts.length; probe++) {
+      Arrays.fill(instructionCounts, boundaries[probe], boundaries[probe + 1], pCounts[probe]);
+    }
+    return instructionCounts;
+  }
+
+  private static void collectLines(boolean[] pProbes, ProbeMap pProbeMap, Set<Integer> pLines) {
+    for (int probe = 0; probe < pProbes.length; probe++) {
+      if (pProbes[probe]) {
+        for (int line : pProbeMap.lines()[probe]) {
+          pLines.add(line);
+        }
+      }
+    }
+  }
+
+  /** The countdown of a single thread to its next recorded probe hit. */
+  private static final class Sampler {
+
+    private int countdown = 1;
+    private int seed = (int) Thread.currentThread().threadId() * 0x9E3779B9 | 1;
+
+    /**
+     * Counts down a probe hit.
+     *
+     * @param pInterval The sampling interval
+     * @return {@code true} if the hit is to be recorded
+     */
+    private boolean sample(int pInterval) {
+      if (--countdown > 0) {
+        return false;
+      }
+      // Xorshift; the next distance is uniform in [1, 2 * interval - 1], i.e., the interval on
+      // average.
+      seed ^= seed << 13;
+      seed ^= seed >>> 17;
+      seed ^= seed << 5;
+      countdown = 1 + Integer.remainderUnsigned(seed, 2 * pInterval - 1);
+      return true;
+    }
+  }
+
+  /**
+   * The probe arrays of a single thread in {@link CoverageMode#PER_THREAD} and {@link
+   * CoverageMode#COUNTING} mode.
+   *
+   * <p>Only the owning thread writes to the arrays, which are allocated when the thread hits the
+   * first probe of a method; other threads read them when harvesting the coverage. The counters
+   * are only allocated in counting mode.
+   *
+   * <p>The arrays of a method belong to the {@link ProbeMap} they were allocated for. Once the
+   * method is instrumented anew, the owning thread replaces them on its next hit, and harvesting
+   * ignores arrays that belong to a previous mapping; hence, probe ids of the new instrumentation
+   * never index the arrays of the previous one.
+   */
+  private static final class ThreadProbes {
+
+    private final String threadName;
+    private final WeakReference<Thread> thread;
+    private final Set<Integer> otherLines = ConcurrentHashMap.newKeySet();
+    private volatile boolean[] lineProbes;
+    private volatile MethodHits[] methods = new MethodHits[0];
+
+    /** The buffer of the thread that entered this context, or {@code null} for a thread. */
+    private final ThreadProbes previous;
+
+    private volatile boolean closed = false;
+
+    private ThreadProbes(Thread pThread) {
+      this(pThread.getName(), pThread, null);
+    }
+
+    private ThreadProbes(String pName, Thread pThread, ThreadProbes pPrevious) {
+      threadName = pName;
+      thread = new WeakReference<>(pThread);
+      previous = pPrevious;
+    }
+
+    private void trackLineVisit(int pLineNumber) {
+      if (pLineNumber < 0 || pLineNumber > MAX_LINE_NUMBER) {
+        otherLines.add(pLineNumber);
+        return;
+      }
+      boolean[] lines = lineProbes;
+      if (lines == null) {
+        lines = new boolean[MAX_LINE_NUMBER + 1];
+        lineProbes = lines;
+      }
+      lines[pLineNumber] = true;
+    }
+
+    /** Provides the arrays of a method's current instrumentation; only called by the owner. */
+    private MethodHits method(int pMethodId) {
+      MethodHits[] current = methods;
+      if (pMethodId >= current.length) {
+        current = Arrays.copyOf(current, Math.max(current.length * 2, pMethodId + 1));
+        methods = current;
+      }
+      MethodHits method = current[pMethodId];
+      ProbeMap probeMap = probeMaps[pMethodId];
+      if (method == null || method.probeMap != probeMap) {
+        method = new MethodHits(probeMap);
+        current[pMethodId] = method;
+      }
+      return method;
+    }
+
+    /**
+     * Provides the arrays of a method if they belong to the given mapping.
+     *
+     * @return The arrays, or {@code null} if the thread did not hit the method since it was
+     *     instrumented with the given probes
+     */
+    private MethodHits recorded(int pMethodId, ProbeMap pProbeMap) {
+      MethodHits[] current = methods;
+      MethodHits method = pMethodId < current.length ? current[pMethodId] : null;
+      return method != null && method.probeMap == pProbeMap ? method : null;
+    }
+
+    private void collectLines(Set<Integer> pLines) {
+      pLines.addAll(otherLines);
+      boolean[] lines = lineProbes;
+      if (lines != null) {
+        for (int line = 0; line <= MAX_LINE_NUMBER; line++) {
+          if (lines[line]) {
+            pLines.add(line);
+          }
+        }
+      }
+    }
+
+    private boolean isTerminated() {
+      Thread owner = thread.get();
+      return closed || owner == null || owner.getState() == Thread.State.TERMINATED;
+    }
+
+    private void clear() {
+      otherLines.clear();
+      boolean[] lines = lineProbes;
+      if (lines != null) {
+        Arrays.fill(lines, false);
+      }
+      for (MethodHits method : methods) {
+        if (method != null) {
+          Arrays.fill(method.hits, false);
+          int[] counts = method.counts;
+          if (counts != null) {
+            Arrays.fill(counts, 0);
+          }
+        }
+      }
+    }
+  }
+
+  /** The hits, and in counting mode the counts, of a thread for one instrumentation of a method. */
+  private static final class MethodHits {
+
+    private final ProbeMap probeMap;
+    private final boolean[] hits;
+    private volatile int[] counts;
+
+    private MethodHits(ProbeMap pProbeMap) {
+      probeMap = pProbeMap;
+      hits = new boolean[pProbeMap.lines().length];
+    }
+
+    private int[] counters() {
+      int[] result = counts;
+      if (result == null) {
+        result = new int[hits.length];
+        counts = result;
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Maps the probes of a method back to source lines and, for block probes, to instructions.
+   *
+   * @param lines The lines covered by each probe
+   * @param boundaries The instruction boundaries of the blocks, or {@code null} for line probes
+   * @param removed Whether the probes were removed from the method
+   */
+  private record ProbeMap(int[][] lines, int[] boundaries, boolean removed) {
+
+    @Override
+    public boolean equals(Object pOther) {
+      return pOther instanceof ProbeMap other
+          && Arrays.deepEquals(lines, other.lines)
+          && Arrays.equals(boundaries, other.boundaries)
+          && removed == other.removed;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * Arrays.deepHashCode(lines) + Arrays.hashCode(boundaries))
+          + Boolean.hashCode(removed);
+    }
   }
 }
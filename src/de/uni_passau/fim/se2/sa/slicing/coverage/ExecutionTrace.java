@@ -0,0 +1,72 @@
+package de.uni_passau.fim.se2.sa.slicing.coverage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The recorded executions of a single method, replayed from the end of the trace towards its
+ * start.
+ *
+ * <p>Replaying backwards allows consumers such as dynamic slicers to process traces of arbitrary
+ * length in constant memory, since every instruction is visited after all instructions that
+ * might depend on it.
+ */
+@FunctionalInterface
+public interface ExecutionTrace {
+
+  /**
+   * Replays the executions backwards.
+   *
+   * <p>Every invocation of the method is announced by {@link Visitor#visitInvocation()} at its
+   * last executed instruction; invocations may overlap if the method is recursive.
+   *
+   * @param pVisitor The visitor to replay the executions to
+   */
+  void replayBackward(Visitor pVisitor);
+
+  /**
+   * Creates a trace from executions that are held in memory.
+   *
+   * @param pExecutions The executed instruction indices of each invocation in execution order
+   * @return The trace
+   */
+  static ExecutionTrace of(Collection<int[]> pExecutions) {
+    List<int[]> executions = new ArrayList<>(pExecutions);
+    return pVisitor -> {
+      for (int e = executions.size() - 1; e >= 0; e--) {
+        int[] execution = executions.get(e);
+        Invocation invocation = pVisitor.visitInvocation();
+        for (int i = execution.length - 1; i >= 0; i--) {
+          invocation.visitInstruction(execution[i]);
+        }
+        invocation.visitEnd();
+      }
+    };
+  }
+
+  /** Receives the invocations of a method. */
+  interface Visitor {
+
+    /**
+     * Announces an invocation of the method.
+     *
+     * @return The visitor for the instructions executed by the invocation
+     */
+    Invocation visitInvocation();
+  }
+
+  /** Receives the executed instructions of a single invocation, from the last to the first. */
+  interface Invocation {
+
+    /**
+     * Visits an executed instruction.
+     *
+     * @param pIndex The index of the instruction in the method's instruction list
+     */
+    void visitInstruction(int pIndex);
+
+    /** Announces that the start of the invocation was reached. */
+    void visitEnd();
+  }
+}
@@ -0,0 +1,79 @@
+package de.uni_passau.fim.se2.sa.slicing.coverage;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.lang.invoke.SwitchPoint;
+
+/**
+ * A call site of a coverage probe that disables itself after its first execution.
+ *
+ * <p>Each probe is an {@code invokedynamic} instruction bound to its own call site. The first
+ * execution records the hit with the {@link CoverageTracker} and switches the target to a no-op
+ * guarded by a {@link SwitchPoint}, which the JIT compiles away; later executions therefore cost
+ * next to nothing. {@link #rearmAll()} invalidates the switch point when the coverage is reset,
+ * such that every site records its next hit again. This is only suited for runs that need to know
+ * whether a probe was hit since the last reset, not how often.
+ */
+public final class FirstHitCallSite extends MutableCallSite {
+
+  private static final MethodType PROBE_TYPE = MethodType.methodType(void.class);
+  private static final MethodHandle NO_OP = MethodHandles.empty(PROBE_TYPE);
+  private static final MethodHandle HIT;
+
+  private static volatile SwitchPoint armed = new SwitchPoint();
+
+  static {
+    try {
+      HIT = MethodHandles.lookup().findVirtual(FirstHitCallSite.class, "hit", PROBE_TYPE);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private final int methodId;
+  private final int probeId;
+
+  private FirstHitCallSite(int pMethodId, int pProbeId) {
+    super(PROBE_TYPE);
+    methodId = pMethodId;
+    probeId = pProbeId;
+    setTarget(HIT.bindTo(this));
+  }
+
+  /**
+   * Bootstrap method of the probe call sites.
+   *
+   * @param pLookup The lookup of the instrumented class
+   * @param pName The name of the call site
+   * @param pType The type of the call site, i.e., {@code ()V}
+   * @param pMethodId The id of the instrumented method
+   * @param pProbeId The id of the probe within the method
+   * @return The call site of the probe
+   */
+  public static FirstHitCallSite bootstrap(
+      MethodHandles.Lookup pLookup, String pName, MethodType pType, int pMethodId, int pProbeId) {
+    return new FirstHitCallSite(pMethodId, pProbeId);
+  }
+
+  /**
+   * Re-arms all call sites, such that each records its next execution again.
+   *
+   * <p>Sites that already fired fall back to recording when the current switch point is
+   * invalidated, and disable themselves again with the new one.
+   */
+  static synchronized void rearmAll() {
+    SwitchPoint previous = armed;
+    armed = new SwitchPoint();
+    SwitchPoint.invalidateAll(new SwitchPoint[] {previous});
+  }
+
+  private void hit() {
+    // Read the switch point before the hit: a reset in between re-arms the site again.
+    SwitchPoint current = armed;
+    CoverageTracker.hitProbe(methodId, probeId);
+    // Racing threads may record the hit more than once, which is harmless.
+    setTarget(current.guardWithTest(NO_OP, HIT.bindTo(this)));
+  }
+}
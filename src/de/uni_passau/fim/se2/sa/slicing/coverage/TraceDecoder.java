@@ -0,0 +1,128 @@
+package de.uni_passau.fim.se2.sa.slicing.coverage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Decodes events compressed by {@link TraceEncoder} and replays them backwards.
+ *
+ * <p>Runs are kept folded: a period is decoded once and replayed as often as it was repeated,
+ * hence the memory needed is bounded by the encoded size rather than by the number of events.
+ */
+final class TraceDecoder {
+
+  private long[] events = new long[64];
+  private int[] starts = new int[64];
+  private int[] lengths = new int[64];
+  private int[] repetitions = new int[64];
+  private int eventCount;
+  private int segmentCount;
+  private int previousMethod;
+
+  /**
+   * Decodes events, replacing the previously decoded ones.
+   *
+   * @param pBuffer The encoded events, which are consumed completely
+   * @throws IOException if the encoding is malformed
+   */
+  void decode(ByteBuffer pBuffer) throws IOException {
+    eventCount = 0;
+    segmentCount = 0;
+    previousMethod = 0;
+    long total = readVarint(pBuffer);
+    long decoded = 0;
+    while (pBuffer.hasRemaining()) {
+      long header = readVarint(pBuffer);
+      int start = eventCount;
+      if ((header & 1) == 0) {
+        readEvent(pBuffer, header);
+        addSegment(start, 1, 1);
+        decoded++;
+      } else {
+        long period = header >>> 1;
+        long repeated = readVarint(pBuffer);
+        if (period < 1 || period > TraceEncoder.MAX_PERIOD || repeated < 2) {
+          throw new IOException("Corrupt trace run of " + repeated + " * " + period + " events");
+        }
+        for (int i = 0; i < period; i++) {
+          readEvent(pBuffer, readVarint(pBuffer));
+        }
+        addSegment(start, (int) period, (int) Math.min(repeated, Integer.MAX_VALUE));
+        decoded += period * repeated;
+      }
+    }
+    if (decoded != total) {
+      throw new IOException("Expected " + total + " trace events but decoded " + decoded);
+    }
+  }
+
+  /**
+   * Replays the decoded events from the last to the first.
+   *
+   * @param pConsumer The consumer of the events
+   */
+  void replayBackward(LongConsumer pConsumer) {
+    for (int segment = segmentCount - 1; segment >= 0; segment--) {
+      int start = starts[segment];
+      int end = start + lengths[segment];
+      for (int repetition = 0; repetition < repetitions[segment]; repetition++) {
+        for (int i = end - 1; i >= start; i--) {
+          pConsumer.accept(events[i]);
+        }
+      }
+    }
+  }
+
+  private void readEvent(ByteBuffer pBuffer, long pHeader) throws IOException {
+    if ((pHeader & 1) != 0) {
+      throw new IOException("Nested trace runs are not supported");
+    }
+    int method = (int) (previousMethod + unzigzag(pHeader >>> 1));
+    int block = (int) unzigzag(readVarint(pBuffer));
+    if (eventCount == events.length) {
+      events = Arrays.copyOf(events, eventCount * 2);
+    }
+    events[eventCount++] = TraceReplay.encode(method, block);
+    previousMethod = method;
+  }
+
+  private void addSegment(int pStart, int pLength, int pRepetitions) {
+    if (pRepetitions == 1
+        && segmentCount > 0
+        && repetitions[segmentCount - 1] == 1
+        && starts[segmentCount - 1] + lengths[segmentCount - 1] == pStart) {
+      lengths[segmentCount - 1] += pLength;
+      return;
+    }
+    if (segmentCount == starts.length) {
+      starts = Arrays.copyOf(starts, segmentCount * 2);
+      lengths = Arrays.copyOf(lengths, segmentCount * 2);
+      repetitions = Arrays.copyOf(repetitions, segmentCount * 2);
+    }
+    starts[segmentCount] = pStart;
+    lengths[segmentCount] = pLength;
+    repetitions[segmentCount] = pRepetitions;
+    segmentCount++;
+  }
+
+  private static long readVarint(ByteBuffer pBuffer) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      if (!pBuffer.hasRemaining()) {
+        throw new IOException("Truncated trace varint");
+      }
+      byte b = pBuffer.get();
+      value |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new IOException("Trace varint is too long");
+  }
+
+  private static long unzigzag(long pValue) {
+    return pValue >>> 1 ^ -(pValue & 1);
+  }
+}
@@ -0,0 +1,122 @@
+package de.uni_passau.fim.se2.sa.slicing.coverage;
+
+import java.util.Arrays;
+
+/**
+ * Compresses trace events for the trace file.
+ *
+ * <p>The encoded form starts with the number of events, followed by a sequence of tokens. All
+ * numbers are unsigned LEB128 varints; signed numbers are zigzag-encoded before.
+ *
+ * <ul>
+ *   <li>An event token has a header whose lowest bit is {@code 0} and whose remaining bits hold
+ *       the difference of the event's method id to that of the preceding event, followed by the
+ *       event's block id. Since consecutive events mostly belong to the same method and blocks have
+ *       small ids, an event usually takes two bytes instead of eight.
+ *   <li>A run token has a header whose lowest bit is {@code 1} and whose remaining bits hold the
+ *       length of a period, followed by the number of repetitions and the event tokens of a single
+ *       period. Runs fold the iterations of loops whose bodies execute the same blocks every time.
+ * </ul>
+ */
+final class TraceEncoder {
+
+  /** The maximum number of events in the period of a run. */
+  static final int MAX_PERIOD = 32;
+
+  private byte[] bytes = new byte[256];
+  private int size;
+  private int previousMethod;
+
+  /**
+   * Encodes events, replacing the previously encoded ones.
+   *
+   * <p>At every position, the periods up to {@link #MAX_PERIOD} are tried in ascending order and
+   * the run that saves the most events is taken. A period is only scanned if its second iteration
+   * starts with the same event, and the search stops as soon as no longer period could save more
+   * than the best run found, since a run of period {@code p} saves at most all but {@code p} of
+   * the remaining events.
+   *
+   * @param pEvents The events as encoded by {@link TraceReplay#encode(int, int)}
+   * @param pCount The number of events to encode
+   * @return The number of encoded bytes, see {@link #bytes()}
+   */
+  int encode(long[] pEvents, int pCount) {
+    size = 0;
+    previousMethod = 0;
+    writeVarint(pCount);
+    int position = 0;
+    while (position < pCount) {
+      int bestPeriod = 0;
+      int bestRepetitions = 0;
+      int maxPeriod = Math.min(MAX_PERIOD, (pCount - position) / 2);
+      for (int period = 1; period <= maxPeriod; period++) {
+        if ((bestRepetitions - 1) * bestPeriod >= pCount - position - period) {
+          break;
+        }
+        if (pEvents[position + period] != pEvents[position]) {
+          continue;
+        }
+        int repetitions = 1;
+        while (position + (repetitions + 1) * period <= pCount
+            && Arrays.equals(
+                pEvents,
+                position,
+                position + period,
+                pEvents,
+                position + repetitions * period,
+                position + (repetitions + 1) * period)) {
+          repetitions++;
+        }
+        if ((repetitions - 1) * period > (bestRepetitions - 1) * bestPeriod) {
+          bestPeriod = period;
+          bestRepetitions = repetitions;
+        }
+      }
+
+      if (bestRepetitions > 1) {
+        writeVarint((long) bestPeriod << 1 | 1);
+        writeVarint(bestRepetitions);
+        for (int i = position; i < position + bestPeriod; i++) {
+          writeEvent(pEvents[i]);
+        }
+        position += bestRepetitions * bestPeriod;
+      } else {
+        writeEvent(pEvents[position++]);
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Provides the buffer of the encoded bytes, which is reused by the next call to {@link
+   * #encode(long[], int)}.
+   *
+   * @return The buffer, whose first bytes hold the encoded events
+   */
+  byte[] bytes() {
+    return bytes;
+  }
+
+  private void writeEvent(long pEvent) {
+    int method = (int) (pEvent >>> 32);
+    writeVarint(zigzag((long) method - previousMethod) << 1);
+    writeVarint(zigzag((int) pEvent));
+    previousMethod = method;
+  }
+
+  private void writeVarint(long pValue) {
+    if (size + 10 > bytes.length) {
+      bytes = Arrays.copyOf(bytes, bytes.length * 2);
+    }
+    long value = pValue;
+    while ((value & ~0x7FL) != 0) {
+      bytes[size++] = (byte) (value & 0x7F | 0x80);
+      value >>>= 7;
+    }
+    bytes[size++] = (byte) value;
+  }
+
+  private static long zigzag(long pValue) {
+    return pValue << 1 ^ pValue >> 63;
+  }
+}
@@ -0,0 +1,152 @@
+package de.uni_passau.fim.se2.sa.slicing.coverage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streams the records of a trace file written by {@link TraceFileWriter}.
+ *
+ * <p>The file is mapped in windows, hence only the thread table is held in memory while the
+ * records are read.
+ */
+final class TraceFileReader implements Closeable {
+
+  private final FileChannel channel;
+  private final long length;
+  private final int windowSize;
+  private final Map<Integer, String> threadNames = new HashMap<>();
+  private final TraceDecoder decoder = new TraceDecoder();
+  private MappedByteBuffer window;
+  private long windowStart;
+
+  /**
+   * Opens a trace file.
+   *
+   * @param pFile The trace file
+   * @param pLength The number of valid bytes, or {@code -1} to read the whole file
+   * @throws IOException if the file cannot be read or is not a trace file
+   */
+  TraceFileReader(Path pFile, long pLength) throws IOException {
+    this(pFile, pLength, TraceFileWriter.DEFAULT_WINDOW);
+  }
+
+  TraceFileReader(Path pFile, long pLength, int pWindowSize) throws IOException {
+    channel = FileChannel.open(pFile, StandardOpenOption.READ);
+    length = pLength < 0 ? channel.size() : pLength;
+    windowSize = pWindowSize;
+    try {
+      readThreads();
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Replays the events of the traced threads from the end of the file to its start.
+   *
+   * @param pReplays The replay of each thread index; threads without a replay are skipped
+   * @throws IOException if the file cannot be read
+   */
+  void replayBackward(Map<Integer, TraceReplay> pReplays) throws IOException {
+    long end = length;
+    while (end > TraceFileWriter.HEADER_BYTES) {
+      int recordLength = read(end - Integer.BYTES, Integer.BYTES, true).getInt();
+      long start = end - recordLength;
+      if (recordLength < 4 * Integer.BYTES || start < TraceFileWriter.HEADER_BYTES) {
+        throw new IOException("Corrupt trace record at " + end);
+      }
+      ByteBuffer record = read(start, recordLength, true);
+      if (record.getInt() == TraceFileWriter.EVENTS) {
+        int thread = record.getInt();
+        int size = record.getInt();
+        TraceReplay replay = pReplays.get(thread);
+        if (replay != null) {
+          decoder.decode(record.slice(record.position(), size));
+          decoder.replayBackward(replay::event);
+        }
+      }
+      end = start;
+    }
+  }
+
+  /**
+   * Provides the recorded threads.
+   *
+   * @return The thread names keyed by the index of the thread
+   */
+  Map<Integer, String> threadNames() {
+    return threadNames;
+  }
+
+  @Override
+  public void close() throws IOException {
+    window = null;
+    channel.close();
+  }
+
+  private void readThreads() throws IOException {
+    if (length < TraceFileWriter.HEADER_BYTES) {
+      throw new IOException("Not a trace file");
+    }
+    ByteBuffer header = read(0, TraceFileWriter.HEADER_BYTES, false);
+    if (header.getInt() != TraceFileWriter.MAGIC
+        || header.getInt() != TraceFileWriter.FORMAT_VERSION) {
+      throw new IOException("Not a trace file of version " + TraceFileWriter.FORMAT_VERSION);
+    }
+
+    long position = TraceFileWriter.HEADER_BYTES;
+    while (position < length) {
+      if (position + 3 * Integer.BYTES > length) {
+        throw new IOException("Truncated trace record at " + position);
+      }
+      ByteBuffer prefix = read(position, 3 * Integer.BYTES, false);
+      int tag = prefix.getInt();
+      int thread = prefix.getInt();
+      int size = prefix.getInt();
+      if (size < 0) {
+        throw new IOException("Corrupt trace record at " + position);
+      }
+      if (tag != TraceFileWriter.THREAD && tag != TraceFileWriter.EVENTS) {
+        throw new IOException("Unknown trace record " + tag + " at " + position);
+      }
+      long recordLength = 4L * Integer.BYTES + size;
+      if (position + recordLength > length) {
+        throw new IOException("Truncated trace record at " + position);
+      }
+      if (tag == TraceFileWriter.THREAD) {
+        byte[] name = new byte[size];
+        read(position + 3 * Integer.BYTES, size, false).get(name);
+        threadNames.put(thread, new String(name, StandardCharsets.UTF_8));
+      }
+      position += recordLength;
+    }
+  }
+
+  /**
+   * Provides a buffer of the given range of the file.
+   *
+   * @param pBackward Whether the file is read backwards, in which case a new window ends at the
+   *     range instead of starting at it
+   */
+  private ByteBuffer read(long pPosition, int pLength, boolean pBackward) throws IOException {
+    if (window == null
+        || pPosition < windowStart
+        || pPosition + pLength > windowStart + window.capacity()) {
+      long start =
+          pBackward ? Math.max(0, Math.min(pPosition, pPosition + pLength - windowSize)) : pPosition;
+      long size = Math.min(Math.max(windowSize, pLength), length - start);
+      windowStart = start;
+      window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+    }
+    return window.slice((int) (pPosition - windowStart), pLength);
+  }
+}
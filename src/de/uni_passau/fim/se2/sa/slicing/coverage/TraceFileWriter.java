@@ -0,0 +1,138 @@
+package de.uni_passau.fim.se2.sa.slicing.coverage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends trace records to a memory-mapped file.
+ *
+ * <p>The file starts with a header of a magic number and a format version, followed by records.
+ * Every record starts with its tag and ends with its total length, such that the file can be read
+ * in both directions:
+ *
+ * <ul>
+ *   <li>a thread record ({@link #THREAD}) holds the index and the name of a recording thread;
+ *   <li>an event record ({@link #EVENTS}) holds the index of a thread and the size and bytes of
+ *       the thread's events as compressed by {@link TraceEncoder}.
+ * </ul>
+ *
+ * <p>The file is mapped in windows of a fixed size; the unused rest of the last window is cut off
+ * when the writer is closed.
+ */
+final class TraceFileWriter implements Closeable {
+
+  static final int MAGIC = 0x53545243;
+  static final int FORMAT_VERSION = 2;
+  static final int HEADER_BYTES = 2 * Integer.BYTES;
+  static final int THREAD = 1;
+  static final int EVENTS = 2;
+
+  /** The default size of the mapped windows in bytes. */
+  static final int DEFAULT_WINDOW = 64 * 1024 * 1024;
+
+  private final FileChannel channel;
+  private final int windowSize;
+  private MappedByteBuffer window;
+  private long windowStart;
+  private long position;
+  private int generation;
+
+  TraceFileWriter(Path pFile) throws IOException {
+    this(pFile, DEFAULT_WINDOW);
+  }
+
+  TraceFileWriter(Path pFile, int pWindowSize) throws IOException {
+    channel =
+        FileChannel.open(
+            pFile,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    windowSize = pWindowSize;
+    writeHeader();
+  }
+
+  /**
+   * Provides the number of times the file was restarted by {@link #reset()}.
+   *
+   * @return The generation of the file's content
+   */
+  synchronized int generation() {
+    return generation;
+  }
+
+  /**
+   * Provides the number of bytes written so far.
+   *
+   * @return The length of the valid content of the file
+   */
+  synchronized long length() {
+    return position;
+  }
+
+  synchronized void writeThread(int pThread, String pName) throws IOException {
+    byte[] name = pName.getBytes(StandardCharsets.UTF_8);
+    int length = 4 * Integer.BYTES + name.length;
+    ByteBuffer buffer = reserve(length);
+    buffer.putInt(THREAD).putInt(pThread).putInt(name.length).put(name).putInt(length);
+  }
+
+  /**
+   * Appends the events of a thread, which the caller encodes before, such that the writer is only
+   * locked for copying the bytes.
+   *
+   * @param pThread The index of the recording thread
+   * @param pEncoded The events as encoded by {@link TraceEncoder#encode(long[], int)}
+   * @param pSize The number of encoded bytes
+   * @throws IOException if the file cannot be written
+   */
+  synchronized void writeEvents(int pThread, byte[] pEncoded, int pSize) throws IOException {
+    int length = 4 * Integer.BYTES + pSize;
+    ByteBuffer buffer = reserve(length);
+    buffer.putInt(EVENTS).putInt(pThread).putInt(pSize).put(pEncoded, 0, pSize).putInt(length);
+  }
+
+  /**
+   * Discards all records and starts a new generation of the file.
+   *
+   * @throws IOException if the file cannot be written
+   */
+  synchronized void reset() throws IOException {
+    window = null;
+    writeHeader();
+    generation++;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (window != null) {
+      window.force();
+      window = null;
+    }
+    channel.truncate(position);
+    channel.close();
+  }
+
+  private void writeHeader() throws IOException {
+    position = 0;
+    reserve(HEADER_BYTES).putInt(MAGIC).putInt(FORMAT_VERSION);
+  }
+
+  /** Provides a buffer for the next record, which must be filled completely. */
+  private ByteBuffer reserve(int pLength) throws IOException {
+    if (window == null || position + pLength > windowStart + window.capacity()) {
+      windowStart = position;
+      window = channel.map(FileChannel.MapMode.READ_WRITE, position, Math.max(windowSize, pLength));
+    }
+    ByteBuffer buffer = window.slice((int) (position - windowStart), pLength);
+    position += pLength;
+    return buffer;
+  }
+}
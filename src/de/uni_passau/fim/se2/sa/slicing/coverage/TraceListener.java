@@ -0,0 +1,30 @@
+package de.uni_passau.fim.se2.sa.slicing.coverage;
+
+/**
+ * Receives the executions of a traced method while they happen, instead of a recorded trace.
+ *
+ * @see TraceRecorder#addListener(String, String, String, String, TraceListener)
+ */
+public interface TraceListener {
+
+  /**
+   * Announces that an invocation of the method started.
+   *
+   * @return The listener for the instructions executed by the invocation
+   */
+  Invocation enterInvocation();
+
+  /** Receives the executed instructions of a single invocation in execution order. */
+  interface Invocation {
+
+    /**
+     * Visits an executed instruction.
+     *
+     * @param pIndex The index of the instruction in the method's instruction list
+     */
+    void visitInstruction(int pIndex);
+
+    /** Announces that the invocation ended, either normally or by an exception. */
+    void visitEnd();
+  }
+}
@@ -0,0 +1,627 @@
+package de.uni_passau.fim.se2.sa.slicing.coverage;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records the execution traces of methods that were instrumented with tracing block probes.
+ *
+ * <p>Every thread appends to a buffer of its own, which is registered when the thread records its
+ * first event. An event is a single {@code long} that holds the id of the method in its upper and
+ * the id of the executed block in its lower half; entering and returning from a method are
+ * recorded as markers, such that the blocks of different invocations can be told apart. The
+ * executed instructions of each invocation are reconstructed from the blocks when they are
+ * queried, using the instruction ranges registered with the {@link CoverageTracker}.
+ *
+ * <p>By default, the buffers grow to hold the whole trace. After {@link #recordTo(Path)}, the
+ * buffers have a fixed size and are flushed to a memory-mapped trace file whenever they are full,
+ * and the trace is streamed back from the file when it is queried; the heap usage is then
+ * independent of the length of the trace. The events are compressed in the file, folding repeated
+ * loop iterations into runs, see {@link TraceEncoder}.
+ *
+ * <p>In online mode, see {@link #setOnline(boolean)}, nothing is recorded at all. Instead, the
+ * events of methods with a {@link TraceListener} are passed on to the listener while they happen,
+ * and events of other methods are dropped.
+ *
+ * <p>Like the {@link CoverageTracker}, a thread can enter a named context, whose events are kept
+ * in a buffer of their own and are queried by the context's name instead of the thread's.
+ *
+ * <p>Methods left by an exception record their exit from a handler that rethrows the exception.
+ * Constructors have no such handler; their invocation ends when the trace continues in one of
+ * their callers. Traces must not be queried while threads are still recording.
+ */
+public final class TraceRecorder {
+
+  /** The number of events a thread buffers before they are flushed to the trace file. */
+  private static final int FILE_BUFFER_EVENTS = 8192;
+
+  private static final Queue<ThreadTrace> traces = new ConcurrentLinkedQueue<>();
+  private static final ThreadLocal<ThreadTrace> currentTrace =
+      ThreadLocal.withInitial(TraceRecorder::registerThread);
+  private static final AtomicInteger threadIndices = new AtomicInteger();
+
+  private static volatile TraceFileWriter sink = null;
+  private static Path sinkFile = null;
+  private static boolean shutdownHookInstalled = false;
+
+  private static volatile boolean online = false;
+
+  /** The listeners indexed by method id; replaced as a whole when a listener is added. */
+  private static volatile Listener[] listeners = new Listener[0];
+
+  private TraceRecorder() {}
+
+  /**
+   * Track the invocation of a traced method.
+   *
+   * @param pMethodId The id of the method as returned by {@link
+   *     CoverageTracker#registerMethod(String, String, String)}
+   */
+  // Needs to be public to be callable during test execution
+  public static void enterMethod(int pMethodId) {
+    if (online) {
+      currentTrace.get().enterOnline(pMethodId);
+    } else {
+      currentTrace.get().append(TraceReplay.encode(pMethodId, TraceReplay.ENTER));
+    }
+  }
+
+  /**
+   * Track the normal return from a traced method.
+   *
+   * @param pMethodId The id of the method as returned by {@link
+   *     CoverageTracker#registerMethod(String, String, String)}
+   */
+  // Needs to be public to be callable during test execution
+  public static void exitMethod(int pMethodId) {
+    if (online) {
+      currentTrace.get().exitOnline(pMethodId);
+    } else {
+      currentTrace.get().append(TraceReplay.encode(pMethodId, TraceReplay.EXIT));
+    }
+  }
+
+  /**
+   * Track the execution of a block of a traced method; the block is also marked as covered.
+   *
+   * @param pMethodId The id of the method as returned by {@link
+   *     CoverageTracker#registerMethod(String, String, String)}
+   * @param pBlockId The id of the block's probe
+   */
+  // Needs to be public to be callable during test execution
+  public static void traceBlock(int pMethodId, int pBlockId) {
+    if (online) {
+      currentTrace.get().blockOnline(pMethodId, pBlockId);
+    } else {
+      currentTrace.get().append(TraceReplay.encode(pMethodId, pBlockId));
+    }
+    CoverageTracker.hitProbe(pMethodId, pBlockId);
+  }
+
+  /**
+   * Records the events of the current thread into a new buffer until {@link #exitContext()} is
+   * called; the buffer is queried by the name of the context.
+   *
+   * @param pContext The name of the context, which should not be the name of a thread
+   * @see CoverageTracker#enterContext(String)
+   */
+  public static void enterContext(String pContext) {
+    ThreadTrace context =
+        new ThreadTrace(
+            pContext, Thread.currentThread(), threadIndices.getAndIncrement(), currentTrace.get());
+    traces.add(context);
+    currentTrace.set(context);
+  }
+
+  /**
+   * Ends the context the current thread entered last; its trace can be queried until the next
+   * {@link #reset()}.
+   *
+   * @throws IllegalStateException if the current thread is not in a context
+   */
+  public static void exitContext() {
+    ThreadTrace context = currentTrace.get();
+    Preconditions.checkState(context.previous != null, "No trace context was entered");
+    context.closed = true;
+    currentTrace.set(context.previous);
+  }
+
+  /**
+   * Removes the listeners of the methods of a class whose probes were removed, see {@link
+   * #removeListener(TraceListener)}.
+   *
+   * @param pOwner The internal name of the class
+   */
+  public static synchronized void removeListeners(String pOwner) {
+    for (Listener listener : listeners) {
+      if (listener != null && listener.owner.equals(pOwner)) {
+        removeListener(listener.listener);
+      }
+    }
+  }
+
+  /**
+   * Sets whether events are passed on to listeners instead of being recorded.
+   *
+   * @param pOnline {@code true} to pass events on to the listeners, {@code false} to record them
+   */
+  public static void setOnline(boolean pOnline) {
+    online = pOnline;
+  }
+
+  public static boolean isOnline() {
+    return online;
+  }
+
+  /**
+   * Adds a listener that receives the invocations of a method while it is executed in online
+   * mode; a previous listener of the method is replaced.
+   *
+   * @param pThreadName The name of the thread whose invocations are passed on, or {@code null}
+   *     for all threads
+   * @param pOwner The internal name of the class declaring the method
+   * @param pName The name of the method
+   * @param pDescriptor The descriptor of the method
+   * @param pListener The listener
+   */
+  public static synchronized void addListener(
+      String pThreadName,
+      String pOwner,
+      String pName,
+      String pDescriptor,
+      TraceListener pListener) {
+    int methodId = CoverageTracker.registerMethod(pOwner, pName, pDescriptor);
+    Listener[] updated = Arrays.copyOf(listeners, Math.max(listeners.length, methodId + 1));
+    updated[methodId] = new Listener(pThreadName, pOwner, pName, pDescriptor, pListener);
+    listeners = updated;
+  }
+
+  /**
+   * Removes a listener; invocations that have not ended yet, e.g., since a constructor was left by
+   * an exception that was not caught by a traced method, are ended.
+   *
+   * <p>Must not be called while threads are still executing the method.
+   *
+   * @param pListener The listener to remove
+   */
+  public static synchronized void removeListener(TraceListener pListener) {
+    Listener[] updated = listeners.clone();
+    for (int methodId = 0; methodId < updated.length; methodId++) {
+      if (updated[methodId] != null && updated[methodId].listener == pListener) {
+        updated[methodId] = null;
+      }
+    }
+    listeners = updated;
+    for (ThreadTrace trace : traces) {
+      trace.endOnline(pListener);
+    }
+  }
+
+  /**
+   * Records all further events to a memory-mapped trace file instead of the heap.
+   *
+   * <p>Events recorded before are discarded. The file is completed when the JVM shuts down or when
+   * the recording switches to another file.
+   *
+   * @param pFile The trace file, which is created or overwritten; {@code null} to record to the
+   *     heap again
+   * @throws IOException if the file cannot be created
+   */
+  public static synchronized void recordTo(Path pFile) throws IOException {
+    TraceFileWriter writer = pFile == null ? null : new TraceFileWriter(pFile);
+    if (!shutdownHookInstalled && writer != null) {
+      Runtime.getRuntime().addShutdownHook(new Thread(TraceRecorder::closeSink));
+      shutdownHookInstalled = true;
+    }
+    if (sink != null) {
+      sink.close();
+    }
+    traces.forEach(ThreadTrace::clear);
+    sinkFile = pFile;
+    sink = writer;
+  }
+
+  /**
+   * Provides the executed instructions of every recorded invocation of a method.
+   *
+   * @param pOwner The internal name of the class declaring the method
+   * @param pName The name of the method
+   * @param pDescriptor The descriptor of the method
+   * @return The instruction indices of each invocation in execution order, see {@link
+   *     CoverageTracker#getVisitedInstructions(String, String, String)}; an empty optional if the
+   *     method was not traced
+   */
+  public static Optional<List<int[]>> getExecutions(
+      String pOwner, String pName, String pDescriptor) {
+    return getExecutions(null, pOwner, pName, pDescriptor);
+  }
+
+  /**
+   * Provides the executed instructions of every invocation of a method by a single thread.
+   *
+   * <p>All executions are held in memory; use {@link #getTrace(String, String, String, String)}
+   * to stream long traces instead.
+   *
+   * @param pThreadName The name of the thread, or {@code null} for all threads
+   * @param pOwner The internal name of the class declaring the method
+   * @param pName The name of the method
+   * @param pDescriptor The descriptor of the method
+   * @return The instruction indices of each invocation in execution order; an empty optional if
+   *     the method was not traced
+   */
+  public static Optional<List<int[]>> getExecutions(
+      String pThreadName, String pOwner, String pName, String pDescriptor) {
+    Optional<ExecutionTrace> trace = getTrace(pThreadName, pOwner, pName, pDescriptor);
+    if (trace.isEmpty()) {
+      return Optional.empty();
+    }
+    List<int[]> executions = new ArrayList<>();
+    trace.get().replayBackward(() -> new CollectingInvocation(executions));
+    if (executions.isEmpty()) {
+      return Optional.empty();
+    }
+    // Invocations are announced backwards, i.e., in reverse order of their returns.
+    Collections.reverse(executions);
+    return Optional.of(executions);
+  }
+
+  /**
+   * Provides the trace of a method that can be replayed without holding it in memory.
+   *
+   * @param pThreadName The name of the thread, or {@code null} for all threads
+   * @param pOwner The internal name of the class declaring the method
+   * @param pName The name of the method
+   * @param pDescriptor The descriptor of the method
+   * @return The trace of the method, or an empty optional if the method is not instrumented with
+   *     block probes
+   */
+  public static Optional<ExecutionTrace> getTrace(
+      String pThreadName, String pOwner, String pName, String pDescriptor) {
+    Optional<int[]> boundaries = CoverageTracker.getBlockBoundaries(pOwner, pName, pDescriptor);
+    if (boundaries.isEmpty()) {
+      return Optional.empty();
+    }
+    int methodId = CoverageTracker.registerMethod(pOwner, pName, pDescriptor);
+    TraceFileWriter writer;
+    Path file;
+    synchronized (TraceRecorder.class) {
+      writer = sink;
+      file = sinkFile;
+    }
+    if (writer == null) {
+      return Optional.of(
+          pVisitor -> {
+            for (ThreadTrace trace : traces) {
+              if (pThreadName == null || pThreadName.equals(trace.threadName)) {
+                trace.replayBackward(new TraceReplay(methodId, boundaries.get(), pVisitor));
+              }
+            }
+          });
+    }
+
+    for (ThreadTrace trace : traces) {
+      trace.flush(writer);
+    }
+    long length = writer.length();
+    return Optional.of(
+        pVisitor -> {
+          try (TraceFileReader reader = new TraceFileReader(file, length)) {
+            Map<Integer, TraceReplay> replays = new HashMap<>();
+            reader
+                .threadNames()
+                .forEach(
+                    (pThread, pThreadNameInFile) -> {
+                      if (pThreadName == null || pThreadName.equals(pThreadNameInFile)) {
+                        replays.put(pThread, new TraceReplay(methodId, boundaries.get(), pVisitor));
+                      }
+                    });
+            reader.replayBackward(replays);
+            replays.values().forEach(TraceReplay::finish);
+          } catch (IOException e) {
+            throw new UncheckedIOException("Could not read trace file " + file, e);
+          }
+        });
+  }
+
+  /**
+   * Discards all recorded traces.
+   *
+   * <p>Only intended for use during testing.
+   */
+  @VisibleForTesting
+  public static void reset() {
+    traces.removeIf(ThreadTrace::isTerminated);
+    traces.forEach(ThreadTrace::clear);
+    TraceFileWriter writer = sink;
+    if (writer != null) {
+      try {
+        writer.reset();
+      } catch (IOException e) {
+        throw new UncheckedIOException("Could not reset trace file", e);
+      }
+    }
+  }
+
+  private static ThreadTrace registerThread() {
+    Thread thread = Thread.currentThread();
+    ThreadTrace trace =
+        new ThreadTrace(thread.getName(), thread, threadIndices.getAndIncrement(), null);
+    traces.add(trace);
+    return trace;
+  }
+
+  private static synchronized void closeSink() {
+    TraceFileWriter writer = sink;
+    if (writer == null) {
+      return;
+    }
+    sink = null;
+    try {
+      for (ThreadTrace trace : traces) {
+        trace.flush(writer);
+      }
+      writer.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  private static Listener listener(int pMethodId, String pThreadName) {
+    Listener[] current = listeners;
+    if (pMethodId >= current.length) {
+      return null;
+    }
+    Listener listener = current[pMethodId];
+    if (listener == null
+        || (listener.threadName != null && !listener.threadName.equals(pThreadName))) {
+      return null;
+    }
+    return listener;
+  }
+
+  /** A listener together with the method it listens to. */
+  private static final class Listener {
+
+    private final String threadName;
+    private final String owner;
+    private final String name;
+    private final String descriptor;
+    private final TraceListener listener;
+    private volatile int[] boundaries;
+
+    private Listener(
+        String pThreadName,
+        String pOwner,
+        String pName,
+        String pDescriptor,
+        TraceListener pListener) {
+      threadName = pThreadName;
+      owner = pOwner;
+      name = pName;
+      descriptor = pDescriptor;
+      listener = pListener;
+    }
+
+    /** Provides the instruction ranges of the blocks, which are known once the method is loaded. */
+    private int[] boundaries() {
+      int[] result = boundaries;
+      if (result == null) {
+        result = CoverageTracker.getBlockBoundaries(owner, name, descriptor).orElseThrow();
+        boundaries = result;
+      }
+      return result;
+    }
+  }
+
+  /** Collects the instructions of an invocation, which are visited backwards. */
+  private static final class CollectingInvocation implements ExecutionTrace.Invocation {
+
+    private final List<int[]> executions;
+    private final int position;
+    private int[] instructions = new int[64];
+    private int size;
+
+    private CollectingInvocation(List<int[]> pExecutions) {
+      executions = pExecutions;
+      position = pExecutions.size();
+      pExecutions.add(null);
+    }
+
+    @Override
+    public void visitInstruction(int pIndex) {
+      if (size == instructions.length) {
+        instructions = Arrays.copyOf(instructions, size * 2);
+      }
+      instructions[size++] = pIndex;
+    }
+
+    @Override
+    public void visitEnd() {
+      int[] execution = new int[size];
+      for (int i = 0; i < size; i++) {
+        execution[i] = instructions[size - 1 - i];
+      }
+      executions.set(position, execution);
+    }
+  }
+
+  /**
+   * The events recorded by a single thread.
+   *
+   * <p>Only the owning thread appends; other threads read or flush the events when the traces are
+   * queried.
+   */
+  private static final class ThreadTrace {
+
+    private final String threadName;
+    private final int index;
+    private final WeakReference<Thread> thread;
+    private long[] events = new long[1024];
+    private int size;
+    private int writtenGeneration = -1;
+    private TraceEncoder encoder;
+
+    // The open invocations of listened methods in online mode, innermost last.
+    private int[] frameMethods = new int[16];
+    private Listener[] frameListeners = new Listener[16];
+    private TraceListener.Invocation[] frameInvocations = new TraceListener.Invocation[16];
+    private int depth;
+
+    /** The trace of the thread that entered this context, or {@code null} for a thread. */
+    private final ThreadTrace previous;
+
+    private volatile boolean closed = false;
+
+    private ThreadTrace(String pName, Thread pThread, int pIndex, ThreadTrace pPrevious) {
+      threadName = pName;
+      index = pIndex;
+      thread = new WeakReference<>(pThread);
+      previous = pPrevious;
+    }
+
+    private void append(long pEvent) {
+      if (size == events.length) {
+        TraceFileWriter writer = sink;
+        if (writer != null && events.length >= FILE_BUFFER_EVENTS) {
+          flush(writer);
+        } else {
+          events = Arrays.copyOf(events, writer != null ? FILE_BUFFER_EVENTS : size * 2);
+        }
+      }
+      events[size++] = pEvent;
+    }
+
+    private synchronized void flush(TraceFileWriter pWriter) {
+      if (size == 0) {
+        return;
+      }
+      if (encoder == null) {
+        encoder = new TraceEncoder();
+      }
+      // Encode before locking the writer, which is shared by all threads.
+      int encodedSize = encoder.encode(events, size);
+      try {
+        synchronized (pWriter) {
+          if (writtenGeneration != pWriter.generation()) {
+            pWriter.writeThread(index, threadName);
+            writtenGeneration = pWriter.generation();
+          }
+          pWriter.writeEvents(index, encoder.bytes(), encodedSize);
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException("Could not write trace file", e);
+      }
+      size = 0;
+    }
+
+    private void enterOnline(int pMethodId) {
+      Listener listener = listener(pMethodId, threadName);
+      if (listener != null) {
+        pushFrame(pMethodId, listener);
+      }
+    }
+
+    private void exitOnline(int pMethodId) {
+      if (listener(pMethodId, threadName) == null) {
+        return;
+      }
+      int frame = findFrame(pMethodId);
+      if (frame >= 0) {
+        popFrames(frame);
+      }
+    }
+
+    private void blockOnline(int pMethodId, int pBlockId) {
+      Listener listener = listener(pMethodId, threadName);
+      if (listener == null) {
+        return;
+      }
+      int frame = findFrame(pMethodId);
+      if (frame < 0) {
+        // The invocation started before the listener was added.
+        pushFrame(pMethodId, listener);
+        frame = depth - 1;
+      }
+      // Invocations above were left by an exception, hence they recorded no return.
+      popFrames(frame + 1);
+      int[] boundaries = listener.boundaries();
+      if (pBlockId + 1 >= boundaries.length) {
+        // A block of a previous instrumentation, executed by an invocation that started before.
+        return;
+      }
+      TraceListener.Invocation invocation = frameInvocations[frame];
+      for (int insn = boundaries[pBlockId]; insn < boundaries[pBlockId + 1]; insn++) {
+        invocation.visitInstruction(insn);
+      }
+    }
+
+    private synchronized void endOnline(TraceListener pListener) {
+      for (int frame = 0; frame < depth; frame++) {
+        if (frameListeners[frame].listener == pListener) {
+          popFrames(frame);
+          return;
+        }
+      }
+    }
+
+    private int findFrame(int pMethodId) {
+      int frame = depth - 1;
+      while (frame >= 0 && frameMethods[frame] != pMethodId) {
+        frame--;
+      }
+      return frame;
+    }
+
+    private void pushFrame(int pMethodId, Listener pListener) {
+      if (depth == frameMethods.length) {
+        frameMethods = Arrays.copyOf(frameMethods, depth * 2);
+        frameListeners = Arrays.copyOf(frameListeners, depth * 2);
+        frameInvocations = Arrays.copyOf(frameInvocations, depth * 2);
+      }
+      frameMethods[depth] = pMethodId;
+      frameListeners[depth] = pListener;
+      frameInvocations[depth] = pListener.listener.enterInvocation();
+      depth++;
+    }
+
+    private void popFrames(int pDepth) {
+      while (depth > pDepth) {
+        depth--;
+        frameInvocations[depth].visitEnd();
+        frameInvocations[depth] = null;
+        frameListeners[depth] = null;
+      }
+    }
+
+    private void replayBackward(TraceReplay pReplay) {
+      for (int i = size - 1; i >= 0; i--) {
+        pReplay.event(events[i]);
+      }
+      pReplay.finish();
+    }
+
+    private boolean isTerminated() {
+      Thread owner = thread.get();
+      return closed || owner == null || owner.getState() == Thread.State.TERMINATED;
+    }
+
+    private synchronized void clear() {
+      size = 0;
+      writtenGeneration = -1;
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package de.uni_passau.fim.se2.sa.slicing.coverage;
+
+import java.util.Arrays;
+
+/**
+ * Splits the events of a single thread into the invocations of one method while the events are
+ * fed from the last to the first.
+ *
+ * <p>An invocation starts at its return marker or, if it was left by an exception, at its last
+ * block, and ends at its entry marker. Frames of other methods are tracked as well, such that
+ * the invocations of a recursive method are told apart.
+ */
+final class TraceReplay {
+
+  static final int ENTER = -1;
+  static final int EXIT = -2;
+
+  private final int methodId;
+  private final int[] boundaries;
+  private final ExecutionTrace.Visitor visitor;
+
+  private int[] methods = new int[16];
+  private ExecutionTrace.Invocation[] invocations = new ExecutionTrace.Invocation[16];
+  private int depth;
+
+  TraceReplay(int pMethodId, int[] pBoundaries, ExecutionTrace.Visitor pVisitor) {
+    methodId = pMethodId;
+    boundaries = pBoundaries;
+    visitor = pVisitor;
+  }
+
+  static long encode(int pMethodId, int pBlockId) {
+    return (long) pMethodId << 32 | (pBlockId & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Processes the event preceding all events processed so far.
+   *
+   * @param pEvent The event as encoded by {@link #encode(int, int)}
+   */
+  void event(long pEvent) {
+    int method = (int) (pEvent >>> 32);
+    int block = (int) pEvent;
+    if (block == EXIT) {
+      push(method);
+      return;
+    }
+
+    int frame = depth - 1;
+    while (frame >= 0 && methods[frame] != method) {
+      frame--;
+    }
+    if (block == ENTER) {
+      if (frame >= 0) {
+        popTo(frame);
+      }
+      return;
+    }
+    if (frame < 0) {
+      // The method was left by an exception, hence it recorded no return marker.
+      push(method);
+      frame = depth - 1;
+    }
+    // Frames above were entered before the trace started.
+    popTo(frame + 1);
+    ExecutionTrace.Invocation invocation = invocations[frame];
+    // Blocks beyond the current ones stem from a previous instrumentation of the method.
+    if (invocation != null && block + 1 < boundaries.length) {
+      for (int insn = boundaries[block + 1] - 1; insn >= boundaries[block]; insn--) {
+        invocation.visitInstruction(insn);
+      }
+    }
+  }
+
+  /** Ends all invocations that are still open at the start of the trace. */
+  void finish() {
+    popTo(0);
+  }
+
+  private void push(int pMethod) {
+    if (depth == methods.length) {
+      methods = Arrays.copyOf(methods, depth * 2);
+      invocations = Arrays.copyOf(invocations, depth * 2);
+    }
+    methods[depth] = pMethod;
+    invocations[depth] = pMethod == methodId ? visitor.visitInvocation() : null;
+    depth++;
+  }
+
+  private void popTo(int pDepth) {
+    while (depth > pDepth) {
+      depth--;
+      if (invocations[depth] != null) {
+        invocations[depth].visitEnd();
+        invocations[depth] = null;
+      }
+    }
+  }
+}
@@ -13,6 +13,8 @@
 
 public class DataDependenceGraph extends Graph {
 
+  private ProgramGraph thinDdg;
+
   DataDependenceGraph(ClassNode pClassNode, MethodNode pMethodNode) {
     super(pClassNode, pMethodNode);
   }
@@ -40,6 +42,7 @@ public class DataDependenceGraph extends Graph {
 
   public ProgramGraph computeResult() {
     if (cfg == null || methodNode == null || classNode == null) {
+      thinDdg = new ProgramGraph();
       return new ProgramGraph();
     }
 
@@ -50,15 +53,20 @@ public ProgramGraph computeResult() {
       // Add all nodes from CFG to DDG
       cfg.getNodes().forEach(ddg::addNode);
 
+      ProgramGraph thinGraph = new ProgramGraph();
+      cfg.getNodes().forEach(thinGraph::addNode);
+
       // Step 1: Collect all definitions and uses with proper node tracking
       Map<Node, Set<DefUse>> gen = new HashMap<>();
       Map<Node, Set<DefUse>> kill = new HashMap<>();
       Map<Node, Set<Variable>> uses = new HashMap<>();
+      Map<Node, Set<Variable>> basePointers = new HashMap<>();
+      Map<Node, Set<Variable>> aliasDefs = new HashMap<>();
 
       // Track all definitions in the program
       Set<DefUse> allDefs = new HashSet<>();
 
-      collectDefUseInfo(className, gen, kill, uses, allDefs);
+      collectDefUseInfo(className, gen, kill, uses, basePointers, aliasDefs, allDefs);
 
       // Step 2: Perform reaching definitions analysis
       Map<Node, Set<DefUse>> reachIn = new HashMap<>();
@@ -67,8 +75,9 @@ public ProgramGraph computeResult() {
       performReachingDefsAnalysis(gen, kill, reachIn, reachOut);
 
       // Step 3: Build DDG edges based on def-use chains
-      buildDDGEdges(ddg, reachIn, uses);
+      buildDDGEdges(ddg, thinGraph, reachIn, uses, basePointers, aliasDefs);
 
+      thinDdg = thinGraph;
       return ddg;
 
     } catch (Exception e) {
@@ -76,6 +85,7 @@ public ProgramGraph computeResult() {
       // Fallback: return empty DDG with just nodes
       ProgramGraph ddg = new ProgramGraph();
       cfg.getNodes().forEach(ddg::addNode);
+      thinDdg = ddg;
       return ddg;
     }
   }
@@ -84,6 +94,8 @@ private void collectDefUseInfo(String className,
                                  Map<Node, Set<DefUse>> gen,
                                  Map<Node, Set<DefUse>> kill,
                                  Map<Node, Set<Variable>> uses,
+                                 Map<Node, Set<Variable>> basePointers,
+                                 Map<Node, Set<Variable>> aliasDefs,
                                  Set<DefUse> allDefs) throws AnalyzerException {
 
     // Initialize maps
@@ -91,6 +103,8 @@ private void collectDefUseInfo(String className,
       gen.put(node, new HashSet<>());
       kill.put(node, new HashSet<>());
       uses.put(node, new HashSet<>());
+      basePointers.put(node, new HashSet<>());
+      aliasDefs.put(node, new HashSet<>());
     });
 
     // First pass: collect all definitions and uses
@@ -103,11 +117,29 @@ private void collectDefUseInfo(String className,
           DefUse defUse = new DefUse(node, def);
           gen.get(node).add(defUse);
           allDefs.add(defUse);
+          collectBasePointers(def, basePointers.get(node));
         }
 
         // Get variables used by this instruction
         Collection<Variable> used = DataFlowAnalysis.usedBy(className, methodNode, insn);
         uses.get(node).addAll(used);
+        for (Variable use : used) {
+          collectBasePointers(use, basePointers.get(node));
+        }
+        // A dereferenced variable whose value is used as well, e.g., o in use(o, o.f), carries it
+        if (!basePointers.get(node).isEmpty()) {
+          basePointers
+              .get(node)
+              .removeAll(DataFlowAnalysis.valuesUsedBy(className, methodNode, insn));
+        }
+
+        // A field is also "defined" when its base pointer is redefined, e.g., o.f by o = p
+        for (Variable def : defs) {
+          if (def instanceof ObjectField objectField
+              && !Collections.disjoint(objectField.value.getVariables(), defs)) {
+            aliasDefs.get(node).add(def);
+          }
+        }
       }
     }
 
@@ -165,24 +197,56 @@ private void performReachingDefsAnalysis(
     }
   }
 
+  /**
+   * Collects the variables that are dereferenced by a field access, e.g., {@code o} in {@code
+   * o.f}; their values are pointers to the accessed object, not producers of the value. Variables
+   * whose values are used at the same node as well are removed afterwards.
+   */
+  private static void collectBasePointers(Variable pVariable, Set<Variable> pBasePointers) {
+    if (pVariable instanceof ObjectField objectField) {
+      pBasePointers.addAll(objectField.value.getVariables());
+    }
+  }
+
   private void buildDDGEdges(ProgramGraph ddg,
+                             ProgramGraph thinGraph,
                              Map<Node, Set<DefUse>> reachIn,
-                             Map<Node, Set<Variable>> uses) {
+                             Map<Node, Set<Variable>> uses,
+                             Map<Node, Set<Variable>> basePointers,
+                             Map<Node, Set<Variable>> aliasDefs) {
 
     // For each node and each variable use in that node,
     // find all reaching definitions and add edges
     for (Node useNode : cfg.getNodes()) {
       for (Variable usedVar : uses.get(useNode)) {
+        boolean valueFlow = !basePointers.get(useNode).contains(usedVar);
         // Find all reaching definitions for this use
         for (DefUse reachingDef : reachIn.get(useNode)) {
           if (reachingDef.variable.equals(usedVar)) {
             ddg.addEdge(reachingDef.node, useNode);
+            if (valueFlow && !aliasDefs.get(reachingDef.node).contains(usedVar)) {
+              thinGraph.addEdge(reachingDef.node, useNode);
+            }
           }
         }
       }
     }
   }
 
+  /**
+   * Provides the data dependences that carry values, as computed by the last call to {@link
+   * #computeResult()}.
+   *
+   * <p>In contrast to the full data-dependence graph, uses of a variable as the base pointer of a
+   * field access do not induce an edge, and neither do definitions of a field that only stem from
+   * redefining its base pointer. This is the dependence relation of thin slicing.
+   *
+   * @return The thin data-dependence graph, or {@code null} if the result was not computed yet
+   */
+  ProgramGraph getThinResult() {
+    return thinDdg;
+  }
+
 
   private static class DefUse {
     final Node node;
@@ -1,20 +1,33 @@
 package de.uni_passau.fim.se2.sa.slicing.graph;
 
+import br.usp.each.saeg.asm.defuse.ArrayRef;
+import br.usp.each.saeg.asm.defuse.ArrayValue;
 import br.usp.each.saeg.asm.defuse.DefUseAnalyzer;
 import br.usp.each.saeg.asm.defuse.DefUseChain;
 import br.usp.each.saeg.asm.defuse.DefUseFrame;
+import br.usp.each.saeg.asm.defuse.DefUseInterpreter;
+import br.usp.each.saeg.asm.defuse.Invoke;
+import br.usp.each.saeg.asm.defuse.Merge;
+import br.usp.each.saeg.asm.defuse.Value;
+import br.usp.each.saeg.asm.defuse.ValueHolder;
 import br.usp.each.saeg.asm.defuse.Variable;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
 
+import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
 import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.Frame;
 
 /** Provides a simple data-flow analysis. */
 class DataFlowAnalysis {
-  private static final DefUseAnalyzer ANALYZER = new DefUseAnalyzer();
+  private static final DefUseInterpreter INTERPRETER = new DefUseInterpreter();
+  // Keeps the frames before each instruction, whereas the def-use frames hold the state after it.
+  private static final Analyzer<Value> FRAME_ANALYZER = new Analyzer<>(INTERPRETER);
+  private static final DefUseAnalyzer ANALYZER = new DefUseAnalyzer(FRAME_ANALYZER, INTERPRETER);
 
   private DataFlowAnalysis() {}
 
@@ -51,6 +64,70 @@ static Collection<Variable> usedBy(
     }
   }
 
+  /**
+   * Provides the collection of {@link Variable}s whose values are used by the given instruction,
+   * i.e., the used variables except those that are only dereferenced to access one of their
+   * fields. A variable that is dereferenced and also used as a value, e.g., {@code o} in {@code
+   * use(o, o.f)}, is contained.
+   *
+   * @param pOwningClass The class that owns the method
+   * @param pMethodNode The method that contains the instruction
+   * @param pInstruction The instruction
+   * @return The collection of {@link Variable}s whose values are used by the given instruction
+   * @throws AnalyzerException In case an error occurs during the analysis
+   */
+  static Collection<Variable> valuesUsedBy(
+      String pOwningClass, MethodNode pMethodNode, AbstractInsnNode pInstruction)
+      throws AnalyzerException {
+    try {
+      ANALYZER.analyze(pOwningClass, pMethodNode);
+
+      int instructionIndex = findInstructionIndex(pMethodNode, pInstruction);
+      Frame<Value> before = FRAME_ANALYZER.getFrames()[instructionIndex];
+
+      Set<Variable> values = new HashSet<>();
+      if (before != null) {
+        // The operands are on top of the stack; values below them are included conservatively.
+        for (int i = 0; i < before.getStackSize(); i++) {
+          // The object reference of a field store is only dereferenced.
+          boolean storedInto =
+              pInstruction.getOpcode() == Opcodes.PUTFIELD && i == before.getStackSize() - 2;
+          if (!storedInto) {
+            collectValueVariables(before.getStack(i), values);
+          }
+        }
+      }
+      values.retainAll(ANALYZER.getDefUseFrames()[instructionIndex].getUses());
+
+      return values;
+
+    } catch (Exception e) {
+      throw new AnalyzerException(null, "Error analyzing variable values", e);
+    }
+  }
+
+  /** Collects the variables of a value without descending into the base pointers of fields. */
+  private static void collectValueVariables(Value pValue, Set<Variable> pVariables) {
+    if (pValue instanceof Variable variable) {
+      // For a field, this is the field itself, but not its base pointer.
+      pVariables.add(variable);
+    } else if (pValue instanceof Invoke invoke) {
+      invoke.values.forEach(value -> collectValueVariables(value, pVariables));
+    } else if (pValue instanceof Merge merge) {
+      collectValueVariables(merge.value1, pVariables);
+      collectValueVariables(merge.value2, pVariables);
+    } else if (pValue instanceof ValueHolder holder) {
+      collectValueVariables(holder.value, pVariables);
+    } else if (pValue instanceof ArrayValue array) {
+      collectValueVariables(array.arref, pVariables);
+      collectValueVariables(array.index, pVariables);
+    } else if (pValue instanceof ArrayRef array) {
+      array.counts.forEach(count -> collectValueVariables(count, pVariables));
+    } else if (pValue != null) {
+      pVariables.addAll(pValue.getVariables());
+    }
+  }
+
   private static int findInstructionIndex(MethodNode methodNode, AbstractInsnNode instruction) {
     AbstractInsnNode[] instructions = methodNode.instructions.toArray();
     for (int i = 0; i < instructions.length; i++) {
@@ -0,0 +1,281 @@
+package de.uni_passau.fim.se2.sa.slicing.graph;
+
+import br.usp.each.saeg.asm.defuse.DefUseAnalyzer;
+import br.usp.each.saeg.asm.defuse.DefUseFrame;
+import br.usp.each.saeg.asm.defuse.Variable;
+import de.uni_passau.fim.se2.sa.slicing.cfg.Node;
+import de.uni_passau.fim.se2.sa.slicing.cfg.ProgramGraph;
+import de.uni_passau.fim.se2.sa.slicing.coverage.ExecutionTrace;
+import de.uni_passau.fim.se2.sa.slicing.coverage.TraceListener;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+
+/**
+ * Computes dynamic slices from the executed instructions of a method, following Agrawal and
+ * Horgan's dynamic dependence graphs.
+ *
+ * <p>Every execution of an instruction is a separate occurrence. An occurrence is data dependent
+ * on the latest preceding occurrence that defined a variable it uses, and control dependent on
+ * the latest preceding occurrence of one of its static control dependences. The slice of a
+ * criterion contains the nodes of all occurrences that the last occurrence of the criterion
+ * transitively depends on, hence statements that were executed but did not influence the
+ * criterion in this execution are not part of it.
+ *
+ * <p>The definitions and uses of the instructions are taken from the static def-use analysis,
+ * such that only the order of the executed instructions needs to be recorded. The executions are
+ * replayed backwards, starting at the last occurrence of the criterion: an occurrence is in the
+ * slice if it defines a variable that is still needed, or if it is the latest occurrence of a
+ * control dependence of a node in the slice that is still pending. Only these sets are kept per
+ * invocation, hence the memory needed does not grow with the length of the trace.
+ *
+ * <p>Alternatively, a slice can be computed online, while the method is executed, see {@link
+ * #startInvocation(int, Consumer)}.
+ */
+final class DynamicSlicer {
+
+  private final IndexedGraph graph;
+  private final int entry;
+  private final int[] nodeOf;
+  private final DefUseFrame[] frames;
+  private final int[][] controlParents;
+  private final BitSet[] controlChildren;
+
+  DynamicSlicer(
+      ClassNode pClassNode, MethodNode pMethodNode, ProgramGraph pCFG, ProgramGraph pCDG)
+      throws AnalyzerException {
+    graph = new IndexedGraph(pCFG);
+    entry =
+        pCFG.getNodes().stream()
+            .filter(n -> n.toString().equals("\"Entry\""))
+            .mapToInt(graph::indexOf)
+            .findFirst()
+            .orElse(-1);
+
+    Map<Object, Integer> instructionIndices = new HashMap<>();
+    for (int i = 0; i < pMethodNode.instructions.size(); i++) {
+      instructionIndices.put(pMethodNode.instructions.get(i), i);
+    }
+    nodeOf = new int[pMethodNode.instructions.size()];
+    Arrays.fill(nodeOf, -1);
+    for (int node = 0; node < graph.size(); node++) {
+      Integer instruction = instructionIndices.get(graph.getNode(node).getInstruction());
+      if (instruction != null) {
+        nodeOf[instruction] = node;
+      }
+    }
+
+    DefUseAnalyzer analyzer = new DefUseAnalyzer();
+    analyzer.analyze(pClassNode.name, pMethodNode);
+    frames = analyzer.getDefUseFrames();
+
+    controlChildren = new BitSet[graph.size()];
+    for (int node = 0; node < graph.size(); node++) {
+      controlChildren[node] = new BitSet(graph.size());
+    }
+    controlParents = new int[graph.size()][];
+    for (int node = 0; node < graph.size(); node++) {
+      Collection<Node> parents = pCDG.getPredecessors(graph.getNode(node));
+      controlParents[node] = parents.stream().mapToInt(graph::indexOf).filter(i -> i >= 0).toArray();
+      for (int parent : controlParents[node]) {
+        controlChildren[parent].set(node);
+      }
+    }
+  }
+
+  /**
+   * Computes the dynamic slice of a criterion over several executions of the method.
+   *
+   * <p>Each execution is sliced separately from the last occurrence of the criterion in it; the
+   * result is the union of these slices.
+   *
+   * @param pCriterion The slicing criterion
+   * @param pExecutions The executed instructions of each execution, given as indices into the
+   *     method's instruction list in execution order
+   * @return The node indices in the slice; empty if the criterion was never executed
+   */
+  BitSet slice(Node pCriterion, Collection<int[]> pExecutions) {
+    return slice(pCriterion, ExecutionTrace.of(pExecutions));
+  }
+
+  /**
+   * Computes the dynamic slice of a criterion over all invocations in a trace.
+   *
+   * @param pCriterion The slicing criterion
+   * @param pTrace The trace of the method
+   * @return The node indices in the slice; empty if the criterion was never executed
+   */
+  BitSet slice(Node pCriterion, ExecutionTrace pTrace) {
+    int criterion = graph.indexOf(pCriterion);
+    BitSet slice = new BitSet(graph.size());
+    pTrace.replayBackward(() -> new InvocationSlicer(criterion, slice));
+    return slice;
+  }
+
+  /**
+   * Starts slicing an invocation while it is executed.
+   *
+   * @param pCriterion The node index of the slicing criterion
+   * @param pResult Receives the node indices of the slice when the invocation ends, if the
+   *     criterion was executed
+   * @return The listener for the instructions of the invocation
+   */
+  TraceListener.Invocation startInvocation(int pCriterion, Consumer<BitSet> pResult) {
+    return new OnlineInvocationSlicer(pCriterion, pResult);
+  }
+
+  IndexedGraph getGraph() {
+    return graph;
+  }
+
+  /** Slices a single invocation, whose instructions are visited from the last to the first. */
+  private final class InvocationSlicer implements ExecutionTrace.Invocation {
+
+    private final int criterion;
+    private final BitSet slice;
+    private final Set<Variable> needed = new HashSet<>();
+    private final BitSet pending = new BitSet(graph.size());
+    private boolean started = false;
+
+    private InvocationSlicer(int pCriterion, BitSet pSlice) {
+      criterion = pCriterion;
+      slice = pSlice;
+    }
+
+    @Override
+    public void visitInstruction(int pIndex) {
+      int node = pIndex < nodeOf.length ? nodeOf[pIndex] : -1;
+      if (node < 0) {
+        return;
+      }
+      DefUseFrame frame = frames[pIndex];
+      boolean relevant;
+      if (!started) {
+        relevant = node == criterion;
+        started = relevant;
+      } else {
+        relevant = false;
+        if (frame != null) {
+          for (Variable definition : frame.getDefinitions()) {
+            relevant |= needed.remove(definition);
+          }
+        }
+        if (pending.intersects(controlChildren[node])) {
+          pending.andNot(controlChildren[node]);
+          relevant = true;
+        }
+      }
+      if (!relevant) {
+        return;
+      }
+
+      slice.set(node);
+      if (frame != null) {
+        needed.addAll(frame.getUses());
+      }
+      pending.set(node);
+    }
+
+    @Override
+    public void visitEnd() {
+      // Every execution passes the entry of the method before its first instruction.
+      if (entry >= 0 && pending.intersects(controlChildren[entry])) {
+        slice.set(entry);
+      }
+    }
+  }
+
+  /**
+   * Slices a single invocation forwards: the dependences of the current value of every variable
+   * and of the latest occurrence of every branch node are kept as node sets, which are combined at
+   * every definition. The sets are never modified once created, hence they can be shared.
+   */
+  private final class OnlineInvocationSlicer implements TraceListener.Invocation {
+
+    private final int criterion;
+    private final Consumer<BitSet> result;
+    private final Map<Variable, BitSet> values = new HashMap<>();
+    private final BitSet[] branchSlices = new BitSet[graph.size()];
+    private final long[] lastOccurrence = new long[graph.size()];
+    private long time = 0;
+    private BitSet criterionSlice = null;
+
+    private OnlineInvocationSlicer(int pCriterion, Consumer<BitSet> pResult) {
+      criterion = pCriterion;
+      result = pResult;
+      Arrays.fill(lastOccurrence, -1);
+      if (entry >= 0) {
+        // Every execution passes the entry of the method before its first instruction.
+        BitSet entrySlice = new BitSet(graph.size());
+        entrySlice.set(entry);
+        branchSlices[entry] = entrySlice;
+        lastOccurrence[entry] = time;
+      }
+    }
+
+    @Override
+    public void visitInstruction(int pIndex) {
+      int node = pIndex < nodeOf.length ? nodeOf[pIndex] : -1;
+      if (node < 0) {
+        return;
+      }
+      time++;
+      DefUseFrame frame = frames[pIndex];
+      boolean defines = frame != null && !frame.getDefinitions().isEmpty();
+      boolean branch = !controlChildren[node].isEmpty();
+      if (!defines && !branch && node != criterion) {
+        // Nothing can observe the dependences of this occurrence.
+        return;
+      }
+
+      BitSet slice = new BitSet(graph.size());
+      slice.set(node);
+      if (frame != null) {
+        for (Variable use : frame.getUses()) {
+          BitSet value = values.get(use);
+          if (value != null) {
+            slice.or(value);
+          }
+        }
+      }
+      int controller = -1;
+      for (int parent : controlParents[node]) {
+        if (lastOccurrence[parent] >= 0
+            && (controller < 0 || lastOccurrence[parent] > lastOccurrence[controller])) {
+          controller = parent;
+        }
+      }
+      if (controller >= 0) {
+        slice.or(branchSlices[controller]);
+      }
+
+      if (defines) {
+        for (Variable definition : frame.getDefinitions()) {
+          values.put(definition, slice);
+        }
+      }
+      if (branch) {
+        branchSlices[node] = slice;
+        lastOccurrence[node] = time;
+      }
+      if (node == criterion) {
+        criterionSlice = slice;
+      }
+    }
+
+    @Override
+    public void visitEnd() {
+      if (criterionSlice != null) {
+        result.accept(criterionSlice);
+      }
+    }
+  }
+}
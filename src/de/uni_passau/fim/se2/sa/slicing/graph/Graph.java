@@ -51,6 +51,24 @@ public ProgramGraph getCFG() {
     return cfg;
   }
 
+  /**
+   * Returns the class the analysed method belongs to.
+   *
+   * @return the class node, or {@code null} if the graph was not built from bytecode
+   */
+  public ClassNode getClassNode() {
+    return classNode;
+  }
+
+  /**
+   * Returns the analysed method.
+   *
+   * @return the method node, or {@code null} if the graph was not built from bytecode
+   */
+  public MethodNode getMethodNode() {
+    return methodNode;
+  }
+
   /**
    * Computes the graph transformation and returns a new {@link ProgramGraph} of the result.
    *
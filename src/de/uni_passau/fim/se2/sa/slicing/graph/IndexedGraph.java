@@ -0,0 +1,276 @@
+package de.uni_passau.fim.se2.sa.slicing.graph;
+
+import de.uni_passau.fim.se2.sa.slicing.cfg.Node;
+import de.uni_passau.fim.se2.sa.slicing.cfg.ProgramGraph;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable, index-based snapshot of a {@link ProgramGraph}.
+ *
+ * <p>Nodes are numbered densely in the iteration order of {@link ProgramGraph#getNodes()}. The
+ * edges are stored in compressed sparse row form for both directions, such that traversals only
+ * operate on {@code int} arrays and {@link BitSet}s and do not allocate per visited node.
+ */
+public final class IndexedGraph {
+
+  private final Node[] nodes;
+  private final Map<Node, Integer> indices;
+
+  private final int[] predecessorOffsets;
+  private final int[] predecessors;
+  private final int[] successorOffsets;
+  private final int[] successors;
+
+  IndexedGraph(ProgramGraph pGraph) {
+    Collection<Node> graphNodes = pGraph.getNodes();
+    nodes = graphNodes.toArray(new Node[0]);
+    indices = new HashMap<>(nodes.length * 2);
+    for (int i = 0; i < nodes.length; i++) {
+      indices.put(nodes[i], i);
+    }
+
+    successorOffsets = new int[nodes.length + 1];
+    int[][] adjacency = new int[nodes.length][];
+    int[] inDegree = new int[nodes.length];
+    for (int i = 0; i < nodes.length; i++) {
+      Collection<Node> nodeSuccessors = pGraph.getSuccessors(nodes[i]);
+      int[] targets = new int[nodeSuccessors.size()];
+      int count = 0;
+      for (Node successor : nodeSuccessors) {
+        int target = indices.get(successor);
+        targets[count++] = target;
+        inDegree[target]++;
+      }
+      adjacency[i] = targets;
+      successorOffsets[i + 1] = successorOffsets[i] + count;
+    }
+
+    successors = new int[successorOffsets[nodes.length]];
+    predecessorOffsets = new int[nodes.length + 1];
+    for (int i = 0; i < nodes.length; i++) {
+      System.arraycopy(adjacency[i], 0, successors, successorOffsets[i], adjacency[i].length);
+      predecessorOffsets[i + 1] = predecessorOffsets[i] + inDegree[i];
+    }
+
+    predecessors = new int[successors.length];
+    int[] fill = new int[nodes.length];
+    for (int source = 0; source < nodes.length; source++) {
+      for (int target : adjacency[source]) {
+        predecessors[predecessorOffsets[target] + fill[target]++] = source;
+      }
+    }
+  }
+
+  /**
+   * Returns the number of nodes in the graph.
+   *
+   * @return The number of nodes
+   */
+  public int size() {
+    return nodes.length;
+  }
+
+  /**
+   * Returns the index of a node.
+   *
+   * @param pNode The node
+   * @return The index of the node, or {@code -1} if the node is not part of the graph
+   */
+  public int indexOf(Node pNode) {
+    Integer index = indices.get(pNode);
+    return index == null ? -1 : index;
+  }
+
+  /**
+   * Returns the node with the given index.
+   *
+   * @param pIndex The index of the node
+   * @return The node
+   */
+  public Node getNode(int pIndex) {
+    return nodes[pIndex];
+  }
+
+  /**
+   * Converts a set of node indices into the corresponding nodes.
+   *
+   * @param pIndices The node indices
+   * @return The nodes, ordered by their index
+   */
+  public Set<Node> toNodes(BitSet pIndices) {
+    Set<Node> result = new LinkedHashSet<>(pIndices.cardinality() * 2);
+    for (int i = pIndices.nextSetBit(0); i >= 0; i = pIndices.nextSetBit(i + 1)) {
+      result.add(nodes[i]);
+    }
+    return result;
+  }
+
+  /**
+   * Converts a collection of nodes into a set of node indices; nodes that are not part of the
+   * graph are ignored.
+   *
+   * @param pNodes The nodes
+   * @return The set of node indices
+   */
+  public BitSet toBitSet(Collection<Node> pNodes) {
+    BitSet result = new BitSet(nodes.length);
+    for (Node node : pNodes) {
+      Integer index = indices.get(node);
+      if (index != null) {
+        result.set(index);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Computes all nodes from which the start node is reachable, including the start node.
+   *
+   * @param pStart The index of the start node
+   * @return The indices of the reached nodes
+   */
+  BitSet backward(int pStart) {
+    return backward(pStart, null);
+  }
+
+  /**
+   * Computes all nodes from which the start node is reachable via nodes of the mask, including
+   * the start node.
+   *
+   * @param pStart The index of the start node
+   * @param pMask The nodes the traversal may visit, or {@code null} to permit all nodes
+   * @return The indices of the reached nodes
+   */
+  BitSet backward(int pStart, BitSet pMask) {
+    BitSet visited = new BitSet(nodes.length);
+    reach(pStart, predecessorOffsets, predecessors, pMask, visited);
+    return visited;
+  }
+
+  /**
+   * Computes all nodes that are reachable from the start node, including the start node.
+   *
+   * @param pStart The index of the start node
+   * @return The indices of the reached nodes
+   */
+  BitSet forward(int pStart) {
+    BitSet visited = new BitSet(nodes.length);
+    reach(pStart, successorOffsets, successors, null, visited);
+    return visited;
+  }
+
+  /**
+   * Computes the nodes from which the start node is reachable breadth-first, stopping at the
+   * limits of the given options.
+   *
+   * @param pStart The index of the start node
+   * @param pOptions The limits of the traversal
+   * @return The reached nodes in breadth-first order together with the truncation information
+   */
+  SliceResult backwardBounded(int pStart, SliceOptions pOptions) {
+    return backwardBounded(pStart, pOptions, null);
+  }
+
+  /**
+   * Computes the nodes from which the start node is reachable breadth-first via nodes of the mask,
+   * stopping at the limits of the given options.
+   *
+   * @param pStart The index of the start node
+   * @param pOptions The limits of the traversal
+   * @param pMask The nodes the traversal may visit, or {@code null} to permit all nodes
+   * @return The reached nodes in breadth-first order together with the truncation information
+   */
+  SliceResult backwardBounded(int pStart, SliceOptions pOptions, BitSet pMask) {
+    BitSet visited = new BitSet(nodes.length);
+    int[] queue = new int[nodes.length];
+    int tail = 0;
+    visited.set(pStart);
+    queue[tail++] = pStart;
+
+    int head = 0;
+    int distance = 0;
+    boolean truncated = false;
+    while (head < tail && !truncated) {
+      int levelEnd = tail;
+      if (distance == pOptions.maxDistance()) {
+        truncated = hasUnvisitedPredecessor(queue, head, levelEnd, visited, pMask);
+        break;
+      }
+      for (; head < levelEnd && !truncated; head++) {
+        int current = queue[head];
+        for (int i = predecessorOffsets[current]; i < predecessorOffsets[current + 1]; i++) {
+          int next = predecessors[i];
+          if (visited.get(next) || (pMask != null && !pMask.get(next))) {
+            continue;
+          }
+          if (tail == pOptions.maxNodes()) {
+            truncated = true;
+            break;
+          }
+          visited.set(next);
+          queue[tail++] = next;
+        }
+      }
+      if (tail > levelEnd) {
+        distance++;
+      }
+      head = levelEnd;
+    }
+
+    Set<Node> ordered = new LinkedHashSet<>(tail * 2);
+    for (int i = 0; i < tail; i++) {
+      ordered.add(nodes[queue[i]]);
+    }
+    return new SliceResult(ordered, distance, truncated);
+  }
+
+  private boolean hasUnvisitedPredecessor(
+      int[] pQueue, int pFrom, int pTo, BitSet pVisited, BitSet pMask) {
+    for (int q = pFrom; q < pTo; q++) {
+      int current = pQueue[q];
+      for (int i = predecessorOffsets[current]; i < predecessorOffsets[current + 1]; i++) {
+        int next = predecessors[i];
+        if (!pVisited.get(next) && (pMask == null || pMask.get(next))) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  int predecessorStart(int pNode) {
+    return predecessorOffsets[pNode];
+  }
+
+  int predecessorEnd(int pNode) {
+    return predecessorOffsets[pNode + 1];
+  }
+
+  int predecessor(int pPosition) {
+    return predecessors[pPosition];
+  }
+
+  private void reach(
+      int pStart, int[] pOffsets, int[] pTargets, BitSet pMask, BitSet pVisited) {
+    // Every node is pushed at most once, hence the worklist never exceeds the number of nodes.
+    int[] worklist = new int[nodes.length];
+    int top = 0;
+    pVisited.set(pStart);
+    worklist[top++] = pStart;
+    while (top > 0) {
+      int current = worklist[--top];
+      for (int i = pOffsets[current]; i < pOffsets[current + 1]; i++) {
+        int next = pTargets[i];
+        if (!pVisited.get(next) && (pMask == null || pMask.get(next))) {
+          pVisited.set(next);
+          worklist[top++] = next;
+        }
+      }
+    }
+  }
+}
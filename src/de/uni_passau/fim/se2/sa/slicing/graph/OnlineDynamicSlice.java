@@ -0,0 +1,47 @@
+package de.uni_passau.fim.se2.sa.slicing.graph;
+
+import de.uni_passau.fim.se2.sa.slicing.cfg.Node;
+import de.uni_passau.fim.se2.sa.slicing.coverage.TraceListener;
+import java.util.BitSet;
+import java.util.Set;
+
+/**
+ * A dynamic slice that is computed while the method is executed, such that no trace needs to be
+ * recorded.
+ *
+ * <p>The slice listens to the invocations of the method, see {@link
+ * de.uni_passau.fim.se2.sa.slicing.coverage.TraceRecorder#addListener}; it contains the same nodes
+ * as {@link ProgramDependenceGraph#dynamicSlice(Node, java.util.Collection)} for the same
+ * invocations. The memory needed depends on the size of the method but not on the number of
+ * executed instructions.
+ */
+public final class OnlineDynamicSlice implements TraceListener {
+
+  private final DynamicSlicer slicer;
+  private final int criterion;
+  private final BitSet slice;
+
+  OnlineDynamicSlice(DynamicSlicer pSlicer, int pCriterion) {
+    slicer = pSlicer;
+    criterion = pCriterion;
+    slice = new BitSet(pSlicer.getGraph().size());
+  }
+
+  @Override
+  public Invocation enterInvocation() {
+    return slicer.startInvocation(criterion, this::merge);
+  }
+
+  /**
+   * Provides the slice of all invocations that ended so far.
+   *
+   * @return A set of nodes that are in the dynamic slice; empty if the criterion was never executed
+   */
+  public synchronized Set<Node> getSlice() {
+    return slicer.getGraph().toNodes(slice);
+  }
+
+  private synchronized void merge(BitSet pSlice) {
+    slice.or(pSlice);
+  }
+}
@@ -1,19 +1,35 @@
 package de.uni_passau.fim.se2.sa.slicing.graph;
 
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import de.uni_passau.fim.se2.sa.slicing.cfg.Node;
 import de.uni_passau.fim.se2.sa.slicing.cfg.ProgramGraph;
+import de.uni_passau.fim.se2.sa.slicing.coverage.ExecutionTrace;
 
 import java.util.*;
 
+import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
 
 /** Provides an analysis that calculates the program-dependence graph. */
 public class ProgramDependenceGraph extends Graph implements Sliceable<Node> {
 
+  /** The default memory budget in bytes for {@link #buildSliceIndex(long)}. */
+  public static final long DEFAULT_SLICE_INDEX_BUDGET = 4L * 1024 * 1024;
+
   private ProgramGraph pdg;
+  private IndexedGraph indexedGraph;
+  private SliceIndex sliceIndex;
+  private SliceCache sliceCache;
+  private HashCode classHash;
   private final ProgramGraph cdg;
   private final ProgramGraph ddg;
+  private final ProgramGraph thinDdg;
+  private IndexedGraph indexedThinGraph;
+  private DynamicSlicer dynamicSlicer;
 
   public ProgramDependenceGraph(ClassNode pClassNode, MethodNode pMethodNode) {
     super(pClassNode, pMethodNode);
@@ -21,10 +37,13 @@ public ProgramDependenceGraph(ClassNode pClassNode, MethodNode pMethodNode) {
 
     if (cfg != null) {
       cdg = new ControlDependenceGraph(pClassNode, pMethodNode).computeResult();
-      ddg = new DataDependenceGraph(pClassNode, pMethodNode).computeResult();
+      DataDependenceGraph ddgAnalysis = new DataDependenceGraph(pClassNode, pMethodNode);
+      ddg = ddgAnalysis.computeResult();
+      thinDdg = ddgAnalysis.getThinResult();
     } else {
       cdg = null;
       ddg = null;
+      thinDdg = null;
     }
   }
 
@@ -33,6 +52,7 @@ public ProgramDependenceGraph(ProgramGraph pProgramGraph) {
     pdg = pProgramGraph;
     cdg = null;
     ddg = null;
+    thinDdg = null;
   }
 
   /**
@@ -44,29 +64,30 @@ public ProgramDependenceGraph(ProgramGraph pProgramGraph) {
    * @return A program-dependence graph.
    */
   @Override
-  public ProgramGraph computeResult() {
+  public synchronized ProgramGraph computeResult() {
     if (pdg != null) {
       return pdg;
     }
 
-    pdg = new ProgramGraph();
+    // Built before it is published, since slices of concurrent tests share this graph.
+    ProgramGraph graph = new ProgramGraph();
 
     if (cdg != null) {
       for (Node node : cdg.getNodes()) {
-        pdg.addNode(node);
+        graph.addNode(node);
       }
     }
 
     if (ddg != null) {
       for (Node node : ddg.getNodes()) {
-        pdg.addNode(node);
+        graph.addNode(node);
       }
     }
 
     if (cdg != null) {
       for (Node src : cdg.getNodes()) {
         for (Node target : cdg.getSuccessors(src)) {
-          pdg.addEdge(src, target);
+          graph.addEdge(src, target);
         }
       }
     }
@@ -74,31 +95,307 @@ public ProgramGraph computeResult() {
     if (ddg != null) {
       for (Node src : ddg.getNodes()) {
         for (Node target : ddg.getSuccessors(src)) {
-          pdg.addEdge(src, target);
+          graph.addEdge(src, target);
         }
       }
     }
 
+    pdg = graph;
     return pdg;
   }
 
 
 
+  /**
+   * Provides an index-based snapshot of the program-dependence graph.
+   *
+   * <p>The snapshot is created on first access; later modifications of the {@link ProgramGraph}
+   * returned by {@link #computeResult()} are not reflected.
+   *
+   * @return The indexed program-dependence graph
+   */
+  public synchronized IndexedGraph getIndexedGraph() {
+    if (indexedGraph == null) {
+      indexedGraph = new IndexedGraph(computeResult());
+    }
+    return indexedGraph;
+  }
+
+  /**
+   * Precomputes the backward slices of all nodes, such that {@link #backwardSlice(Node)} becomes
+   * a lookup.
+   *
+   * <p>The index stores one bit set per strongly connected component of the graph. It is only
+   * built if its estimated size does not exceed the given memory budget; otherwise slices are
+   * still computed by traversing the graph.
+   *
+   * @param pMemoryBudget The maximum number of bytes the index may occupy
+   * @return {@code true} if the index was built, {@code false} if it exceeded the budget
+   */
+  public boolean buildSliceIndex(long pMemoryBudget) {
+    SliceIndex index = SliceIndex.build(getIndexedGraph(), pMemoryBudget);
+    synchronized (this) {
+      sliceIndex = index;
+    }
+    return index != null;
+  }
+
+  /**
+   * Returns whether a slice index has been built for this graph.
+   *
+   * @return {@code true} if backward slices are answered from the precomputed index
+   */
+  public synchronized boolean hasSliceIndex() {
+    return sliceIndex != null;
+  }
+
+  /**
+   * Looks up backward slices in the given cache before computing them.
+   *
+   * <p>Cache entries are keyed by the hash of the class's bytecode, the method, the index of the
+   * criterion, and the covered nodes of {@link #backwardSlice(Node, BitSet)}, hence they can be
+   * shared between graphs of the same unchanged method and between tests with equal coverage. A
+   * slice index built by {@link #buildSliceIndex(long)} takes precedence over the cache for
+   * slices of the whole graph.
+   *
+   * @param pCache The cache to use, or {@code null} to disable caching
+   * @throws IllegalStateException If this graph was not created from a class and method
+   */
+  public synchronized void setSliceCache(SliceCache pCache) {
+    Preconditions.checkState(
+        classNode != null && methodNode != null,
+        "Slice caching requires a graph that was created from a class and method");
+    if (classHash == null) {
+      ClassWriter classWriter = new ClassWriter(0);
+      classNode.accept(classWriter);
+      classHash = Hashing.sha256().hashBytes(classWriter.toByteArray());
+    }
+    sliceCache = pCache;
+  }
+
   /** {@inheritDoc} */
   @Override
   public Set<Node> backwardSlice(Node pCriterion) {
-    ProgramGraph pdgGraph = computeResult();
-    Set<Node> slice = new HashSet<>();
-    Deque<Node> worklist = new ArrayDeque<>();
-    worklist.add(pCriterion);
-    while (!worklist.isEmpty()) {
-      Node current = worklist.poll();
-      if (slice.add(current)) { // add returns true if not already present
-        for (Node pred : pdgGraph.getPredecessors(current)) {
-          worklist.add(pred);
-        }
+    IndexedGraph graph = getIndexedGraph();
+    return graph.toNodes(backwardSlice(graph, requireIndex(graph, pCriterion), null));
+  }
+
+  /**
+   * Computes the backward slice of the given criterion within the covered nodes.
+   *
+   * <p>The traversal skips nodes that were not covered, hence the slice equals the backward slice
+   * of the graph reduced to the covered nodes, but neither the graph nor its index is copied.
+   *
+   * @param pCriterion The slicing criterion
+   * @param pCoveredNodes The indices of the covered nodes in {@link #getIndexedGraph()}, or {@code
+   *     null} if all nodes are covered
+   * @return A set of nodes that are in the slice; empty if the criterion was not covered
+   */
+  public Set<Node> backwardSlice(Node pCriterion, BitSet pCoveredNodes) {
+    if (pCoveredNodes == null) {
+      return backwardSlice(pCriterion);
+    }
+    IndexedGraph graph = getIndexedGraph();
+    int criterion = requireIndex(graph, pCriterion);
+    if (!pCoveredNodes.get(criterion)) {
+      return new LinkedHashSet<>();
+    }
+    return graph.toNodes(backwardSlice(graph, criterion, pCoveredNodes));
+  }
+
+  /**
+   * Computes the thin backward slice of the given criterion.
+   *
+   * <p>A thin slice only contains the statements that produce the value at the criterion: it
+   * follows data dependences that carry values and ignores control dependences as well as uses of
+   * variables as base pointers of field accesses. The traversal runs on the data dependences only
+   * and therefore typically visits a small part of the graph.
+   *
+   * @param pCriterion The slicing criterion
+   * @return A set of nodes that are in the thin slice
+   * @throws IllegalStateException If this graph was not created from a class and method
+   */
+  public Set<Node> thinSlice(Node pCriterion) {
+    IndexedGraph graph;
+    synchronized (this) {
+      Preconditions.checkState(
+          thinDdg != null,
+          "Thin slicing requires a graph that was created from a class and method");
+      if (indexedThinGraph == null) {
+        indexedThinGraph = new IndexedGraph(thinDdg);
+      }
+      graph = indexedThinGraph;
+    }
+    return graph.toNodes(graph.backward(requireIndex(graph, pCriterion)));
+  }
+
+  /**
+   * Computes the dynamic backward slice of the given criterion from recorded executions of the
+   * method.
+   *
+   * <p>In contrast to {@link #backwardSlice(Node)}, dependences are resolved per executed
+   * instruction: the slice only contains the statements whose executions the last execution of
+   * the criterion actually depends on. Executions in which the criterion was not reached do not
+   * contribute to the slice.
+   *
+   * @param pCriterion The slicing criterion
+   * @param pExecutions The executed instructions of each execution of the method, given as indices
+   *     into the method's instruction list in execution order
+   * @return A set of nodes that are in the dynamic slice
+   * @throws IllegalStateException If this graph was not created from a class and method
+   */
+  public Set<Node> dynamicSlice(Node pCriterion, Collection<int[]> pExecutions) {
+    return dynamicSlice(pCriterion, ExecutionTrace.of(pExecutions));
+  }
+
+  /**
+   * Computes the dynamic backward slice of the given criterion from a recorded trace of the
+   * method.
+   *
+   * <p>The trace is replayed once, backwards, hence it need not fit into memory.
+   *
+   * @param pCriterion The slicing criterion
+   * @param pTrace The trace of the method
+   * @return A set of nodes that are in the dynamic slice
+   * @throws IllegalStateException If this graph was not created from a class and method
+   * @see #dynamicSlice(Node, Collection)
+   */
+  public Set<Node> dynamicSlice(Node pCriterion, ExecutionTrace pTrace) {
+    DynamicSlicer slicer = getDynamicSlicer();
+    IndexedGraph graph = slicer.getGraph();
+    requireIndex(graph, pCriterion);
+    return graph.toNodes(slicer.slice(pCriterion, pTrace));
+  }
+
+  /**
+   * Prepares a dynamic backward slice of the given criterion that is computed while the method is
+   * executed.
+   *
+   * <p>The returned slice must be added as a listener of the method's invocations before they
+   * start; it then contains the same nodes as {@link #dynamicSlice(Node, Collection)} for the
+   * executions it was notified of.
+   *
+   * @param pCriterion The slicing criterion
+   * @return The slice, which is empty until an invocation executing the criterion ended
+   * @throws IllegalStateException If this graph was not created from a class and method
+   */
+  public OnlineDynamicSlice onlineDynamicSlice(Node pCriterion) {
+    DynamicSlicer slicer = getDynamicSlicer();
+    return new OnlineDynamicSlice(slicer, requireIndex(slicer.getGraph(), pCriterion));
+  }
+
+  private synchronized DynamicSlicer getDynamicSlicer() {
+    Preconditions.checkState(
+        cdg != null, "Dynamic slicing requires a graph that was created from a class and method");
+    if (dynamicSlicer == null) {
+      try {
+        dynamicSlicer = new DynamicSlicer(classNode, methodNode, cfg, cdg);
+      } catch (AnalyzerException e) {
+        throw new IllegalStateException("Could not analyse " + methodNode.name, e);
       }
     }
-    return slice;
+    return dynamicSlicer;
+  }
+
+  /**
+   * Prepares the aggregation of the backward slices of many tests for the given criterion, each
+   * restricted to the nodes the test covered.
+   *
+   * @param pCriterion The slicing criterion
+   * @return An empty aggregation to which the coverage of the tests is added
+   */
+  public SliceAggregation aggregateSlices(Node pCriterion) {
+    IndexedGraph graph = getIndexedGraph();
+    return new SliceAggregation(graph, requireIndex(graph, pCriterion));
+  }
+
+  /**
+   * Computes a backward slice that is limited by the given options.
+   *
+   * <p>The slice is computed breadth-first by dependence distance, such that a truncated slice
+   * contains the nodes closest to the criterion.
+   *
+   * @param pCriterion The slicing criterion
+   * @param pOptions The limits for the slice
+   * @return The slice together with the information whether it was truncated
+   */
+  public SliceResult backwardSlice(Node pCriterion, SliceOptions pOptions) {
+    return backwardSlice(pCriterion, pOptions, null);
+  }
+
+  /**
+   * Computes a backward slice within the covered nodes that is limited by the given options, see
+   * {@link #backwardSlice(Node, BitSet)}.
+   *
+   * @param pCriterion The slicing criterion
+   * @param pOptions The limits for the slice
+   * @param pCoveredNodes The indices of the covered nodes in {@link #getIndexedGraph()}, or {@code
+   *     null} if all nodes are covered
+   * @return The slice together with the information whether it was truncated; the slice is empty
+   *     if the criterion was not covered
+   */
+  public SliceResult backwardSlice(Node pCriterion, SliceOptions pOptions, BitSet pCoveredNodes) {
+    IndexedGraph graph = getIndexedGraph();
+    int criterion = requireIndex(graph, pCriterion);
+    if (pCoveredNodes != null && !pCoveredNodes.get(criterion)) {
+      return new SliceResult(new LinkedHashSet<>(), 0, false);
+    }
+    return graph.backwardBounded(criterion, pOptions, pCoveredNodes);
+  }
+
+  private BitSet backwardSlice(IndexedGraph pGraph, int pCriterion, BitSet pCoveredNodes) {
+    SliceIndex index;
+    SliceCache cache;
+    synchronized (this) {
+      index = sliceIndex;
+      cache = sliceCache;
+    }
+    if (index != null && pCoveredNodes == null) {
+      return index.backwardSlice(pCriterion);
+    }
+    if (cache != null) {
+      // The key keeps its own copy, such that the caller may reuse the covered nodes.
+      BitSet coveredNodes = pCoveredNodes == null ? null : (BitSet) pCoveredNodes.clone();
+      SliceCache.Key key =
+          new SliceCache.Key(
+              classHash, methodNode.name + methodNode.desc, pCriterion, coveredNodes);
+      return cache.get(key, () -> pGraph.backward(pCriterion, coveredNodes));
+    }
+    return pGraph.backward(pCriterion, pCoveredNodes);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Set<Node> forwardSlice(Node pCriterion) {
+    IndexedGraph graph = getIndexedGraph();
+    return graph.toNodes(graph.forward(requireIndex(graph, pCriterion)));
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The chop is computed by a forward traversal from the source followed by a backward
+   * traversal from the target that is restricted to the nodes reached by the first one. Every
+   * node on a path from the source to the target is reachable from the source, hence the result
+   * equals the intersection of both slices without computing the full backward slice.
+   */
+  @Override
+  public Set<Node> chop(Node pSource, Node pTarget) {
+    IndexedGraph graph = getIndexedGraph();
+    int source = requireIndex(graph, pSource);
+    int target = requireIndex(graph, pTarget);
+    BitSet affected = graph.forward(source);
+    if (!affected.get(target)) {
+      return new LinkedHashSet<>();
+    }
+    return graph.toNodes(graph.backward(target, affected));
+  }
+
+  private static int requireIndex(IndexedGraph pGraph, Node pNode) {
+    int index = pGraph.indexOf(pNode);
+    if (index < 0) {
+      throw new IllegalArgumentException("no such vertex in graph: " + pNode);
+    }
+    return index;
   }
 }
@@ -0,0 +1,135 @@
+package de.uni_passau.fim.se2.sa.slicing.graph;
+
+import de.uni_passau.fim.se2.sa.slicing.cfg.Node;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Aggregates the coverage-restricted backward slices of many tests for a single criterion.
+ *
+ * <p>All slices are computed on the same {@link IndexedGraph}: the coverage of a test is given as
+ * a set of node indices, and the traversal from the criterion only visits covered nodes. This
+ * yields the slice of the graph that {@code SlicerUtil.simplify} reduces to the covered nodes,
+ * without copying the graph per test. The slices are kept as bit sets, hence their union,
+ * intersection, and the number of slices containing a node are maintained while they are added.
+ *
+ * @see ProgramDependenceGraph#aggregateSlices(Node)
+ */
+public final class SliceAggregation {
+
+  private final IndexedGraph graph;
+  private final int criterion;
+  private final Map<String, BitSet> slices = new LinkedHashMap<>();
+  private final int[] frequencies;
+  private final BitSet union;
+  private BitSet intersection;
+
+  SliceAggregation(IndexedGraph pGraph, int pCriterion) {
+    graph = pGraph;
+    criterion = pCriterion;
+    frequencies = new int[pGraph.size()];
+    union = new BitSet(pGraph.size());
+  }
+
+  /**
+   * Slices the criterion restricted to the nodes covered by a test and adds the slice.
+   *
+   * <p>The slice is empty if the test did not cover the criterion.
+   *
+   * @param pTest The name of the test
+   * @param pCoveredNodes The indices of the nodes the test covered in the graph of {@link
+   *     ProgramDependenceGraph#getIndexedGraph()}, or {@code null} if all nodes are covered
+   * @return The slice of the test
+   * @throws IllegalArgumentException if a slice of the test was already added
+   */
+  public Set<Node> add(String pTest, BitSet pCoveredNodes) {
+    BitSet slice =
+        pCoveredNodes != null && !pCoveredNodes.get(criterion)
+            ? new BitSet()
+            : graph.backward(criterion, pCoveredNodes);
+    synchronized (this) {
+      if (slices.putIfAbsent(pTest, slice) != null) {
+        throw new IllegalArgumentException("The slice of " + pTest + " was already added");
+      }
+      for (int i = slice.nextSetBit(0); i >= 0; i = slice.nextSetBit(i + 1)) {
+        frequencies[i]++;
+      }
+      union.or(slice);
+      if (intersection == null) {
+        intersection = (BitSet) slice.clone();
+      } else {
+        intersection.and(slice);
+      }
+    }
+    return graph.toNodes(slice);
+  }
+
+  /**
+   * Returns the names of the added tests.
+   *
+   * @return The names of the tests in the order their slices were added
+   */
+  public synchronized Set<String> getTests() {
+    return Collections.unmodifiableSet(new LinkedHashSet<>(slices.keySet()));
+  }
+
+  /**
+   * Returns the slice of a single test.
+   *
+   * @param pTest The name of the test
+   * @return The slice, or an empty set if no slice of the test was added
+   */
+  public synchronized Set<Node> getSlice(String pTest) {
+    BitSet slice = slices.get(pTest);
+    return slice == null ? Set.of() : graph.toNodes(slice);
+  }
+
+  /**
+   * Returns the nodes that are contained in the slice of any test.
+   *
+   * @return The union of all slices
+   */
+  public synchronized Set<Node> getUnion() {
+    return graph.toNodes(union);
+  }
+
+  /**
+   * Returns the nodes that are contained in the slices of all tests.
+   *
+   * <p>Tests that did not cover the criterion have an empty slice, hence the intersection is empty
+   * if any of them was added.
+   *
+   * @return The intersection of all slices, which is empty if no slice was added
+   */
+  public synchronized Set<Node> getIntersection() {
+    return intersection == null ? Set.of() : graph.toNodes(intersection);
+  }
+
+  /**
+   * Returns the number of slices that contain a node.
+   *
+   * @param pNode The node
+   * @return The number of tests whose slice contains the node; {@code 0} for unknown nodes
+   */
+  public synchronized int getFrequency(Node pNode) {
+    int index = graph.indexOf(pNode);
+    return index < 0 ? 0 : frequencies[index];
+  }
+
+  /**
+   * Returns the number of slices that contain each node of the union.
+   *
+   * @return The frequency of every node in any slice, ordered by the nodes' indices
+   */
+  public synchronized Map<Node, Integer> getFrequencies() {
+    Map<Node, Integer> result = new LinkedHashMap<>(union.cardinality() * 2);
+    for (int i = union.nextSetBit(0); i >= 0; i = union.nextSetBit(i + 1)) {
+      result.put(graph.getNode(i), frequencies[i]);
+    }
+    return result;
+  }
+}
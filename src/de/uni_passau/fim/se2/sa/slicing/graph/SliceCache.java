@@ -0,0 +1,84 @@
+package de.uni_passau.fim.se2.sa.slicing.graph;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.HashCode;
+import java.util.BitSet;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * A bounded cache of backward slices that can be shared between {@link ProgramDependenceGraph}s.
+ *
+ * <p>Entries are keyed by the hash of the class's bytecode, the method's name and descriptor, the
+ * index of the criterion node, and, for slices restricted to covered nodes, the covered nodes;
+ * the slices are stored as compact bit sets of node indices. Tests that cover the same nodes thus
+ * share their slice. The cache is bounded by the total number of bit-set words it holds, those of
+ * the slices and those of the keys' covered nodes, and evicts the least recently used entries
+ * first.
+ */
+public final class SliceCache {
+
+  private final Cache<Key, long[]> cache;
+
+  /**
+   * Creates a new slice cache.
+   *
+   * @param pMaximumWords The maximum number of 64-bit words all cached slices and their covered
+   *     nodes may occupy
+   */
+  public SliceCache(long pMaximumWords) {
+    Preconditions.checkArgument(pMaximumWords >= 0, "The maximum weight must not be negative");
+    cache =
+        CacheBuilder.newBuilder()
+            .maximumWeight(pMaximumWords)
+            .weigher(SliceCache::weigh)
+            .recordStats()
+            .build();
+  }
+
+  /**
+   * Provides the hit, miss, and eviction statistics of this cache.
+   *
+   * @return The cache statistics
+   */
+  public CacheStats getStats() {
+    return cache.stats();
+  }
+
+  /**
+   * Provides the number of cached slices.
+   *
+   * @return The number of entries in the cache
+   */
+  public long size() {
+    return cache.size();
+  }
+
+  /** Removes all cached slices; the statistics are kept. */
+  public void clear() {
+    cache.invalidateAll();
+  }
+
+  BitSet get(Key pKey, Supplier<BitSet> pSlicer) {
+    try {
+      return BitSet.valueOf(cache.get(pKey, () -> pSlicer.get().toLongArray()));
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Could not compute slice for " + pKey, e.getCause());
+    }
+  }
+
+  private static int weigh(Key pKey, long[] pWords) {
+    int keyWords = pKey.coveredNodes() == null ? 0 : pKey.coveredNodes().size() / Long.SIZE;
+    return pWords.length + keyWords + 1;
+  }
+
+  /**
+   * Identifies a slice by its class, method, criterion, and the covered nodes it is restricted to.
+   * The covered nodes are {@code null} for a slice of the whole graph and must not be modified
+   * once the key was created.
+   */
+  record Key(HashCode classHash, String method, int criterion, BitSet coveredNodes) {}
+}
@@ -0,0 +1,165 @@
+package de.uni_passau.fim.se2.sa.slicing.graph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Precomputed backward slices for all nodes of an {@link IndexedGraph}.
+ *
+ * <p>The strongly connected components of the graph are collapsed first, since all nodes of a
+ * component share the same backward slice. The transitive closure is then propagated over the
+ * acyclic condensation in topological order, one {@link BitSet} per component. Afterwards, every
+ * backward slice is a single array lookup.
+ */
+final class SliceIndex {
+
+  /** Estimated per-object overhead of a {@link BitSet} and its backing array in bytes. */
+  private static final long BITSET_OVERHEAD = 40;
+
+  private final int[] componentOf;
+  private final BitSet[] closures;
+
+  private SliceIndex(int[] pComponentOf, BitSet[] pClosures) {
+    componentOf = pComponentOf;
+    closures = pClosures;
+  }
+
+  /**
+   * Builds the slice index if its estimated size fits into the memory budget.
+   *
+   * @param pGraph The graph to index
+   * @param pMemoryBudget The maximum number of bytes the index may occupy
+   * @return The slice index, or {@code null} if the index would exceed the budget
+   */
+  static SliceIndex build(IndexedGraph pGraph, long pMemoryBudget) {
+    int size = pGraph.size();
+    int[] componentOf = new int[size];
+    int components = computeComponents(pGraph, componentOf);
+    if (estimateBytes(components, size) > pMemoryBudget) {
+      return null;
+    }
+
+    // Group the nodes by component (counting sort), such that members can be enumerated.
+    int[] memberOffsets = new int[components + 1];
+    for (int node = 0; node < size; node++) {
+      memberOffsets[componentOf[node] + 1]++;
+    }
+    for (int c = 0; c < components; c++) {
+      memberOffsets[c + 1] += memberOffsets[c];
+    }
+    int[] members = new int[size];
+    int[] fill = Arrays.copyOf(memberOffsets, components);
+    for (int node = 0; node < size; node++) {
+      members[fill[componentOf[node]]++] = node;
+    }
+
+    // Components are numbered in topological order of the condensation: every component that
+    // reaches component c via predecessor edges has a smaller number than c.
+    BitSet[] closures = new BitSet[components];
+    for (int c = 0; c < components; c++) {
+      BitSet closure = new BitSet(size);
+      for (int m = memberOffsets[c]; m < memberOffsets[c + 1]; m++) {
+        int member = members[m];
+        closure.set(member);
+        for (int p = pGraph.predecessorStart(member); p < pGraph.predecessorEnd(member); p++) {
+          int predecessorComponent = componentOf[pGraph.predecessor(p)];
+          if (predecessorComponent != c) {
+            closure.or(closures[predecessorComponent]);
+          }
+        }
+      }
+      closures[c] = closure;
+    }
+    return new SliceIndex(componentOf, closures);
+  }
+
+  /**
+   * Estimates the memory occupied by an index with the given number of components and nodes.
+   *
+   * @param pComponents The number of strongly connected components
+   * @param pNodes The number of nodes
+   * @return The estimated size in bytes
+   */
+  static long estimateBytes(int pComponents, int pNodes) {
+    long words = (pNodes + 63L) / 64;
+    return pComponents * (words * Long.BYTES + BITSET_OVERHEAD) + pNodes * (long) Integer.BYTES;
+  }
+
+  /**
+   * Returns the precomputed backward slice of a node.
+   *
+   * <p>The returned set is shared between all nodes of a component and must not be modified.
+   *
+   * @param pNode The index of the slicing criterion
+   * @return The indices of all nodes in the backward slice
+   */
+  BitSet backwardSlice(int pNode) {
+    return closures[componentOf[pNode]];
+  }
+
+  /**
+   * Computes the strongly connected components of the graph using an iterative variant of
+   * Tarjan's algorithm on the predecessor edges.
+   *
+   * <p>Tarjan's algorithm completes a component only after all components reachable from it have
+   * been completed, hence the numbering is a topological order for the backward closure.
+   */
+  private static int computeComponents(IndexedGraph pGraph, int[] pComponentOf) {
+    int size = pGraph.size();
+    int[] order = new int[size];
+    Arrays.fill(order, -1);
+    int[] lowLink = new int[size];
+    int[] edgeCursor = new int[size];
+    boolean[] onStack = new boolean[size];
+    int[] stack = new int[size];
+    int[] callStack = new int[size];
+    int stackTop = 0;
+    int counter = 0;
+    int components = 0;
+
+    for (int root = 0; root < size; root++) {
+      if (order[root] != -1) {
+        continue;
+      }
+      int callTop = 0;
+      order[root] = lowLink[root] = counter++;
+      edgeCursor[root] = pGraph.predecessorStart(root);
+      stack[stackTop++] = root;
+      onStack[root] = true;
+      callStack[callTop++] = root;
+
+      while (callTop > 0) {
+        int node = callStack[callTop - 1];
+        if (edgeCursor[node] < pGraph.predecessorEnd(node)) {
+          int next = pGraph.predecessor(edgeCursor[node]++);
+          if (order[next] == -1) {
+            order[next] = lowLink[next] = counter++;
+            edgeCursor[next] = pGraph.predecessorStart(next);
+            stack[stackTop++] = next;
+            onStack[next] = true;
+            callStack[callTop++] = next;
+          } else if (onStack[next]) {
+            lowLink[node] = Math.min(lowLink[node], order[next]);
+          }
+          continue;
+        }
+
+        callTop--;
+        if (callTop > 0) {
+          int parent = callStack[callTop - 1];
+          lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+        }
+        if (lowLink[node] == order[node]) {
+          int member;
+          do {
+            member = stack[--stackTop];
+            onStack[member] = false;
+            pComponentOf[member] = components;
+          } while (member != node);
+          components++;
+        }
+      }
+    }
+    return components;
+  }
+}
@@ -0,0 +1,46 @@
+package de.uni_passau.fim.se2.sa.slicing.graph;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Limits for computing a slice.
+ *
+ * <p>A bounded slice is computed breadth-first by dependence distance, i.e., the number of
+ * dependence edges between a node and the criterion. The computation stops once either the
+ * maximum distance or the maximum number of nodes is reached.
+ *
+ * @param maxDistance The maximum dependence distance from the criterion; {@code 0} only
+ *     includes the criterion itself
+ * @param maxNodes The maximum number of nodes in the slice, including the criterion
+ */
+public record SliceOptions(int maxDistance, int maxNodes) {
+
+  /** Options that do not limit the slice. */
+  public static final SliceOptions UNBOUNDED =
+      new SliceOptions(Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+  public SliceOptions {
+    Preconditions.checkArgument(maxDistance >= 0, "The maximum distance must not be negative");
+    Preconditions.checkArgument(maxNodes >= 1, "The node budget must include the criterion");
+  }
+
+  /**
+   * Creates options that only limit the dependence distance.
+   *
+   * @param pMaxDistance The maximum dependence distance from the criterion
+   * @return The slice options
+   */
+  public static SliceOptions maxDistance(int pMaxDistance) {
+    return new SliceOptions(pMaxDistance, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Creates options that only limit the number of nodes.
+   *
+   * @param pMaxNodes The maximum number of nodes in the slice
+   * @return The slice options
+   */
+  public static SliceOptions maxNodes(int pMaxNodes) {
+    return new SliceOptions(Integer.MAX_VALUE, pMaxNodes);
+  }
+}
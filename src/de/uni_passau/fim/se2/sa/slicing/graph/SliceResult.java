@@ -0,0 +1,14 @@
+package de.uni_passau.fim.se2.sa.slicing.graph;
+
+import de.uni_passau.fim.se2.sa.slicing.cfg.Node;
+import java.util.Set;
+
+/**
+ * The result of a slice computed with {@link SliceOptions}.
+ *
+ * @param nodes The nodes in the slice, ordered by their dependence distance from the criterion
+ * @param distance The largest dependence distance of a node in the slice
+ * @param truncated Whether the slice was cut off by a limit, i.e., the full slice contains more
+ *     nodes
+ */
+public record SliceResult(Set<Node> nodes, int distance, boolean truncated) {}
@@ -16,4 +16,23 @@
    * @return A set of nodes that are in the backward slice
    */
   Set<T> backwardSlice(T pCriterion);
+
+  /**
+   * Computes the forward slice of the graph with the given criterion.
+   *
+   * @param pCriterion The slicing criterion
+   * @return A set of nodes that are in the forward slice
+   */
+  Set<T> forwardSlice(T pCriterion);
+
+  /**
+   * Computes the chop between a source and a target, i.e., all nodes that are affected by the
+   * source and that affect the target.
+   *
+   * @param pSource The source criterion
+   * @param pTarget The target criterion
+   * @return A set of nodes that are both in the forward slice of the source and in the backward
+   *     slice of the target
+   */
+  Set<T> chop(T pSource, T pTarget);
 }
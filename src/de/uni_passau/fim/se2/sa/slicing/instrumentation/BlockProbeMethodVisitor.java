@@ -0,0 +1,286 @@
+package de.uni_passau.fim.se2.sa.slicing.instrumentation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FrameNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LineNumberNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+
+/**
+ * Buffers a method and inserts one coverage probe at the start of each of its basic blocks.
+ *
+ * <p>A block starts at the first instruction of the method, at every jump, switch, or exception
+ * handler target, and after every jump, switch, return, or throw. The lines and the instruction
+ * range of each block are registered with the {@code CoverageTracker}, which maps probe hits back
+ * to them. A block is considered executed once it is entered, i.e., an exception thrown in the
+ * middle of a block still marks the whole block.
+ *
+ * <p>With the {@link ProbeStrategy#TRACE} strategy, the entry into the method and every exit
+ * from it are recorded as well. Exits by an exception are recorded by a handler that covers the
+ * whole method and rethrows the exception. Constructors get no such handler, since the handler
+ * would have to exclude the code before the call to the super constructor.
+ *
+ * <p>Frames refer to an uninitialized value by the label of its {@code NEW} instruction. When a
+ * probe or marker ends up between that label and the {@code NEW}, a fresh label is placed directly
+ * before the {@code NEW} and the frames of the method refer to it instead.
+ */
+class BlockProbeMethodVisitor extends MethodNode {
+
+  private final MethodVisitor next;
+  private final int methodId;
+  private final Object methodIdConstant;
+  private final ProbeStrategy strategy;
+  private final boolean writesFrames;
+  private final Consumer<MethodProbes> registry;
+
+  BlockProbeMethodVisitor(
+      int pAPI,
+      MethodVisitor pNext,
+      int pMethodId,
+      Object pMethodIdConstant,
+      ProbeStrategy pStrategy,
+      boolean pWritesFrames,
+      int pAccess,
+      String pName,
+      String pDescriptor,
+      String pSignature,
+      String[] pExceptions,
+      Consumer<MethodProbes> pRegistry) {
+    super(pAPI, pAccess, pName, pDescriptor, pSignature, pExceptions);
+    next = pNext;
+    methodId = pMethodId;
+    methodIdConstant = pMethodIdConstant;
+    strategy = pStrategy;
+    writesFrames = pWritesFrames;
+    registry = pRegistry;
+  }
+
+  @Override
+  public void visitEnd() {
+    super.visitEnd();
+    List<AbstractInsnNode> leaders = findLeaders(instructions, collectTargets());
+
+    int[][] blockLines = new int[leaders.size()][];
+    int[] boundaries = new int[leaders.size() + 1];
+    int block = -1;
+    int lastInstruction = -1;
+    int line = 0;
+    List<Integer> lines = new ArrayList<>();
+    for (int i = 0; i < instructions.size(); i++) {
+      AbstractInsnNode insn = instructions.get(i);
+      if (insn instanceof LineNumberNode lineNumber) {
+        line = lineNumber.line;
+      }
+      if (insn.getOpcode() < 0) {
+        continue;
+      }
+      if (block + 1 < leaders.size() && leaders.get(block + 1) == insn) {
+        if (block >= 0) {
+          blockLines[block] = toArray(lines);
+          lines.clear();
+        }
+        block++;
+        // Labels, line numbers, and frames preceding the leader belong to its block.
+        boundaries[block] = lastInstruction + 1;
+      }
+      if (line > 0 && !lines.contains(line)) {
+        lines.add(line);
+      }
+      lastInstruction = i;
+    }
+    if (block >= 0) {
+      blockLines[block] = toArray(lines);
+    }
+    boundaries[leaders.size()] = instructions.size();
+
+    Map<LabelNode, AbstractInsnNode> allocations = collectAllocations();
+    for (int probe = 0; probe < leaders.size(); probe++) {
+      instructions.insertBefore(leaders.get(probe), createProbe(probe));
+    }
+    // Abstract and native methods have no code to trace.
+    if (strategy == ProbeStrategy.TRACE && instructions.size() > 0) {
+      insertTraceMarkers();
+    }
+    relabelAllocations(allocations);
+    registry.accept(new MethodProbes(name, desc, methodId, blockLines, boundaries));
+
+    if (next != null) {
+      accept(next);
+    }
+  }
+
+  private Set<LabelNode> collectTargets() {
+    Set<LabelNode> targets = new HashSet<>();
+    for (AbstractInsnNode insn : instructions) {
+      if (insn instanceof JumpInsnNode jump) {
+        targets.add(jump.label);
+      } else if (insn instanceof TableSwitchInsnNode tableSwitch) {
+        targets.add(tableSwitch.dflt);
+        targets.addAll(tableSwitch.labels);
+      } else if (insn instanceof LookupSwitchInsnNode lookupSwitch) {
+        targets.add(lookupSwitch.dflt);
+        targets.addAll(lookupSwitch.labels);
+      }
+    }
+    for (TryCatchBlockNode tryCatchBlock : tryCatchBlocks) {
+      targets.add(tryCatchBlock.handler);
+    }
+    return targets;
+  }
+
+  private static List<AbstractInsnNode> findLeaders(InsnList pInstructions, Set<LabelNode> pTargets) {
+    List<AbstractInsnNode> leaders = new ArrayList<>();
+    boolean startsBlock = true;
+    for (AbstractInsnNode insn : pInstructions) {
+      if (insn instanceof LabelNode label && pTargets.contains(label)) {
+        startsBlock = true;
+      }
+      if (insn.getOpcode() < 0) {
+        continue;
+      }
+      if (startsBlock) {
+        leaders.add(insn);
+        startsBlock = false;
+      }
+      startsBlock = endsBlock(insn);
+    }
+    return leaders;
+  }
+
+  /** Maps the labels by which frames refer to uninitialized values to their {@code NEW}s. */
+  private Map<LabelNode, AbstractInsnNode> collectAllocations() {
+    Map<LabelNode, AbstractInsnNode> allocations = new HashMap<>();
+    for (AbstractInsnNode insn : instructions) {
+      if (insn instanceof FrameNode frame) {
+        collectAllocations(frame.local, allocations);
+        collectAllocations(frame.stack, allocations);
+      }
+    }
+    return allocations;
+  }
+
+  private static void collectAllocations(
+      List<Object> pTypes, Map<LabelNode, AbstractInsnNode> pAllocations) {
+    if (pTypes == null) {
+      return;
+    }
+    for (Object type : pTypes) {
+      if (type instanceof LabelNode label) {
+        pAllocations.computeIfAbsent(label, BlockProbeMethodVisitor::nextInstruction);
+      }
+    }
+  }
+
+  private void relabelAllocations(Map<LabelNode, AbstractInsnNode> pAllocations) {
+    Map<LabelNode, LabelNode> relabeled = new HashMap<>();
+    for (Map.Entry<LabelNode, AbstractInsnNode> allocation : pAllocations.entrySet()) {
+      if (nextInstruction(allocation.getKey()) != allocation.getValue()) {
+        LabelNode label = new LabelNode();
+        instructions.insertBefore(allocation.getValue(), label);
+        relabeled.put(allocation.getKey(), label);
+      }
+    }
+    if (relabeled.isEmpty()) {
+      return;
+    }
+    for (AbstractInsnNode insn : instructions) {
+      if (insn instanceof FrameNode frame) {
+        relabel(frame.local, relabeled);
+        relabel(frame.stack, relabeled);
+      }
+    }
+  }
+
+  private static void relabel(List<Object> pTypes, Map<LabelNode, LabelNode> pRelabeled) {
+    if (pTypes != null) {
+      pTypes.replaceAll(type -> type instanceof LabelNode label && pRelabeled.containsKey(label)
+          ? pRelabeled.get(label)
+          : type);
+    }
+  }
+
+  private static AbstractInsnNode nextInstruction(AbstractInsnNode pNode) {
+    AbstractInsnNode insn = pNode;
+    while (insn != null && insn.getOpcode() < 0) {
+      insn = insn.getNext();
+    }
+    return insn;
+  }
+
+  private static boolean endsBlock(AbstractInsnNode pInstruction) {
+    int opcode = pInstruction.getOpcode();
+    return pInstruction instanceof JumpInsnNode
+        || pInstruction instanceof TableSwitchInsnNode
+        || pInstruction instanceof LookupSwitchInsnNode
+        || (opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN)
+        || opcode == Opcodes.ATHROW;
+  }
+
+  private InsnList createProbe(int pProbeId) {
+    MethodNode probe = new MethodNode(api);
+    InstrumentationAdapter.emitProbe(probe, methodIdConstant, pProbeId, strategy);
+    return probe.instructions;
+  }
+
+  private void insertTraceMarkers() {
+    for (AbstractInsnNode insn : instructions.toArray()) {
+      int opcode = insn.getOpcode();
+      if (opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN) {
+        instructions.insertBefore(insn, createMarker("exitMethod"));
+      }
+    }
+    if (!name.equals("<init>")) {
+      insertExceptionalExit();
+    }
+    instructions.insert(createMarker("enterMethod"));
+  }
+
+  /**
+   * Appends a handler that records the exit of an invocation that is left by an exception and
+   * rethrows the exception. The handler is registered last, such that it only catches exceptions
+   * that are not handled within the method.
+   */
+  private void insertExceptionalExit() {
+    LabelNode start = new LabelNode();
+    LabelNode end = new LabelNode();
+    LabelNode handler = new LabelNode();
+    instructions.insert(start);
+    instructions.add(end);
+    instructions.add(handler);
+    if (writesFrames) {
+      // The method's code ends with a return, a throw, or a jump, hence the frame can be full.
+      instructions.add(
+          new FrameNode(Opcodes.F_FULL, 0, new Object[0], 1, new Object[] {"java/lang/Throwable"}));
+    }
+    instructions.add(createMarker("exitMethod"));
+    instructions.add(new InsnNode(Opcodes.ATHROW));
+    tryCatchBlocks.add(new TryCatchBlockNode(start, end, handler, null));
+  }
+
+  private InsnList createMarker(String pMarker) {
+    MethodNode marker = new MethodNode(api);
+    InstrumentationAdapter.pushMethodId(marker, methodIdConstant);
+    marker.visitMethodInsn(
+        Opcodes.INVOKESTATIC, InstrumentationAdapter.RECORDER, pMarker, "(I)V", false);
+    return marker.instructions;
+  }
+
+  private static int[] toArray(List<Integer> pValues) {
+    return pValues.stream().mapToInt(Integer::intValue).toArray();
+  }
+}
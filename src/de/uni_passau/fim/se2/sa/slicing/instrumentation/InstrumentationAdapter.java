@@ -1,29 +1,231 @@
 package de.uni_passau.fim.se2.sa.slicing.instrumentation;
 
+import de.uni_passau.fim.se2.sa.slicing.coverage.CoverageTracker;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import org.objectweb.asm.*;
 
 class InstrumentationAdapter extends ClassVisitor {
 
+  static final String TRACKER = "de/uni_passau/fim/se2/sa/slicing/coverage/CoverageTracker";
+  static final String RECORDER = "de/uni_passau/fim/se2/sa/slicing/coverage/TraceRecorder";
+
+  private static final Handle PROBES_BOOTSTRAP =
+      new Handle(
+          Opcodes.H_INVOKESTATIC,
+          TRACKER,
+          "probes",
+          "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;I)[Z",
+          false);
+
+  private static final Handle METHOD_ID_BOOTSTRAP =
+      new Handle(
+          Opcodes.H_INVOKESTATIC,
+          TRACKER,
+          "methodId",
+          "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;"
+              + "Ljava/lang/String;Ljava/lang/String;)I",
+          false);
+
+  private static final Handle FIRST_HIT_BOOTSTRAP =
+      new Handle(
+          Opcodes.H_INVOKESTATIC,
+          "de/uni_passau/fim/se2/sa/slicing/coverage/FirstHitCallSite",
+          "bootstrap",
+          "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;II)"
+              + "Lde/uni_passau/fim/se2/sa/slicing/coverage/FirstHitCallSite;",
+          false);
+
+  private final ProbeGranularity granularity;
+  private final ProbeStrategy strategy;
+  private final MethodFilter filter;
+  private String className;
+  private ProbeStrategy classStrategy = ProbeStrategy.INVOKE;
+  private boolean linkedMethodIds;
+  private boolean writesFrames;
+  private final List<MethodProbes> instrumentedMethods = new ArrayList<>();
+
   InstrumentationAdapter(int pAPI, ClassWriter pClassWriter) {
+    this(pAPI, pClassWriter, ProbeGranularity.LINE);
+  }
+
+  InstrumentationAdapter(int pAPI, ClassWriter pClassWriter, ProbeGranularity pGranularity) {
+    this(pAPI, pClassWriter, pGranularity, ProbeStrategy.INVOKE);
+  }
+
+  InstrumentationAdapter(
+      int pAPI, ClassWriter pClassWriter, ProbeGranularity pGranularity, ProbeStrategy pStrategy) {
+    this(pAPI, pClassWriter, pGranularity, pStrategy, MethodFilter.ALL);
+  }
+
+  InstrumentationAdapter(
+      int pAPI,
+      ClassWriter pClassWriter,
+      ProbeGranularity pGranularity,
+      ProbeStrategy pStrategy,
+      MethodFilter pFilter) {
     super(pAPI, pClassWriter);
+    granularity = pGranularity;
+    strategy = pStrategy;
+    filter = pFilter;
+  }
+
+  @Override
+  public void visit(
+      int pVersion,
+      int pAccess,
+      String pName,
+      String pSignature,
+      String pSuperName,
+      String[] pInterfaces) {
+    className = pName;
+    classStrategy = supportedStrategy(pVersion & 0xFFFF);
+    linkedMethodIds = linksMethodIds(pVersion & 0xFFFF);
+    // Stack map frames were introduced with class files of version 50 (Java 6).
+    writesFrames = (pVersion & 0xFFFF) >= Opcodes.V1_6;
+    super.visit(pVersion, pAccess, pName, pSignature, pSuperName, pInterfaces);
   }
 
   @Override
   public MethodVisitor visitMethod(
       int pAccess, String pName, String pDescriptor, String pSignature, String[] pExceptions) {
     MethodVisitor mv = super.visitMethod(pAccess, pName, pDescriptor, pSignature, pExceptions);
-    return new MethodVisitor(api, mv) {
-      @Override
-      public void visitLineNumber(int pLine, Label pStart) {
-        super.visitLineNumber(pLine, pStart);
-        visitLdcInsn(pLine);
-        visitMethodInsn(
-                org.objectweb.asm.Opcodes.INVOKESTATIC,
-                "de/uni_passau/fim/se2/sa/slicing/coverage/CoverageTracker",
-                "trackLineVisit",
-                "(I)V",
-                false);
+    if (!filter.matches(className, pName, pDescriptor)) {
+      return mv;
+    }
+    int methodId = CoverageTracker.registerMethod(className, pName, pDescriptor);
+    Object methodIdConstant =
+        linkedMethodIds
+            ? new ConstantDynamic("methodId", "I", METHOD_ID_BOOTSTRAP, pName, pDescriptor)
+            : methodId;
+    ProbeStrategy probeStrategy = classStrategy;
+    if (granularity == ProbeGranularity.BLOCK) {
+      return new BlockProbeMethodVisitor(
+          api,
+          mv,
+          methodId,
+          methodIdConstant,
+          probeStrategy,
+          writesFrames,
+          pAccess,
+          pName,
+          pDescriptor,
+          pSignature,
+          pExceptions,
+          this::registerProbes);
+    }
+    return new LineProbeMethodVisitor(
+        api,
+        mv,
+        pName,
+        pDescriptor,
+        methodId,
+        methodIdConstant,
+        probeStrategy,
+        this::registerProbes);
+  }
+
+  /**
+   * Provides the probes of all methods instrumented so far.
+   *
+   * @return The probes in the order the methods were visited
+   */
+  List<MethodProbes> getInstrumentedMethods() {
+    return Collections.unmodifiableList(instrumentedMethods);
+  }
+
+  private void registerProbes(MethodProbes pProbes) {
+    pProbes.register();
+    instrumentedMethods.add(pProbes);
+  }
+
+  /**
+   * Checks whether the probes of a class file load the ids of their methods from dynamic
+   * constants, which are resolved by the methods' names when the class is linked.
+   *
+   * <p>Otherwise, the ids that were assigned during the instrumentation are part of the code,
+   * which is then only valid as long as the {@link CoverageTracker} assigns the same ids.
+   *
+   * @param pVersion The major version of the class file
+   * @return {@code true} if the instrumented code does not depend on the assigned method ids
+   */
+  static boolean linksMethodIds(int pVersion) {
+    // Dynamic constants require class files of version 55 (Java 11) or later.
+    return pVersion >= Opcodes.V11;
+  }
+
+  /**
+   * Emits the code that records a hit of a probe.
+   *
+   * @param pMethodVisitor The visitor to emit the code to
+   * @param pMethodId The id of the instrumented method, either as an {@link Integer} or as a
+   *     dynamic constant that resolves to it
+   * @param pProbeId The id of the probe within the method
+   * @param pStrategy The code to emit for the probe
+   */
+  static void emitProbe(
+      MethodVisitor pMethodVisitor, Object pMethodId, int pProbeId, ProbeStrategy pStrategy) {
+    switch (pStrategy) {
+      case INLINE -> {
+        pMethodVisitor.visitLdcInsn(
+            new ConstantDynamic("probes", "[Z", PROBES_BOOTSTRAP, pMethodId));
+        push(pMethodVisitor, pProbeId);
+        pMethodVisitor.visitInsn(Opcodes.ICONST_1);
+        pMethodVisitor.visitInsn(Opcodes.BASTORE);
+      }
+      case FIRST_HIT ->
+          pMethodVisitor.visitInvokeDynamicInsn(
+              "probe", "()V", FIRST_HIT_BOOTSTRAP, pMethodId, pProbeId);
+      case INVOKE -> {
+        pushMethodId(pMethodVisitor, pMethodId);
+        push(pMethodVisitor, pProbeId);
+        pMethodVisitor.visitMethodInsn(Opcodes.INVOKESTATIC, TRACKER, "hitProbe", "(II)V", false);
       }
+      case TRACE -> {
+        pushMethodId(pMethodVisitor, pMethodId);
+        push(pMethodVisitor, pProbeId);
+        pMethodVisitor.visitMethodInsn(
+            Opcodes.INVOKESTATIC, RECORDER, "traceBlock", "(II)V", false);
+      }
+    }
+  }
+
+  /**
+   * Determines the strategy to use for a class file, falling back to {@link ProbeStrategy#INVOKE}
+   * if the class file version or the probe granularity does not support the requested one.
+   */
+  private ProbeStrategy supportedStrategy(int pVersion) {
+    return switch (strategy) {
+      // Dynamic constants require class files of version 55 (Java 11) or later.
+      case INLINE -> pVersion >= Opcodes.V11 ? strategy : ProbeStrategy.INVOKE;
+      // Invokedynamic requires class files of version 51 (Java 7) or later.
+      case FIRST_HIT -> pVersion >= Opcodes.V1_7 ? strategy : ProbeStrategy.INVOKE;
+      // Traces are reconstructed from blocks, hence line probes cannot be traced.
+      case TRACE -> granularity == ProbeGranularity.BLOCK ? strategy : ProbeStrategy.INVOKE;
+      case INVOKE -> strategy;
     };
   }
+
+  /** Pushes a method id given as an {@link Integer} or as a dynamic constant. */
+  static void pushMethodId(MethodVisitor pMethodVisitor, Object pMethodId) {
+    if (pMethodId instanceof Integer methodId) {
+      push(pMethodVisitor, methodId);
+    } else {
+      pMethodVisitor.visitLdcInsn(pMethodId);
+    }
+  }
+
+  /** Pushes an {@code int} constant using the shortest instruction. */
+  static void push(MethodVisitor pMethodVisitor, int pValue) {
+    if (pValue >= -1 && pValue <= 5) {
+      pMethodVisitor.visitInsn(Opcodes.ICONST_0 + pValue);
+    } else if (pValue >= Byte.MIN_VALUE && pValue <= Byte.MAX_VALUE) {
+      pMethodVisitor.visitIntInsn(Opcodes.BIPUSH, pValue);
+    } else if (pValue >= Short.MIN_VALUE && pValue <= Short.MAX_VALUE) {
+      pMethodVisitor.visitIntInsn(Opcodes.SIPUSH, pValue);
+    } else {
+      pMethodVisitor.visitLdcInsn(pValue);
+    }
+  }
 }
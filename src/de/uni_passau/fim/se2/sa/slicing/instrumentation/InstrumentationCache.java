@@ -0,0 +1,264 @@
+package de.uni_passau.fim.se2.sa.slicing.instrumentation;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import de.uni_passau.fim.se2.sa.slicing.coverage.CoverageTracker;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * A persistent, content-addressed cache of instrumented class files.
+ *
+ * <p>Each entry is stored in its own file, named after the SHA-256 hash of the original class file,
+ * the instrumentation configuration, and the code of the agent, and is read through a memory
+ * mapping; entries created by another build of the agent are thus never used. Besides the
+ * instrumented bytes, an entry holds the probes of every method, which are registered with the
+ * {@link CoverageTracker} when the entry is used.
+ *
+ * <p>The probes of class files of Java 11 or later resolve the ids of their methods by name when
+ * the class is linked, see {@link InstrumentationAdapter#linksMethodIds(int)}, hence their entries
+ * are valid regardless of the order in which classes are loaded; their probes are registered
+ * under the ids the tracker assigns in the current run. The code of older class files refers to
+ * the method ids that were assigned when the entry was created, hence such an entry is only used
+ * if the tracker assigns the same ids again; otherwise, the class is instrumented anew and the
+ * entry is replaced. Entries are never evicted.
+ */
+final class InstrumentationCache {
+
+  private static final int MAGIC = 0x534C4943; // "SLIC"
+
+  /** Must be incremented whenever the instrumentation or the entry format changes. */
+  private static final int FORMAT_VERSION = 2;
+
+  /** The hash of the agent's code, computed when the first cache is created. */
+  private static String agentHash;
+
+  private final Path directory;
+  private final String configuration;
+
+  /**
+   * Creates a cache for one instrumentation configuration.
+   *
+   * @param pDirectory The directory holding the cache entries; created if it does not exist
+   * @param pGranularity The probe granularity of the instrumentation
+   * @param pStrategy The probe strategy of the instrumentation
+   * @param pFilter The methods selected for instrumentation
+   */
+  InstrumentationCache(
+      Path pDirectory, ProbeGranularity pGranularity, ProbeStrategy pStrategy, MethodFilter pFilter) {
+    directory = pDirectory;
+    configuration =
+        FORMAT_VERSION + "/" + agentHash() + "/" + pGranularity + "/" + pStrategy + "/" + pFilter;
+  }
+
+  private static synchronized String agentHash() {
+    if (agentHash == null) {
+      CodeSource source = InstrumentationCache.class.getProtectionDomain().getCodeSource();
+      try {
+        agentHash = hashAgentCode(Path.of(source.getLocation().toURI()));
+      } catch (IOException | URISyntaxException | RuntimeException e) {
+        // Without knowing the agent's code, entries are only used by the current run.
+        agentHash = UUID.randomUUID().toString();
+      }
+    }
+    return agentHash;
+  }
+
+  /**
+   * Hashes the code of the agent.
+   *
+   * @param pLocation The agent's jar file or the directory holding its class files
+   * @return The SHA-256 hash of the jar file or of the names and contents of the directory's files
+   * @throws IOException if the code cannot be read
+   */
+  static String hashAgentCode(Path pLocation) throws IOException {
+    Hasher hasher = Hashing.sha256().newHasher();
+    if (Files.isDirectory(pLocation)) {
+      List<Path> files;
+      try (Stream<Path> paths = Files.walk(pLocation)) {
+        files = paths.filter(Files::isRegularFile).sorted().toList();
+      }
+      for (Path file : files) {
+        hasher.putString(pLocation.relativize(file).toString(), StandardCharsets.UTF_8);
+        hasher.putBytes(Files.readAllBytes(file));
+      }
+    } else {
+      hasher.putBytes(Files.readAllBytes(pLocation));
+    }
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Looks up the instrumented version of a class and registers its probes.
+   *
+   * @param pClassName The internal name of the class
+   * @param pOriginal The original class file
+   * @return The instrumented class file, or {@code null} if there is no usable entry
+   * @throws IOException if the entry exists but cannot be read
+   */
+  byte[] lookup(String pClassName, byte[] pOriginal) throws IOException {
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(entryPath(pOriginal), StandardOpenOption.READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+
+    List<MethodProbes> methods;
+    byte[] instrumented;
+    try {
+      if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+        return null;
+      }
+      methods = readMethods(buffer);
+      instrumented = new byte[readLength(buffer, Byte.BYTES)];
+      buffer.get(instrumented);
+    } catch (BufferUnderflowException | IllegalArgumentException e) {
+      // A truncated or otherwise corrupted entry is treated as missing and gets replaced.
+      return null;
+    }
+
+    boolean linkedMethodIds = InstrumentationAdapter.linksMethodIds(classVersion(pOriginal));
+    List<MethodProbes> registered = new ArrayList<>(methods.size());
+    for (MethodProbes method : methods) {
+      int methodId = CoverageTracker.registerMethod(pClassName, method.name(), method.descriptor());
+      if (methodId != method.methodId() && !linkedMethodIds) {
+        return null;
+      }
+      registered.add(
+          new MethodProbes(
+              method.name(), method.descriptor(), methodId, method.lines(), method.boundaries()));
+    }
+    registered.forEach(MethodProbes::register);
+    return instrumented;
+  }
+
+  /**
+   * Stores the instrumented version of a class.
+   *
+   * @param pOriginal The original class file
+   * @param pMethods The probes of the instrumented methods
+   * @param pInstrumented The instrumented class file
+   * @throws IOException if the entry cannot be written
+   */
+  void store(byte[] pOriginal, List<MethodProbes> pMethods, byte[] pInstrumented)
+      throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(pInstrumented.length + 1024);
+    try (DataOutputStream output = new DataOutputStream(bytes)) {
+      output.writeInt(MAGIC);
+      output.writeInt(FORMAT_VERSION);
+      writeMethods(output, pMethods);
+      output.writeInt(pInstrumented.length);
+      output.write(pInstrumented);
+    }
+
+    Files.createDirectories(directory);
+    // Write to a temporary file first, such that concurrent JVMs never map a partial entry.
+    Path temporary = Files.createTempFile(directory, "entry", ".tmp");
+    try {
+      Files.write(temporary, bytes.toByteArray());
+      Files.move(temporary, entryPath(pOriginal), StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  /** Reads the major version of a class file, which follows its magic and minor version. */
+  private static int classVersion(byte[] pClassFile) {
+    return pClassFile.length < 8 ? 0 : (pClassFile[6] & 0xFF) << 8 | pClassFile[7] & 0xFF;
+  }
+
+  Path entryPath(byte[] pOriginal) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putString(configuration, StandardCharsets.UTF_8);
+    hasher.putBytes(pOriginal);
+    return directory.resolve(hasher.hash() + ".bin");
+  }
+
+  private static void writeMethods(DataOutputStream pOutput, List<MethodProbes> pMethods)
+      throws IOException {
+    pOutput.writeInt(pMethods.size());
+    for (MethodProbes method : pMethods) {
+      writeString(pOutput, method.name());
+      writeString(pOutput, method.descriptor());
+      pOutput.writeInt(method.methodId());
+      pOutput.writeInt(method.lines().length);
+      for (int[] lines : method.lines()) {
+        writeInts(pOutput, lines);
+      }
+      pOutput.writeBoolean(method.boundaries() != null);
+      if (method.boundaries() != null) {
+        writeInts(pOutput, method.boundaries());
+      }
+    }
+  }
+
+  private static List<MethodProbes> readMethods(ByteBuffer pBuffer) {
+    int count = readLength(pBuffer, Byte.BYTES);
+    List<MethodProbes> methods = new ArrayList<>(count);
+    for (int m = 0; m < count; m++) {
+      String name = readString(pBuffer);
+      String descriptor = readString(pBuffer);
+      int methodId = pBuffer.getInt();
+      int[][] lines = new int[readLength(pBuffer, Integer.BYTES)][];
+      for (int probe = 0; probe < lines.length; probe++) {
+        lines[probe] = readInts(pBuffer);
+      }
+      int[] boundaries = pBuffer.get() != 0 ? readInts(pBuffer) : null;
+      methods.add(new MethodProbes(name, descriptor, methodId, lines, boundaries));
+    }
+    return methods;
+  }
+
+  private static void writeString(DataOutputStream pOutput, String pValue) throws IOException {
+    byte[] bytes = pValue.getBytes(StandardCharsets.UTF_8);
+    pOutput.writeInt(bytes.length);
+    pOutput.write(bytes);
+  }
+
+  private static String readString(ByteBuffer pBuffer) {
+    byte[] bytes = new byte[readLength(pBuffer, Byte.BYTES)];
+    pBuffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeInts(DataOutputStream pOutput, int[] pValues) throws IOException {
+    pOutput.writeInt(pValues.length);
+    for (int value : pValues) {
+      pOutput.writeInt(value);
+    }
+  }
+
+  private static int[] readInts(ByteBuffer pBuffer) {
+    int[] values = new int[readLength(pBuffer, Integer.BYTES)];
+    pBuffer.asIntBuffer().get(values);
+    pBuffer.position(pBuffer.position() + values.length * Integer.BYTES);
+    return values;
+  }
+
+  /** Reads a length and checks that the buffer holds at least that many elements. */
+  private static int readLength(ByteBuffer pBuffer, int pElementSize) {
+    int length = pBuffer.getInt();
+    if (length < 0 || (long) length * pElementSize > pBuffer.remaining()) {
+      throw new IllegalArgumentException("Invalid length " + length);
+    }
+    return length;
+  }
+}
@@ -4,15 +4,53 @@
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Opcodes;
 
+import java.io.IOException;
 import java.lang.instrument.ClassFileTransformer;
+import java.nio.file.Path;
 import java.security.ProtectionDomain;
+import java.util.List;
 
 public class LineCoverageTransformer implements ClassFileTransformer {
 
   private final String instrumentationTarget;
+  private final ProbeGranularity granularity;
+  private final ProbeStrategy strategy;
+  private final MethodFilter filter;
+  private final InstrumentationCache cache;
 
   public LineCoverageTransformer(String pInstrumentationTarget) {
+    this(pInstrumentationTarget, ProbeGranularity.LINE, ProbeStrategy.INVOKE);
+  }
+
+  public LineCoverageTransformer(
+      String pInstrumentationTarget, ProbeGranularity pGranularity, ProbeStrategy pStrategy) {
+    this(pInstrumentationTarget, pGranularity, pStrategy, MethodFilter.ALL, null);
+  }
+
+  /**
+   * Creates a transformer.
+   *
+   * @param pInstrumentationTarget The package (prefix) of the classes to instrument
+   * @param pGranularity The probe granularity
+   * @param pStrategy The probe strategy
+   * @param pFilter The methods to instrument; classes without selected methods are left untouched
+   * @param pCacheDirectory The directory of the persistent cache of instrumented classes, or
+   *     {@code null} to instrument every class anew
+   */
+  public LineCoverageTransformer(
+      String pInstrumentationTarget,
+      ProbeGranularity pGranularity,
+      ProbeStrategy pStrategy,
+      MethodFilter pFilter,
+      Path pCacheDirectory) {
     instrumentationTarget = pInstrumentationTarget.replace('.', '/');
+    granularity = pGranularity;
+    strategy = pStrategy;
+    filter = pFilter;
+    cache =
+        pCacheDirectory == null
+            ? null
+            : new InstrumentationCache(pCacheDirectory, pGranularity, pStrategy, pFilter);
   }
 
   @Override
@@ -22,20 +60,33 @@ public byte[] transform(
       Class<?> pClassBeingRedefined,
       ProtectionDomain pProtectionDomain,
       byte[] pClassFileBuffer) {
-    if (isIgnored(pClassName)) {
+    if (!isTarget(pClassName)) {
       return pClassFileBuffer;
     }
     try {
+      if (cache != null) {
+        byte[] cached = lookupCached(pClassName, pClassFileBuffer);
+        if (cached != null) {
+          return cached;
+        }
+      }
+
       ClassReader classReader = new ClassReader(pClassFileBuffer);
 
-      ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+      // The probes leave the operand stack unchanged at every frame, hence the frames of the
+      // original class can be kept and only the maximum stack size needs to be recomputed.
+      ClassWriter classWriter = new ClassWriter(classReader, ClassWriter.COMPUTE_MAXS);
 
       InstrumentationAdapter instrumentationAdapter =
-              new InstrumentationAdapter(Opcodes.ASM9, classWriter);
+              new InstrumentationAdapter(Opcodes.ASM9, classWriter, granularity, strategy, filter);
 
       classReader.accept(instrumentationAdapter, 0);
 
-      return classWriter.toByteArray();
+      byte[] instrumented = classWriter.toByteArray();
+      if (cache != null) {
+        storeCached(pClassFileBuffer, instrumentationAdapter.getInstrumentedMethods(), instrumented);
+      }
+      return instrumented;
 
     } catch (Exception e) {
       e.printStackTrace();
@@ -43,8 +94,33 @@ public byte[] transform(
     }
   }
 
-  private boolean isIgnored(String pClassName) {
-    return !pClassName.startsWith(instrumentationTarget) || pClassName.endsWith("Test");
+  private byte[] lookupCached(String pClassName, byte[] pClassFileBuffer) {
+    try {
+      return cache.lookup(pClassName, pClassFileBuffer);
+    } catch (IOException e) {
+      e.printStackTrace();
+      return null;
+    }
+  }
+
+  private void storeCached(byte[] pClassFileBuffer, List<MethodProbes> pMethods, byte[] pBytes) {
+    try {
+      cache.store(pClassFileBuffer, pMethods, pBytes);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Checks whether a class is instrumented by this transformer.
+   *
+   * @param pClassName The internal name of the class
+   * @return {@code true} if the transformer adds probes to the class
+   */
+  public boolean isTarget(String pClassName) {
+    return pClassName.startsWith(instrumentationTarget)
+        && !pClassName.endsWith("Test")
+        && filter.matchesClass(pClassName);
   }
 }
 
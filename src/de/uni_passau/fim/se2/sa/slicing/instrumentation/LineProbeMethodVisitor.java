@@ -0,0 +1,205 @@
+package de.uni_passau.fim.se2.sa.slicing.instrumentation;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Inserts one coverage probe per line number entry of a method.
+ *
+ * <p>The probe of a line is emitted directly before the next instruction rather than at the line
+ * number entry itself. A class reader visits the stack map frame of an offset after its line
+ * numbers, hence this keeps the probe behind the frame and the frames of the original class file
+ * remain valid for the instrumented code.
+ *
+ * <p>Frames refer to an uninitialized value by the label of its {@code NEW} instruction. When probes
+ * get emitted between that label and the {@code NEW}, a fresh label is placed behind the probes and
+ * the frames of the method refer to it instead.
+ */
+class LineProbeMethodVisitor extends MethodVisitor {
+
+  private final String name;
+  private final String descriptor;
+  private final int methodId;
+  private final Object methodIdConstant;
+  private final ProbeStrategy strategy;
+  private final Consumer<MethodProbes> registry;
+
+  private int[] probeLines = new int[8];
+  private int probeCount = 0;
+  private int pendingProbes = 0;
+  private Label lastLabel;
+  private final Map<Label, Label> relabeledAllocations = new HashMap<>();
+
+  LineProbeMethodVisitor(
+      int pAPI,
+      MethodVisitor pNext,
+      String pName,
+      String pDescriptor,
+      int pMethodId,
+      Object pMethodIdConstant,
+      ProbeStrategy pStrategy,
+      Consumer<MethodProbes> pRegistry) {
+    super(pAPI, pNext);
+    name = pName;
+    descriptor = pDescriptor;
+    methodId = pMethodId;
+    methodIdConstant = pMethodIdConstant;
+    strategy = pStrategy;
+    registry = pRegistry;
+  }
+
+  @Override
+  public void visitLabel(Label pLabel) {
+    super.visitLabel(pLabel);
+    lastLabel = pLabel;
+  }
+
+  @Override
+  public void visitFrame(
+      int pType, int pNumLocal, Object[] pLocal, int pNumStack, Object[] pStack) {
+    super.visitFrame(
+        pType, pNumLocal, relabel(pLocal, pNumLocal), pNumStack, relabel(pStack, pNumStack));
+  }
+
+  @Override
+  public void visitLineNumber(int pLine, Label pStart) {
+    super.visitLineNumber(pLine, pStart);
+    if (probeCount == probeLines.length) {
+      probeLines = Arrays.copyOf(probeLines, probeCount * 2);
+    }
+    probeLines[probeCount++] = pLine;
+    pendingProbes++;
+  }
+
+  @Override
+  public void visitInsn(int pOpcode) {
+    emitPendingProbes();
+    super.visitInsn(pOpcode);
+  }
+
+  @Override
+  public void visitIntInsn(int pOpcode, int pOperand) {
+    emitPendingProbes();
+    super.visitIntInsn(pOpcode, pOperand);
+  }
+
+  @Override
+  public void visitVarInsn(int pOpcode, int pVarIndex) {
+    emitPendingProbes();
+    super.visitVarInsn(pOpcode, pVarIndex);
+  }
+
+  @Override
+  public void visitTypeInsn(int pOpcode, String pType) {
+    Label allocation = lastLabel;
+    boolean probed = mv != null && pendingProbes > 0;
+    emitPendingProbes();
+    if (pOpcode == Opcodes.NEW && probed && allocation != null) {
+      Label relabeled = new Label();
+      mv.visitLabel(relabeled);
+      relabeledAllocations.put(allocation, relabeled);
+    }
+    super.visitTypeInsn(pOpcode, pType);
+  }
+
+  @Override
+  public void visitFieldInsn(int pOpcode, String pOwner, String pName, String pDescriptor) {
+    emitPendingProbes();
+    super.visitFieldInsn(pOpcode, pOwner, pName, pDescriptor);
+  }
+
+  @Override
+  public void visitMethodInsn(
+      int pOpcode, String pOwner, String pName, String pDescriptor, boolean pIsInterface) {
+    emitPendingProbes();
+    super.visitMethodInsn(pOpcode, pOwner, pName, pDescriptor, pIsInterface);
+  }
+
+  @Override
+  public void visitInvokeDynamicInsn(
+      String pName, String pDescriptor, Handle pBootstrapMethod, Object... pBootstrapArguments) {
+    emitPendingProbes();
+    super.visitInvokeDynamicInsn(pName, pDescriptor, pBootstrapMethod, pBootstrapArguments);
+  }
+
+  @Override
+  public void visitJumpInsn(int pOpcode, Label pLabel) {
+    emitPendingProbes();
+    super.visitJumpInsn(pOpcode, pLabel);
+  }
+
+  @Override
+  public void visitLdcInsn(Object pValue) {
+    emitPendingProbes();
+    super.visitLdcInsn(pValue);
+  }
+
+  @Override
+  public void visitIincInsn(int pVarIndex, int pIncrement) {
+    emitPendingProbes();
+    super.visitIincInsn(pVarIndex, pIncrement);
+  }
+
+  @Override
+  public void visitTableSwitchInsn(int pMin, int pMax, Label pDefault, Label... pLabels) {
+    emitPendingProbes();
+    super.visitTableSwitchInsn(pMin, pMax, pDefault, pLabels);
+  }
+
+  @Override
+  public void visitLookupSwitchInsn(Label pDefault, int[] pKeys, Label[] pLabels) {
+    emitPendingProbes();
+    super.visitLookupSwitchInsn(pDefault, pKeys, pLabels);
+  }
+
+  @Override
+  public void visitMultiANewArrayInsn(String pDescriptor, int pNumDimensions) {
+    emitPendingProbes();
+    super.visitMultiANewArrayInsn(pDescriptor, pNumDimensions);
+  }
+
+  @Override
+  public void visitEnd() {
+    // Line numbers that are not followed by any instruction never execute and get no probe.
+    probeCount -= pendingProbes;
+    pendingProbes = 0;
+    int[][] lines = new int[probeCount][];
+    for (int probe = 0; probe < probeCount; probe++) {
+      lines[probe] = new int[] {probeLines[probe]};
+    }
+    registry.accept(new MethodProbes(name, descriptor, methodId, lines, null));
+    super.visitEnd();
+  }
+
+  private void emitPendingProbes() {
+    for (int probeId = probeCount - pendingProbes; mv != null && probeId < probeCount; probeId++) {
+      // Emit through the next visitor; visiting this one would recurse into the probes.
+      InstrumentationAdapter.emitProbe(mv, methodIdConstant, probeId, strategy);
+    }
+    pendingProbes = 0;
+    // Only a NEW directly behind the last label is allocated at it.
+    lastLabel = null;
+  }
+
+  private Object[] relabel(Object[] pTypes, int pCount) {
+    if (pTypes == null || relabeledAllocations.isEmpty()) {
+      return pTypes;
+    }
+    Object[] types = pTypes;
+    for (int i = 0; i < pCount; i++) {
+      if (types[i] instanceof Label label && relabeledAllocations.containsKey(label)) {
+        if (types == pTypes) {
+          types = pTypes.clone();
+        }
+        types[i] = relabeledAllocations.get(label);
+      }
+    }
+    return types;
+  }
+}
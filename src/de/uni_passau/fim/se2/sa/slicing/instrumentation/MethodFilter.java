@@ -0,0 +1,97 @@
+package de.uni_passau.fim.se2.sa.slicing.instrumentation;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Selects the methods the instrumentation inserts probes into.
+ *
+ * <p>A filter consists of patterns of the form {@code [class#]name[:descriptor]}, where the class
+ * is given by its fully qualified name; omitted parts match anything. A method is selected if any
+ * pattern matches it, and an empty filter selects all methods.
+ */
+public final class MethodFilter {
+
+  /** The filter that selects all methods. */
+  public static final MethodFilter ALL = new MethodFilter(List.of());
+
+  private final List<Pattern> patterns;
+
+  private MethodFilter(List<Pattern> pPatterns) {
+    patterns = pPatterns;
+  }
+
+  /**
+   * Creates a filter from a list of patterns.
+   *
+   * @param pPatterns The patterns of the form {@code [class#]name[:descriptor]}
+   * @return The filter selecting the methods matched by any of the patterns
+   * @throws IllegalArgumentException if a pattern has no method name
+   */
+  public static MethodFilter of(List<String> pPatterns) {
+    return new MethodFilter(pPatterns.stream().map(Pattern::parse).toList());
+  }
+
+  /**
+   * Checks whether the filter may select any method of a class.
+   *
+   * @param pClassName The internal name of the class
+   * @return {@code true} if the class has to be instrumented
+   */
+  public boolean matchesClass(String pClassName) {
+    return patterns.isEmpty()
+        || patterns.stream().anyMatch(p -> p.owner() == null || p.owner().equals(pClassName));
+  }
+
+  /**
+   * Checks whether the filter selects a method.
+   *
+   * @param pOwner The internal name of the class declaring the method
+   * @param pName The name of the method
+   * @param pDescriptor The descriptor of the method
+   * @return {@code true} if the method has to be instrumented
+   */
+  public boolean matches(String pOwner, String pName, String pDescriptor) {
+    return patterns.isEmpty()
+        || patterns.stream().anyMatch(p -> p.matches(pOwner, pName, pDescriptor));
+  }
+
+  @Override
+  public String toString() {
+    return patterns.stream().map(Pattern::toString).collect(Collectors.joining(";"));
+  }
+
+  private record Pattern(String owner, String name, String descriptor) {
+
+    static Pattern parse(String pPattern) {
+      String pattern = pPattern.strip();
+      String owner = null;
+      int hash = pattern.indexOf('#');
+      if (hash >= 0) {
+        owner = pattern.substring(0, hash).replace('.', '/');
+        pattern = pattern.substring(hash + 1);
+      }
+      String descriptor = null;
+      int colon = pattern.indexOf(':');
+      if (colon >= 0) {
+        descriptor = pattern.substring(colon + 1);
+        pattern = pattern.substring(0, colon);
+      }
+      if (pattern.isEmpty()) {
+        throw new IllegalArgumentException("Missing method name in pattern: " + pPattern);
+      }
+      return new Pattern(owner, pattern, descriptor);
+    }
+
+    boolean matches(String pOwner, String pName, String pDescriptor) {
+      return (owner == null || owner.equals(pOwner))
+          && name.equals(pName)
+          && (descriptor == null || descriptor.equals(pDescriptor));
+    }
+
+    @Override
+    public String toString() {
+      return (owner == null ? "" : owner + "#") + name + (descriptor == null ? "" : ":" + descriptor);
+    }
+  }
+}
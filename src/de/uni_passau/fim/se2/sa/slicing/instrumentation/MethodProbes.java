@@ -0,0 +1,30 @@
+package de.uni_passau.fim.se2.sa.slicing.instrumentation;
+
+import de.uni_passau.fim.se2.sa.slicing.coverage.CoverageTracker;
+
+/**
+ * The probes the instrumentation inserted into a method.
+ *
+ * @param name The name of the method
+ * @param descriptor The descriptor of the method
+ * @param methodId The id the {@link CoverageTracker} assigned to the method
+ * @param lines The lines covered by each probe, indexed by probe id
+ * @param boundaries The instruction boundaries of the blocks for block probes, or {@code null} for
+ *     line probes, see {@link CoverageTracker#registerBlockProbes(int, int[][], int[])}
+ */
+record MethodProbes(
+    String name, String descriptor, int methodId, int[][] lines, int[] boundaries) {
+
+  /** Registers the probes with the {@link CoverageTracker}. */
+  void register() {
+    if (boundaries == null) {
+      int[] probeLines = new int[lines.length];
+      for (int probe = 0; probe < lines.length; probe++) {
+        probeLines[probe] = lines[probe][0];
+      }
+      CoverageTracker.registerProbes(methodId, probeLines);
+    } else {
+      CoverageTracker.registerBlockProbes(methodId, lines, boundaries);
+    }
+  }
+}
@@ -0,0 +1,14 @@
+package de.uni_passau.fim.se2.sa.slicing.instrumentation;
+
+/** Determines where the {@link InstrumentationAdapter} places its coverage probes. */
+public enum ProbeGranularity {
+
+  /** One probe per line number entry of a method. */
+  LINE,
+
+  /**
+   * One probe per basic block of a method; probe hits are mapped back to the lines and
+   * instructions of the block.
+   */
+  BLOCK
+}
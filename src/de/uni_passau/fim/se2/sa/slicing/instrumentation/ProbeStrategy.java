@@ -0,0 +1,30 @@
+package de.uni_passau.fim.se2.sa.slicing.instrumentation;
+
+/** Determines which code the {@link InstrumentationAdapter} emits for a coverage probe. */
+public enum ProbeStrategy {
+
+  /** Each probe calls {@code CoverageTracker.hitProbe(methodId, probeId)}. */
+  INVOKE,
+
+  /**
+   * Each probe stores into the method's probe array directly; the array is loaded as a lazily
+   * resolved dynamic constant, hence the hot path contains neither calls nor allocations. Class
+   * files older than Java 11 do not support dynamic constants and fall back to {@link #INVOKE}.
+   */
+  INLINE,
+
+  /**
+   * Each probe is an {@code invokedynamic} call site that records the first hit and then
+   * switches itself to a no-op; suited for coverage-only runs. Class files older than Java 7 fall
+   * back to {@link #INVOKE}.
+   */
+  FIRST_HIT,
+
+  /**
+   * Each probe calls {@code TraceRecorder.traceBlock(methodId, probeId)}, which appends the block
+   * to the execution trace of the current thread and marks it as covered; the entry into and the
+   * return from each method are recorded as well. Requires {@link ProbeGranularity#BLOCK} probes
+   * and falls back to {@link #INVOKE} for line probes.
+   */
+  TRACE
+}
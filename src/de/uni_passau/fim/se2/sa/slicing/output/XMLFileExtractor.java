@@ -3,13 +3,44 @@
 import de.uni_passau.fim.se2.sa.slicing.cfg.Node;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public class XMLFileExtractor implements Extractor {
 
   private final Collection<Node> nodes;
+  private final Map<Node, Integer> hitCounts;
+  private final int samplingInterval;
 
   public XMLFileExtractor(Collection<Node> pNodes) {
+    this(pNodes, Map.of());
+  }
+
+  /**
+   * Creates an extractor that annotates every line with the number of times its node was executed.
+   *
+   * @param pNodes The nodes of the slice
+   * @param pHitCounts The hit counts of the nodes; nodes without a count get no {@code hits}
+   *     attribute
+   */
+  public XMLFileExtractor(Collection<Node> pNodes, Map<Node, Integer> pHitCounts) {
+    this(pNodes, pHitCounts, 1);
+  }
+
+  /**
+   * Creates an extractor for a slice of sampled coverage, which the report states by a {@code
+   * sampling} attribute.
+   *
+   * @param pNodes The nodes of the slice
+   * @param pHitCounts The hit counts of the nodes; nodes without a count get no {@code hits}
+   *     attribute
+   * @param pSamplingInterval The number of probe hits per recorded hit on average, where {@code 1}
+   *     means the coverage was not sampled
+   */
+  public XMLFileExtractor(
+      Collection<Node> pNodes, Map<Node, Integer> pHitCounts, int pSamplingInterval) {
     nodes = pNodes;
+    hitCounts = pHitCounts;
+    samplingInterval = pSamplingInterval;
   }
 
   @Override
@@ -17,7 +48,11 @@ public String extract() {
     List<Node> sortedNodes = NodeSorter.sort(nodes);
     StringBuilder builder = new StringBuilder();
     builder.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-    builder.append("<report>\n");
+    if (samplingInterval > 1) {
+      builder.append(String.format("<report sampling=\"%d\">%n", samplingInterval));
+    } else {
+      builder.append("<report>\n");
+    }
 
     for (final Node node : sortedNodes) {
       String prettyPrint = node.prettyPrint().trim();
@@ -27,16 +62,18 @@ public String extract() {
         continue;
       }
 
+      Integer hits = hitCounts.get(node);
+      String hitsAttribute = hits == null ? "" : String.format(" hits=\"%d\"", hits);
       if (nodeID.matches("-?\\d+")) {
         builder.append(
             String.format(
-                "  <line nr=\"%d\" id=\"%d\" instruction=\"%s\"/>%n",
-                node.getLineNumber(), Integer.parseInt(nodeID), prettyPrint));
+                "  <line nr=\"%d\" id=\"%d\" instruction=\"%s\"%s/>%n",
+                node.getLineNumber(), Integer.parseInt(nodeID), prettyPrint, hitsAttribute));
       } else {
         builder.append(
             String.format(
-                "  <line nr=\"%d\" id=\"%s\" instruction=\"%s\"/>%n",
-                node.getLineNumber(), nodeID, prettyPrint));
+                "  <line nr=\"%d\" id=\"%s\" instruction=\"%s\"%s/>%n",
+                node.getLineNumber(), nodeID, prettyPrint, hitsAttribute));
       }
     }
 
@@ -0,0 +1,13 @@
+package de.uni_passau.fim.se2.sa.examples;
+
+/**
+ * Branches between a {@code NEW} and its constructor call, so that the stack map frames of
+ * {@link #allocate(boolean)} refer to uninitialized values by the label of the {@code NEW}.
+ */
+public class Allocation {
+
+    public Object allocate(boolean flag) {
+        Object o = new StringBuilder(flag ? "a" : "b");
+        return o;
+    }
+}
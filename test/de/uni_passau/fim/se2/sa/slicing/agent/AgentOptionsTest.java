@@ -0,0 +1,139 @@
+package de.uni_passau.fim.se2.sa.slicing.agent;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import de.uni_passau.fim.se2.sa.slicing.coverage.CoverageMode;
+import de.uni_passau.fim.se2.sa.slicing.instrumentation.ProbeGranularity;
+import de.uni_passau.fim.se2.sa.slicing.instrumentation.ProbeStrategy;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+
+class AgentOptionsTest {
+
+    @Test
+    void testMissingArgumentsUseDefaults() {
+        AgentOptions options = AgentOptions.parse(null);
+
+        assertEquals(AgentOptions.DEFAULT_TARGET, options.target());
+        assertEquals(ProbeGranularity.LINE, options.granularity());
+        assertEquals(ProbeStrategy.INVOKE, options.strategy());
+        assertNull(options.cacheDirectory());
+        assertEquals(options, AgentOptions.parse("  "));
+    }
+
+    @Test
+    void testTargetOnly() {
+        AgentOptions options = AgentOptions.parse("com.example");
+
+        assertEquals("com.example", options.target());
+        assertEquals(ProbeGranularity.LINE, options.granularity());
+    }
+
+    @Test
+    void testProbeGranularity() {
+        AgentOptions options = AgentOptions.parse("com.example,probes=block");
+
+        assertEquals("com.example", options.target());
+        assertEquals(ProbeGranularity.BLOCK, options.granularity());
+    }
+
+    @Test
+    void testAction() {
+        assertFalse(AgentOptions.parse("com.example").removeProbes());
+        assertFalse(AgentOptions.parse("com.example,action=add").removeProbes());
+        assertTrue(AgentOptions.parse("com.example,action=remove").removeProbes());
+        assertThrows(IllegalArgumentException.class, () -> AgentOptions.parse("action=undo"));
+    }
+
+    @Test
+    void testCoverageMode() {
+        assertEquals(CoverageMode.SHARED, AgentOptions.parse("com.example").coverageMode());
+        assertEquals(CoverageMode.PER_THREAD,
+                AgentOptions.parse("com.example,coverage=per_thread").coverageMode());
+        assertThrows(IllegalArgumentException.class,
+                () -> AgentOptions.parse("com.example,coverage=per_thread,strategy=inline"));
+        assertEquals(CoverageMode.COUNTING,
+                AgentOptions.parse("com.example,coverage=counting").coverageMode());
+        assertThrows(IllegalArgumentException.class,
+                () -> AgentOptions.parse("com.example,coverage=counting,strategy=first_hit"));
+    }
+
+    @Test
+    void testOnlineSlicing() {
+        assertFalse(AgentOptions.parse("com.example,probes=block,strategy=trace").onlineSlicing());
+        assertTrue(AgentOptions.parse("com.example,probes=block,strategy=trace,slicing=online").onlineSlicing());
+        assertThrows(IllegalArgumentException.class,
+                () -> AgentOptions.parse("com.example,slicing=online"));
+        assertThrows(IllegalArgumentException.class,
+                () -> AgentOptions.parse("com.example,probes=block,strategy=trace,slicing=online,trace=t.bin"));
+        assertThrows(IllegalArgumentException.class,
+                () -> AgentOptions.parse("com.example,probes=block,strategy=trace,slicing=offline"));
+    }
+
+    @Test
+    void testTraceFile() {
+        assertNull(AgentOptions.parse("com.example,probes=block,strategy=trace").traceFile());
+        assertEquals(Path.of("trace.bin"),
+                AgentOptions.parse("com.example,probes=block,strategy=trace,trace=trace.bin").traceFile());
+        assertThrows(IllegalArgumentException.class,
+                () -> AgentOptions.parse("com.example,trace=trace.bin"));
+    }
+
+    @Test
+    void testOptionsWithoutTarget() {
+        AgentOptions options = AgentOptions.parse(",probes=BLOCK");
+
+        assertEquals(AgentOptions.DEFAULT_TARGET, options.target());
+        assertEquals(ProbeGranularity.BLOCK, options.granularity());
+    }
+
+    @Test
+    void testProbeStrategy() {
+        AgentOptions options = AgentOptions.parse("com.example,probes=block,strategy=inline");
+
+        assertEquals(ProbeGranularity.BLOCK, options.granularity());
+        assertEquals(ProbeStrategy.INLINE, options.strategy());
+    }
+
+    @Test
+    void testCacheDirectory() {
+        AgentOptions options = AgentOptions.parse("com.example,cache=target/instrumented");
+
+        assertEquals(Path.of("target/instrumented"), options.cacheDirectory());
+    }
+
+    @Test
+    void testMethodFilter() {
+        AgentOptions options = AgentOptions.parse("com.example,method=com.example.A#run:()V,method=stop");
+
+        assertTrue(options.filter().matches("com/example/A", "run", "()V"));
+        assertTrue(options.filter().matches("com/example/B", "stop", "(I)V"));
+        assertFalse(options.filter().matches("com/example/B", "run", "()V"));
+        assertTrue(AgentOptions.parse("com.example").filter().matches("com/example/B", "run", "()V"));
+    }
+
+    @Test
+    void testSamplingInterval() {
+        assertEquals(1, AgentOptions.parse("com.example").samplingInterval());
+        assertEquals(16, AgentOptions.parse("com.example,sample=16").samplingInterval());
+        assertThrows(IllegalArgumentException.class, () -> AgentOptions.parse("com.example,sample=0"));
+        assertThrows(IllegalArgumentException.class, () -> AgentOptions.parse("com.example,sample=often"));
+        assertThrows(IllegalArgumentException.class,
+                () -> AgentOptions.parse("com.example,sample=16,strategy=inline"));
+    }
+
+    @Test
+    void testUnknownOptionIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> AgentOptions.parse("com.example,foo=bar"));
+    }
+
+    @Test
+    void testInvalidGranularityIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> AgentOptions.parse("com.example,probes=edge"));
+    }
+
+    @Test
+    void testTargetMustComeFirst() {
+        assertThrows(IllegalArgumentException.class, () -> AgentOptions.parse("probes=block,com.example"));
+    }
+}
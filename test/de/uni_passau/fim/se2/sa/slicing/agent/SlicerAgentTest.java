@@ -0,0 +1,87 @@
+package de.uni_passau.fim.se2.sa.slicing.agent;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.*;
+
+import de.uni_passau.fim.se2.sa.examples.GCD;
+import de.uni_passau.fim.se2.sa.slicing.coverage.CoverageTracker;
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class SlicerAgentTest {
+
+    @Test
+    void testAgentmainRetransformsTargetsAndRemovesProbes() throws Exception {
+        Instrumentation instrumentation = mock(Instrumentation.class);
+        Class<?> testClass = Class.forName("de.uni_passau.fim.se2.sa.examples.GCDTest");
+        when(instrumentation.getAllLoadedClasses())
+                .thenReturn(new Class<?>[] {GCD.class, testClass, String.class});
+        when(instrumentation.isModifiableClass(any())).thenReturn(true);
+
+        SlicerAgent.agentmain("de.uni_passau.fim.se2.sa.examples", instrumentation);
+
+        ArgumentCaptor<ClassFileTransformer> transformer = ArgumentCaptor.forClass(ClassFileTransformer.class);
+        verify(instrumentation).addTransformer(transformer.capture(), eq(true));
+        verify(instrumentation).retransformClasses(GCD.class);
+        assertTrue(SlicerAgent.wasInvoked());
+
+        // The mocked retransformation does not instrument, hence register the probes it would add.
+        String owner = "de/uni_passau/fim/se2/sa/examples/GCD";
+        int methodId = CoverageTracker.registerMethod(owner, "gcd", "(II)I");
+        CoverageTracker.registerProbes(methodId, new int[] {6, 7});
+        CoverageTracker.hitProbe(methodId, 0);
+        assertTrue(CoverageTracker.isInstrumented(owner, "gcd", "(II)I"));
+
+        // Every attachment receives its own instrumentation instance.
+        Instrumentation removal = mock(Instrumentation.class);
+        when(removal.getAllLoadedClasses()).thenReturn(new Class<?>[] {GCD.class});
+        when(removal.isModifiableClass(any())).thenReturn(true);
+        SlicerAgent.agentmain("de.uni_passau.fim.se2.sa.examples,action=remove", removal);
+
+        verify(instrumentation).removeTransformer(transformer.getValue());
+        verify(removal).retransformClasses(GCD.class);
+        verify(removal, never()).addTransformer(any(), anyBoolean());
+        assertFalse(CoverageTracker.isInstrumented(owner, "gcd", "(II)I"));
+        assertTrue(CoverageTracker.getVisitedLines(owner, "gcd", "(II)I").isEmpty());
+        assertFalse(CoverageTracker.getVisitedLines().contains(6));
+
+        // Instrumenting the class again tracks it anew.
+        CoverageTracker.registerProbes(methodId, new int[] {6, 7});
+        assertTrue(CoverageTracker.isInstrumented(owner, "gcd", "(II)I"));
+        assertTrue(CoverageTracker.getVisitedLines(owner, "gcd", "(II)I").isEmpty());
+        CoverageTracker.reset();
+    }
+
+    @Test
+    void testAttachingAgainReplacesTransformer() throws Exception {
+        Instrumentation instrumentation = mock(Instrumentation.class);
+        when(instrumentation.getAllLoadedClasses()).thenReturn(new Class<?>[] {GCD.class});
+        when(instrumentation.isModifiableClass(any())).thenReturn(true);
+
+        SlicerAgent.agentmain("de.uni_passau.fim.se2.sa.examples", instrumentation);
+        SlicerAgent.agentmain("de.uni_passau.fim.se2.sa.examples,probes=block", instrumentation);
+
+        ArgumentCaptor<ClassFileTransformer> transformers = ArgumentCaptor.forClass(ClassFileTransformer.class);
+        verify(instrumentation, times(2)).addTransformer(transformers.capture(), eq(true));
+        verify(instrumentation).removeTransformer(transformers.getAllValues().get(0));
+
+        SlicerAgent.agentmain("action=remove", instrumentation);
+        verify(instrumentation).removeTransformer(transformers.getAllValues().get(1));
+    }
+
+    @Test
+    void testUnmodifiableClassesAreSkipped() throws Exception {
+        Instrumentation instrumentation = mock(Instrumentation.class);
+        when(instrumentation.getAllLoadedClasses()).thenReturn(new Class<?>[] {GCD.class});
+        when(instrumentation.isModifiableClass(GCD.class)).thenReturn(false);
+
+        SlicerAgent.agentmain("de.uni_passau.fim.se2.sa.examples", instrumentation);
+        SlicerAgent.agentmain("action=remove", instrumentation);
+
+        verify(instrumentation, never()).retransformClasses(any(Class[].class));
+    }
+}
@@ -6,11 +6,14 @@
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.BitSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 class CoverageTrackerTest {
 
@@ -21,6 +24,8 @@ void setUp() {
 
     @AfterEach
     void tearDown() {
+        CoverageTracker.setMode(CoverageMode.SHARED);
+        CoverageTracker.setSamplingInterval(1);
         CoverageTracker.reset();
     }
 
@@ -196,7 +201,7 @@ void testGetVisitedLinesConsistency() {
     }
 
     @Test
-    void testLinkedHashSetOrderPreservation() {
+    void testVisitedLinesAreOrderedAscending() {
         // Track lines in specific order
         CoverageTracker.trackLineVisit(30);
         CoverageTracker.trackLineVisit(10);
@@ -206,8 +211,8 @@ void testLinkedHashSetOrderPreservation() {
         Set<Integer> visitedLines = CoverageTracker.getVisitedLines();
         assertEquals(4, visitedLines.size());
 
-        // Verify insertion order is preserved (LinkedHashSet property)
-        Integer[] expectedOrder = {30, 10, 20, 15};
+        // Lines are harvested from the probe array, hence in ascending order
+        Integer[] expectedOrder = {10, 15, 20, 30};
         Integer[] actualOrder = visitedLines.toArray(new Integer[0]);
 
         assertArrayEquals(expectedOrder, actualOrder);
@@ -239,13 +244,9 @@ void testConcurrentAccess() throws InterruptedException {
 
         Set<Integer> visitedLines = CoverageTracker.getVisitedLines();
 
-        // The implementation may not be fully thread-safe, so we test that:
-        // 1. Some lines were tracked (not zero)
-        // 2. No more than expected were tracked
-        // 3. All tracked lines are within expected range
+        // Probe writes are plain array stores, hence no visit may get lost
         int expectedTotal = numThreads * linesPerThread;
-        assertTrue(visitedLines.size() > 0, "Should track some lines");
-        assertTrue(visitedLines.size() <= expectedTotal, "Should not exceed expected total");
+        assertEquals(expectedTotal, visitedLines.size());
 
         // Verify all tracked lines are within expected range
         for (Integer line : visitedLines) {
@@ -359,10 +360,406 @@ void testLargeNumberOfLines() {
             assertTrue(visitedLines.contains(i));
         }
 
-        // Verify order preservation (LinkedHashSet)
+        // Verify ascending order
         Integer[] array = visitedLines.toArray(new Integer[0]);
         for (int i = 0; i < numLines; i++) {
             assertEquals(Integer.valueOf(i), array[i]);
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void testProbeHitsAreReportedAsLines() {
+        int methodId = CoverageTracker.registerMethod("test/Probes", "reported", "()V");
+        CoverageTracker.registerProbes(methodId, new int[] {42, 43, 45});
+
+        CoverageTracker.hitProbe(methodId, 0);
+        CoverageTracker.hitProbe(methodId, 2);
+        CoverageTracker.hitProbe(methodId, 2);
+
+        assertEquals(Set.of(42, 45), CoverageTracker.getVisitedLines());
+    }
+
+    @Test
+    void testResetClearsProbes() {
+        int methodId = CoverageTracker.registerMethod("test/Probes", "reset", "()V");
+        CoverageTracker.registerProbes(methodId, new int[] {7});
+        CoverageTracker.hitProbe(methodId, 0);
+
+        CoverageTracker.reset();
+
+        assertTrue(CoverageTracker.getVisitedLines().isEmpty());
+        CoverageTracker.hitProbe(methodId, 0);
+        assertEquals(Set.of(7), CoverageTracker.getVisitedLines());
+    }
+
+    @Test
+    void testRegistryGrowsBeyondInitialCapacity() {
+        int[] methodIds = new int[100];
+        for (int i = 0; i < methodIds.length; i++) {
+            methodIds[i] = CoverageTracker.registerMethod("test/Probes", "grow" + i, "()V");
+            CoverageTracker.registerProbes(methodIds[i], new int[] {1000 + i});
+        }
+
+        for (int methodId : methodIds) {
+            CoverageTracker.hitProbe(methodId, 0);
+        }
+
+        Set<Integer> visitedLines = CoverageTracker.getVisitedLines();
+        assertEquals(methodIds.length, visitedLines.size());
+        assertTrue(visitedLines.contains(1000));
+        assertTrue(visitedLines.contains(1099));
+    }
+
+    @Test
+    void testConcurrentProbeHits() throws InterruptedException {
+        int numThreads = 8;
+        int probes = 500;
+        int methodId = CoverageTracker.registerMethod("test/Probes", "concurrent", "()V");
+        int[] lines = new int[probes];
+        for (int i = 0; i < probes; i++) {
+            lines[i] = i + 1;
+        }
+        CoverageTracker.registerProbes(methodId, lines);
+
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        CountDownLatch latch = new CountDownLatch(numThreads);
+        for (int t = 0; t < numThreads; t++) {
+            final int offset = t;
+            executor.submit(() -> {
+                try {
+                    for (int i = offset; i < probes; i += numThreads) {
+                        CoverageTracker.hitProbe(methodId, i);
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(probes, CoverageTracker.getVisitedLines().size());
+    }
+
+    @Test
+    void testRegisterMethodInternsIds() {
+        int first = CoverageTracker.registerMethod("test/Interned", "m", "(I)V");
+        int second = CoverageTracker.registerMethod("test/Interned", "m", "(I)V");
+        int overload = CoverageTracker.registerMethod("test/Interned", "m", "()V");
+
+        assertEquals(first, second);
+        assertNotEquals(first, overload);
+    }
+
+    @Test
+    void testVisitedLinesAreQualifiedByMethod() {
+        int first = CoverageTracker.registerMethod("test/First", "run", "()V");
+        int second = CoverageTracker.registerMethod("test/Second", "run", "()V");
+        CoverageTracker.registerProbes(first, new int[] {12, 13});
+        CoverageTracker.registerProbes(second, new int[] {12, 20});
+
+        CoverageTracker.hitProbe(second, 0);
+        CoverageTracker.hitProbe(second, 1);
+
+        assertTrue(CoverageTracker.getVisitedLines("test/First", "run", "()V").isEmpty());
+        assertEquals(Set.of(12, 20), CoverageTracker.getVisitedLines("test/Second", "run", "()V"));
+        assertEquals(Set.of(12, 20), CoverageTracker.getVisitedLines());
+    }
+
+    @Test
+    void testUnknownMethodIsNotInstrumented() {
+        assertFalse(CoverageTracker.isInstrumented("test/Unknown", "run", "()V"));
+        assertTrue(CoverageTracker.getVisitedLines("test/Unknown", "run", "()V").isEmpty());
+    }
+
+    @Test
+    void testReinstrumentationKeepsHits() {
+        int methodId = CoverageTracker.registerMethod("test/Again", "run", "()V");
+        CoverageTracker.registerProbes(methodId, new int[] {3, 4});
+        CoverageTracker.hitProbe(methodId, 1);
+
+        assertEquals(methodId, CoverageTracker.registerMethod("test/Again", "run", "()V"));
+        CoverageTracker.registerProbes(methodId, new int[] {3, 4});
+
+        assertTrue(CoverageTracker.isInstrumented("test/Again", "run", "()V"));
+        assertEquals(Set.of(4), CoverageTracker.getVisitedLines("test/Again", "run", "()V"));
+    }
+
+    @Test
+    void testBlockProbesMapToLinesAndInstructions() {
+        int methodId = CoverageTracker.registerMethod("test/Blocks", "run", "()V");
+        CoverageTracker.registerBlockProbes(
+                methodId, new int[][] {{5, 6}, {7}, {9}}, new int[] {0, 4, 7, 10});
+
+        CoverageTracker.hitProbe(methodId, 0);
+        CoverageTracker.hitProbe(methodId, 2);
+
+        assertEquals(Set.of(5, 6, 9), CoverageTracker.getVisitedLines("test/Blocks", "run", "()V"));
+        BitSet instructions =
+                CoverageTracker.getVisitedInstructions("test/Blocks", "run", "()V").orElseThrow();
+        assertEquals(Set.of(0, 1, 2, 3, 7, 8, 9), instructions.stream().boxed().collect(Collectors.toSet()));
+    }
+
+    @Test
+    void testSnapshotCopiesCoverage() {
+        int methodId = CoverageTracker.registerMethod("test/Snapshot", "run", "()V");
+        CoverageTracker.registerBlockProbes(methodId, new int[][] {{5}, {7}}, new int[] {0, 3, 6});
+        CoverageTracker.hitProbe(methodId, 1);
+        CoverageTracker.trackLineVisit(70000);
+
+        CoverageSnapshot snapshot = CoverageTracker.snapshot();
+        CoverageTracker.reset();
+        CoverageTracker.hitProbe(methodId, 0);
+
+        assertEquals(Set.of(7, 70000), snapshot.getVisitedLines());
+        assertTrue(snapshot.isInstrumented("test/Snapshot", "run", "()V"));
+        assertFalse(snapshot.isInstrumented("test/Snapshot", "other", "()V"));
+        assertEquals(Set.of(7), snapshot.getVisitedLines("test/Snapshot", "run", "()V"));
+        assertEquals(Set.of(3, 4, 5), snapshot.getVisitedInstructions("test/Snapshot", "run", "()V")
+                .orElseThrow().stream().boxed().collect(Collectors.toSet()));
+    }
+
+    @Test
+    void testLineProbesHaveNoInstructionCoverage() {
+        int methodId = CoverageTracker.registerMethod("test/Lines", "run", "()V");
+        CoverageTracker.registerProbes(methodId, new int[] {1});
+
+        assertTrue(CoverageTracker.getVisitedInstructions("test/Lines", "run", "()V").isEmpty());
+    }
+
+    @Test
+    void testBlockProbesRequireMatchingBoundaries() {
+        int methodId = CoverageTracker.registerMethod("test/Blocks", "invalid", "()V");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> CoverageTracker.registerBlockProbes(methodId, new int[][] {{1}}, new int[] {0}));
+    }
+
+    @Test
+    void testPerThreadCoverageIsMergedOnHarvest() throws InterruptedException {
+        int methodId = CoverageTracker.registerMethod("test/Threads", "run", "()V");
+        CoverageTracker.registerBlockProbes(methodId, new int[][] {{1}, {2}, {3}}, new int[] {0, 2, 4, 6});
+        CoverageTracker.setMode(CoverageMode.PER_THREAD);
+
+        Thread first = new Thread(() -> CoverageTracker.hitProbe(methodId, 0), "first");
+        Thread second = new Thread(() -> {
+            CoverageTracker.hitProbe(methodId, 2);
+            CoverageTracker.trackLineVisit(70000);
+        }, "second");
+        first.start();
+        second.start();
+        first.join();
+        second.join();
+
+        assertEquals(Set.of(1, 3, 70000), CoverageTracker.getVisitedLines());
+        assertEquals(Set.of(1, 3), CoverageTracker.getVisitedLines("test/Threads", "run", "()V"));
+        assertEquals(Set.of(3), CoverageTracker.getVisitedLines("second", "test/Threads", "run", "()V"));
+        BitSet instructions =
+                CoverageTracker.getVisitedInstructions("first", "test/Threads", "run", "()V").orElseThrow();
+        assertEquals(Set.of(0, 1), instructions.stream().boxed().collect(Collectors.toSet()));
+
+        Map<String, Set<Integer>> perThread = CoverageTracker.getVisitedLinesPerThread();
+        assertEquals(Set.of(1), perThread.get("first"));
+        assertEquals(Set.of(3, 70000), perThread.get("second"));
+    }
+
+    @Test
+    void testPerThreadCoverageIsReset() throws InterruptedException {
+        int methodId = CoverageTracker.registerMethod("test/Threads", "reset", "()V");
+        CoverageTracker.registerProbes(methodId, new int[] {8});
+        CoverageTracker.setMode(CoverageMode.PER_THREAD);
+
+        CoverageTracker.hitProbe(methodId, 0);
+        CoverageTracker.trackLineVisit(9);
+        Thread worker = new Thread(() -> CoverageTracker.trackLineVisit(10), "worker");
+        worker.start();
+        worker.join();
+        assertEquals(Set.of(8, 9, 10), CoverageTracker.getVisitedLines());
+
+        CoverageTracker.reset();
+
+        assertTrue(CoverageTracker.getVisitedLines().isEmpty());
+        assertFalse(CoverageTracker.getVisitedLinesPerThread().containsKey("worker"));
+        CoverageTracker.hitProbe(methodId, 0);
+        assertEquals(Set.of(8), CoverageTracker.getVisitedLines());
+    }
+
+    @Test
+    void testContextsSeparateCoverageOfOneThread() {
+        int methodId = CoverageTracker.registerMethod("test/Threads", "context", "()V");
+        CoverageTracker.registerProbes(methodId, new int[] {5, 6});
+        CoverageTracker.setMode(CoverageMode.PER_THREAD);
+
+        CoverageTracker.enterContext("first test");
+        CoverageTracker.hitProbe(methodId, 0);
+        CoverageTracker.exitContext();
+        CoverageTracker.enterContext("second test");
+        CoverageTracker.hitProbe(methodId, 1);
+        CoverageTracker.exitContext();
+        CoverageTracker.trackLineVisit(7);
+
+        assertEquals(Set.of(5), CoverageTracker.getVisitedLines("first test", "test/Threads", "context", "()V"));
+        assertEquals(Set.of(6), CoverageTracker.snapshot("second test").getVisitedLines());
+        assertEquals(Set.of(7), CoverageTracker.getVisitedLinesPerThread().get(Thread.currentThread().getName()));
+        assertEquals(Set.of(5, 6, 7), CoverageTracker.getVisitedLines());
+        assertThrows(IllegalStateException.class, CoverageTracker::exitContext);
+
+        CoverageTracker.reset();
+
+        assertFalse(CoverageTracker.getVisitedLinesPerThread().containsKey("first test"));
+    }
+
+    @Test
+    void testCountingModeSumsHitsOfAllThreads() throws InterruptedException {
+        int methodId = CoverageTracker.registerMethod("test/Threads", "count", "()V");
+        // Line 2 spans both blocks; block 0 spans instructions 0-1, block 1 spans 2-4.
+        CoverageTracker.registerBlockProbes(methodId, new int[][] {{1, 2}, {2, 3}}, new int[] {0, 2, 5});
+        CoverageTracker.setMode(CoverageMode.COUNTING);
+
+        CoverageTracker.hitProbe(methodId, 0);
+        Thread worker = new Thread(() -> {
+            for (int i = 0; i < 3; i++) {
+                CoverageTracker.hitProbe(methodId, 0);
+                CoverageTracker.hitProbe(methodId, 1);
+            }
+        }, "worker");
+        worker.start();
+        worker.join();
+
+        assertEquals(Map.of(1, 4, 2, 4, 3, 3), CoverageTracker.getLineHitCounts("test/Threads", "count", "()V"));
+        assertEquals(Map.of(1, 1, 2, 1),
+                CoverageTracker.getLineHitCounts(Thread.currentThread().getName(), "test/Threads", "count", "()V"));
+        assertArrayEquals(new int[] {4, 4, 3, 3, 3},
+                CoverageTracker.getInstructionHitCounts("test/Threads", "count", "()V").orElseThrow());
+        assertEquals(Set.of(1, 2, 3), CoverageTracker.getVisitedLines("test/Threads", "count", "()V"));
+        CoverageSnapshot snapshot = CoverageTracker.snapshot("worker");
+        assertEquals(Map.of(1, 3, 2, 3, 3, 3), snapshot.getLineHitCounts("test/Threads", "count", "()V"));
+
+        CoverageTracker.reset();
+
+        assertTrue(CoverageTracker.getLineHitCounts("test/Threads", "count", "()V").isEmpty());
+        assertEquals(Map.of(1, 3, 2, 3, 3, 3), snapshot.getLineHitCounts("test/Threads", "count", "()V"));
+    }
+
+    @Test
+    void testSamplingRecordsAboutEveryNthHit() throws InterruptedException {
+        int methodId = CoverageTracker.registerMethod("test/Threads", "sampled", "()V");
+        CoverageTracker.registerProbes(methodId, new int[] {5});
+        CoverageTracker.setMode(CoverageMode.COUNTING);
+        CoverageTracker.setSamplingInterval(10);
+
+        Thread worker = new Thread(() -> {
+            for (int i = 0; i < 10_000; i++) {
+                CoverageTracker.hitProbe(methodId, 0);
+            }
+        }, "sampled");
+        worker.start();
+        worker.join();
+
+        int recorded = CoverageTracker.getLineHitCounts("test/Threads", "sampled", "()V").get(5);
+        assertTrue(recorded > 800 && recorded < 1200, "Recorded " + recorded + " of 10000 hits");
+        assertEquals(10, CoverageTracker.getSamplingInterval());
+    }
+
+    @Test
+    void testSamplingMissesSomeProbesHitOnce() {
+        int probes = 1000;
+        int methodId = CoverageTracker.registerMethod("test/Probes", "sampledOnce", "()V");
+        int[] lines = new int[probes];
+        for (int i = 0; i < probes; i++) {
+            lines[i] = i + 1;
+        }
+        CoverageTracker.registerProbes(methodId, lines);
+        CoverageTracker.setSamplingInterval(4);
+
+        for (int i = 0; i < probes; i++) {
+            CoverageTracker.hitProbe(methodId, i);
+        }
+
+        int visited = CoverageTracker.getVisitedLines("test/Probes", "sampledOnce", "()V").size();
+        assertTrue(visited > 0 && visited < probes / 2, "Visited " + visited + " of " + probes + " lines");
+        assertThrows(IllegalArgumentException.class, () -> CoverageTracker.setSamplingInterval(0));
+    }
+
+    @Test
+    void testThreadArraysFollowReinstrumentation() throws InterruptedException {
+        int methodId = CoverageTracker.registerMethod("test/Threads", "reinstrumented", "()V");
+        CoverageTracker.registerProbes(methodId, new int[] {1});
+        CoverageTracker.setMode(CoverageMode.COUNTING);
+        CountDownLatch hit = new CountDownLatch(1);
+        CountDownLatch reinstrumented = new CountDownLatch(1);
+        Thread worker = new Thread(() -> {
+            CoverageTracker.hitProbe(methodId, 0);
+            hit.countDown();
+            try {
+                reinstrumented.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // The thread still holds the array of the previous probes, which is too short for these
+            CoverageTracker.hitProbe(methodId, 2);
+            CoverageTracker.hitProbe(methodId, 2);
+        }, "reinstrumented");
+        worker.start();
+        assertTrue(hit.await(10, TimeUnit.SECONDS));
+
+        CoverageTracker.registerProbes(methodId, new int[] {1, 2, 3});
+        reinstrumented.countDown();
+        worker.join();
+
+        assertEquals(Set.of(3), CoverageTracker.getVisitedLines("test/Threads", "reinstrumented", "()V"));
+        assertEquals(Map.of(3, 2), CoverageTracker.getLineHitCounts("test/Threads", "reinstrumented", "()V"));
+    }
+
+    @Test
+    void testStaleProbesBeyondShorterMapAreDropped() {
+        int methodId = CoverageTracker.registerMethod("test/Threads", "shrunk", "()V");
+        for (CoverageMode mode : CoverageMode.values()) {
+            CoverageTracker.reset();
+            CoverageTracker.setMode(mode);
+            CoverageTracker.registerProbes(methodId, new int[] {1, 2, 3});
+            CoverageTracker.hitProbe(methodId, 0);
+
+            // E.g., line probes replaced by fewer block probes while an invocation is running
+            CoverageTracker.registerBlockProbes(methodId, new int[][] {{1, 2, 3}}, new int[] {0, 9});
+            assertDoesNotThrow(() -> CoverageTracker.hitProbe(methodId, 2), mode.toString());
+            CoverageTracker.hitProbe(methodId, 0);
+
+            assertEquals(Set.of(1, 2, 3), CoverageTracker.getVisitedLines("test/Threads", "shrunk", "()V"),
+                    mode.toString());
+        }
+    }
+
+    @Test
+    void testHitsAreNotCountedInPerThreadMode() {
+        int methodId = CoverageTracker.registerMethod("test/Threads", "uncounted", "()V");
+        CoverageTracker.registerProbes(methodId, new int[] {4});
+        CoverageTracker.setMode(CoverageMode.PER_THREAD);
+
+        CoverageTracker.hitProbe(methodId, 0);
+
+        assertEquals(Set.of(4), CoverageTracker.getVisitedLines("test/Threads", "uncounted", "()V"));
+        assertTrue(CoverageTracker.getLineHitCounts("test/Threads", "uncounted", "()V").isEmpty());
+        assertTrue(CoverageTracker.getInstructionHitCounts("test/Threads", "uncounted", "()V").isEmpty());
+        assertTrue(CoverageTracker.snapshot().getLineHitCounts("test/Threads", "uncounted", "()V").isEmpty());
+    }
+
+    @Test
+    void testContextsRequirePerThreadCoverage() {
+        assertThrows(IllegalStateException.class, () -> CoverageTracker.enterContext("test"));
+    }
+
+    @Test
+    void testSharedModeHasNoPerThreadCoverage() {
+        int methodId = CoverageTracker.registerMethod("test/Threads", "shared", "()V");
+        CoverageTracker.registerProbes(methodId, new int[] {4});
+
+        CoverageTracker.hitProbe(methodId, 0);
+
+        assertEquals(CoverageMode.SHARED, CoverageTracker.getMode());
+        assertTrue(CoverageTracker.getVisitedLines(
+                Thread.currentThread().getName(), "test/Threads", "shared", "()V").isEmpty());
+        assertEquals(Set.of(4), CoverageTracker.getVisitedLines("test/Threads", "shared", "()V"));
+    }
+}
@@ -0,0 +1,91 @@
+package de.uni_passau.fim.se2.sa.slicing.coverage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.Test;
+
+class TraceEncoderTest {
+
+    @Test
+    void testLoopIterationsAreFolded() throws IOException {
+        // A loop of 1000 iterations over two blocks, framed by the method's entry and exit.
+        List<Long> events = new ArrayList<>();
+        events.add(TraceReplay.encode(3, TraceReplay.ENTER));
+        events.add(TraceReplay.encode(3, 0));
+        for (int i = 0; i < 1000; i++) {
+            events.add(TraceReplay.encode(3, 1));
+            events.add(TraceReplay.encode(3, 2));
+        }
+        events.add(TraceReplay.encode(3, 3));
+        events.add(TraceReplay.encode(3, TraceReplay.EXIT));
+        long[] array = events.stream().mapToLong(Long::longValue).toArray();
+
+        TraceEncoder encoder = new TraceEncoder();
+        int size = encoder.encode(array, array.length);
+
+        assertTrue(size < 20, "Encoded " + array.length + " events into " + size + " bytes");
+        assertArrayEquals(array, roundTrip(encoder, size));
+    }
+
+    @Test
+    void testLongestPeriodIsFoundDespiteEarlyExit() throws IOException {
+        // Period 1 repeats twice, but the whole tail is a run of period 3.
+        long a = TraceReplay.encode(5, 0);
+        long b = TraceReplay.encode(5, 1);
+        long[] events = new long[300];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = i % 3 == 2 ? b : a;
+        }
+
+        TraceEncoder encoder = new TraceEncoder();
+        int size = encoder.encode(events, events.length);
+
+        assertTrue(size < 12, "Encoded " + events.length + " events into " + size + " bytes");
+        assertArrayEquals(events, roundTrip(encoder, size));
+    }
+
+    @Test
+    void testRandomEventsRoundTrip() throws IOException {
+        Random random = new Random(42);
+        TraceEncoder encoder = new TraceEncoder();
+        for (int round = 0; round < 50; round++) {
+            long[] events = LongStream.range(0, random.nextInt(500))
+                    .map(i -> TraceReplay.encode(random.nextInt(3) * 100_000, random.nextInt(4) - 2))
+                    .toArray();
+
+            int size = encoder.encode(events, events.length);
+
+            assertArrayEquals(events, roundTrip(encoder, size));
+        }
+    }
+
+    @Test
+    void testMalformedEncodingIsRejected() {
+        TraceDecoder decoder = new TraceDecoder();
+        // Three events announced, but only one encoded.
+        assertThrows(IOException.class, () -> decoder.decode(ByteBuffer.wrap(new byte[] {3, 0, 2})));
+        // A truncated varint.
+        assertThrows(IOException.class, () -> decoder.decode(ByteBuffer.wrap(new byte[] {1, (byte) 0x80})));
+    }
+
+    private static long[] roundTrip(TraceEncoder pEncoder, int pSize) throws IOException {
+        TraceDecoder decoder = new TraceDecoder();
+        decoder.decode(ByteBuffer.wrap(pEncoder.bytes(), 0, pSize));
+        List<Long> replayed = new ArrayList<>();
+        decoder.replayBackward(replayed::add);
+        long[] events = replayed.stream().mapToLong(Long::longValue).toArray();
+        // The events are replayed backwards.
+        for (int i = 0; i < events.length / 2; i++) {
+            long event = events[i];
+            events[i] = events[events.length - 1 - i];
+            events[events.length - 1 - i] = event;
+        }
+        return events;
+    }
+}
@@ -0,0 +1,121 @@
+package de.uni_passau.fim.se2.sa.slicing.coverage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TraceFileReaderTest {
+
+    // Block 0 spans instructions 0-1, block 1 spans instruction 2.
+    private static final int[] BOUNDARIES = {0, 2, 3};
+
+    @Test
+    void testRecordsAreReplayedBackwardsAcrossWindows(@TempDir Path pDirectory) throws IOException {
+        Path file = pDirectory.resolve("trace.bin");
+        // Windows smaller than most records, such that records span several windows.
+        try (TraceFileWriter writer = new TraceFileWriter(file, 32)) {
+            writer.writeThread(0, "main");
+            writer.writeThread(1, "worker");
+            for (int i = 0; i < 10; i++) {
+                long[] events = {
+                    TraceReplay.encode(7, TraceReplay.ENTER),
+                    TraceReplay.encode(7, i % 2),
+                    TraceReplay.encode(7, TraceReplay.EXIT)
+                };
+                writeEvents(writer, i % 2, events);
+            }
+        }
+
+        List<List<Integer>> main = new ArrayList<>();
+        List<List<Integer>> worker = new ArrayList<>();
+        try (TraceFileReader reader = new TraceFileReader(file, -1, 32)) {
+            assertEquals(Map.of(0, "main", 1, "worker"), reader.threadNames());
+            reader.replayBackward(Map.of(
+                    0, new TraceReplay(7, BOUNDARIES, () -> collect(main)),
+                    1, new TraceReplay(7, BOUNDARIES, () -> collect(worker))));
+        }
+
+        assertEquals(5, main.size());
+        assertEquals(5, worker.size());
+        assertTrue(main.stream().allMatch(List.of(1, 0)::equals));
+        assertTrue(worker.stream().allMatch(List.of(2)::equals));
+    }
+
+    @Test
+    void testLengthLimitsRecords(@TempDir Path pDirectory) throws IOException {
+        Path file = pDirectory.resolve("trace.bin");
+        long length;
+        try (TraceFileWriter writer = new TraceFileWriter(file, 64)) {
+            writer.writeThread(0, "main");
+            writeEvents(writer, 0, new long[] {TraceReplay.encode(7, TraceReplay.EXIT)});
+            length = writer.length();
+            writeEvents(writer, 0, new long[] {TraceReplay.encode(7, TraceReplay.EXIT)});
+        }
+
+        List<List<Integer>> invocations = new ArrayList<>();
+        try (TraceFileReader reader = new TraceFileReader(file, length)) {
+            TraceReplay replay = new TraceReplay(7, BOUNDARIES, () -> collect(invocations));
+            reader.replayBackward(Map.of(0, replay));
+            replay.finish();
+        }
+
+        assertEquals(1, invocations.size());
+    }
+
+    @Test
+    void testResetDiscardsRecords(@TempDir Path pDirectory) throws IOException {
+        Path file = pDirectory.resolve("trace.bin");
+        try (TraceFileWriter writer = new TraceFileWriter(file)) {
+            writer.writeThread(0, "main");
+            writer.reset();
+            writer.writeThread(1, "worker");
+            assertEquals(1, writer.generation());
+        }
+
+        try (TraceFileReader reader = new TraceFileReader(file, -1)) {
+            assertEquals(Map.of(1, "worker"), reader.threadNames());
+        }
+    }
+
+    @Test
+    void testInvalidFileIsRejected(@TempDir Path pDirectory) throws IOException {
+        Path file = pDirectory.resolve("trace.bin");
+        Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+        assertThrows(IOException.class, () -> new TraceFileReader(file, -1));
+
+        try (TraceFileWriter writer = new TraceFileWriter(file)) {
+            writer.writeThread(0, "main");
+        }
+        long truncated = Files.size(file) - 1;
+        assertThrows(IOException.class, () -> new TraceFileReader(file, truncated));
+    }
+
+    private static void writeEvents(TraceFileWriter pWriter, int pThread, long[] pEvents)
+            throws IOException {
+        TraceEncoder encoder = new TraceEncoder();
+        int size = encoder.encode(pEvents, pEvents.length);
+        pWriter.writeEvents(pThread, encoder.bytes(), size);
+    }
+
+    private static ExecutionTrace.Invocation collect(List<List<Integer>> pInvocations) {
+        List<Integer> instructions = new ArrayList<>();
+        return new ExecutionTrace.Invocation() {
+            @Override
+            public void visitInstruction(int pIndex) {
+                instructions.add(pIndex);
+            }
+
+            @Override
+            public void visitEnd() {
+                pInvocations.add(instructions);
+            }
+        };
+    }
+}
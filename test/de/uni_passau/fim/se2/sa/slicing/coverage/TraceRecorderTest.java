@@ -0,0 +1,218 @@
+package de.uni_passau.fim.se2.sa.slicing.coverage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TraceRecorderTest {
+
+    private int methodId;
+
+    @BeforeEach
+    void setUp() {
+        TraceRecorder.reset();
+        CoverageTracker.reset();
+        methodId = CoverageTracker.registerMethod("test/Traced", "run", "()V");
+        // Block 0 spans instructions 0-1, block 1 spans 2-4, block 2 spans 5.
+        CoverageTracker.registerBlockProbes(methodId, new int[][] {{1}, {2}, {3}}, new int[] {0, 2, 5, 6});
+    }
+
+    @AfterEach
+    void tearDown() {
+        TraceRecorder.reset();
+        CoverageTracker.reset();
+    }
+
+    @Test
+    void testExecutionsAreSplitIntoInvocations() {
+        TraceRecorder.enterMethod(methodId);
+        TraceRecorder.traceBlock(methodId, 0);
+        TraceRecorder.traceBlock(methodId, 2);
+        TraceRecorder.exitMethod(methodId);
+        TraceRecorder.enterMethod(methodId);
+        TraceRecorder.traceBlock(methodId, 1);
+        TraceRecorder.traceBlock(methodId, 1);
+        TraceRecorder.exitMethod(methodId);
+
+        List<int[]> executions = TraceRecorder.getExecutions("test/Traced", "run", "()V").orElseThrow();
+
+        assertEquals(2, executions.size());
+        assertArrayEquals(new int[] {0, 1, 5}, executions.get(0));
+        assertArrayEquals(new int[] {2, 3, 4, 2, 3, 4}, executions.get(1));
+        assertEquals(Set.of(1, 2, 3), CoverageTracker.getVisitedLines("test/Traced", "run", "()V"));
+    }
+
+    @Test
+    void testNestedInvocationsAreSeparated() {
+        int callee = CoverageTracker.registerMethod("test/Traced", "callee", "()V");
+        CoverageTracker.registerBlockProbes(callee, new int[][] {{7}}, new int[] {0, 3});
+
+        TraceRecorder.enterMethod(methodId);
+        TraceRecorder.traceBlock(methodId, 0);
+        TraceRecorder.enterMethod(methodId);
+        TraceRecorder.traceBlock(methodId, 2);
+        TraceRecorder.exitMethod(methodId);
+        TraceRecorder.enterMethod(callee);
+        TraceRecorder.traceBlock(callee, 0);
+        TraceRecorder.exitMethod(callee);
+        TraceRecorder.traceBlock(methodId, 1);
+        TraceRecorder.exitMethod(methodId);
+
+        List<int[]> executions = TraceRecorder.getExecutions("test/Traced", "run", "()V").orElseThrow();
+
+        assertEquals(2, executions.size());
+        assertArrayEquals(new int[] {5}, executions.get(0));
+        assertArrayEquals(new int[] {0, 1, 2, 3, 4}, executions.get(1));
+        assertArrayEquals(new int[] {0, 1, 2},
+                TraceRecorder.getExecutions("test/Traced", "callee", "()V").orElseThrow().get(0));
+    }
+
+    @Test
+    void testInvocationLeftByExceptionEndsInCaller() {
+        int callee = CoverageTracker.registerMethod("test/Traced", "thrower", "()V");
+        CoverageTracker.registerBlockProbes(callee, new int[][] {{7}}, new int[] {0, 1});
+
+        TraceRecorder.enterMethod(methodId);
+        TraceRecorder.traceBlock(methodId, 0);
+        TraceRecorder.enterMethod(callee);
+        TraceRecorder.traceBlock(callee, 0);
+        // The callee throws, the caller handles the exception.
+        TraceRecorder.traceBlock(methodId, 2);
+        TraceRecorder.exitMethod(methodId);
+
+        assertArrayEquals(new int[] {0, 1, 5},
+                TraceRecorder.getExecutions("test/Traced", "run", "()V").orElseThrow().get(0));
+        assertEquals(1, TraceRecorder.getExecutions("test/Traced", "thrower", "()V").orElseThrow().size());
+    }
+
+    @Test
+    void testExecutionsArePerThread() throws InterruptedException {
+        Thread worker = new Thread(() -> {
+            TraceRecorder.enterMethod(methodId);
+            TraceRecorder.traceBlock(methodId, 2);
+        }, "worker");
+        worker.start();
+        worker.join();
+        TraceRecorder.enterMethod(methodId);
+        TraceRecorder.traceBlock(methodId, 0);
+
+        assertEquals(2, TraceRecorder.getExecutions("test/Traced", "run", "()V").orElseThrow().size());
+        List<int[]> workerExecutions =
+                TraceRecorder.getExecutions("worker", "test/Traced", "run", "()V").orElseThrow();
+        assertEquals(1, workerExecutions.size());
+        assertArrayEquals(new int[] {5}, workerExecutions.get(0));
+    }
+
+    @Test
+    void testContextsHaveTracesOfTheirOwn() {
+        TraceRecorder.enterContext("test");
+        TraceRecorder.enterMethod(methodId);
+        TraceRecorder.traceBlock(methodId, 2);
+        TraceRecorder.exitMethod(methodId);
+        TraceRecorder.exitContext();
+        TraceRecorder.enterMethod(methodId);
+        TraceRecorder.traceBlock(methodId, 0);
+        TraceRecorder.exitMethod(methodId);
+
+        List<int[]> contextExecutions =
+                TraceRecorder.getExecutions("test", "test/Traced", "run", "()V").orElseThrow();
+        assertEquals(1, contextExecutions.size());
+        assertArrayEquals(new int[] {5}, contextExecutions.get(0));
+        assertArrayEquals(new int[] {0, 1}, TraceRecorder.getExecutions(
+                Thread.currentThread().getName(), "test/Traced", "run", "()V").orElseThrow().get(0));
+        assertThrows(IllegalStateException.class, TraceRecorder::exitContext);
+
+        TraceRecorder.reset();
+
+        assertTrue(TraceRecorder.getExecutions("test", "test/Traced", "run", "()V").isEmpty());
+    }
+
+    @Test
+    void testUntracedMethodHasNoExecutions() {
+        int lines = CoverageTracker.registerMethod("test/Traced", "lines", "()V");
+        CoverageTracker.registerProbes(lines, new int[] {1});
+
+        assertTrue(TraceRecorder.getExecutions("test/Traced", "lines", "()V").isEmpty());
+        assertTrue(TraceRecorder.getExecutions("test/Unknown", "run", "()V").isEmpty());
+        assertTrue(TraceRecorder.getExecutions("test/Traced", "run", "()V").isEmpty());
+    }
+
+    @Test
+    void testExecutionsAreStreamedFromTraceFile(@TempDir Path pDirectory) throws IOException {
+        Path file = pDirectory.resolve("trace.bin");
+        TraceRecorder.recordTo(file);
+        try {
+            // More events than a thread buffers, such that they are flushed several times.
+            for (int i = 0; i < 5000; i++) {
+                TraceRecorder.enterMethod(methodId);
+                TraceRecorder.traceBlock(methodId, i % 3);
+                TraceRecorder.exitMethod(methodId);
+            }
+
+            List<int[]> executions = TraceRecorder.getExecutions("test/Traced", "run", "()V").orElseThrow();
+
+            assertEquals(5000, executions.size());
+            assertArrayEquals(new int[] {0, 1}, executions.get(0));
+            assertArrayEquals(new int[] {2, 3, 4}, executions.get(4000));
+            assertArrayEquals(new int[] {5}, executions.get(4997));
+        } finally {
+            TraceRecorder.recordTo(null);
+        }
+    }
+
+    @Test
+    void testOnlineModePassesInvocationsToListener() {
+        List<List<Integer>> invocations = new ArrayList<>();
+        TraceListener listener = () -> {
+            List<Integer> instructions = new ArrayList<>();
+            invocations.add(instructions);
+            return new TraceListener.Invocation() {
+                @Override
+                public void visitInstruction(int pIndex) {
+                    instructions.add(pIndex);
+                }
+
+                @Override
+                public void visitEnd() {
+                    instructions.add(-1);
+                }
+            };
+        };
+        TraceRecorder.setOnline(true);
+        TraceRecorder.addListener(null, "test/Traced", "run", "()V", listener);
+        try {
+            TraceRecorder.enterMethod(methodId);
+            TraceRecorder.traceBlock(methodId, 0);
+            TraceRecorder.enterMethod(methodId);
+            TraceRecorder.traceBlock(methodId, 2);
+            TraceRecorder.exitMethod(methodId);
+            TraceRecorder.traceBlock(methodId, 1);
+            // The outer invocation is left by an exception.
+        } finally {
+            TraceRecorder.removeListener(listener);
+            TraceRecorder.setOnline(false);
+        }
+
+        assertEquals(List.of(List.of(0, 1, 2, 3, 4, -1), List.of(5, -1)), invocations);
+        assertTrue(TraceRecorder.getExecutions("test/Traced", "run", "()V").isEmpty());
+        assertEquals(Set.of(1, 2, 3), CoverageTracker.getVisitedLines("test/Traced", "run", "()V"));
+    }
+
+    @Test
+    void testResetDiscardsTraces() {
+        TraceRecorder.enterMethod(methodId);
+        TraceRecorder.traceBlock(methodId, 0);
+
+        TraceRecorder.reset();
+
+        assertTrue(TraceRecorder.getExecutions("test/Traced", "run", "()V").isEmpty());
+    }
+}
@@ -4,14 +4,25 @@
 
 import de.uni_passau.fim.se2.sa.slicing.cfg.Node;
 import de.uni_passau.fim.se2.sa.slicing.cfg.ProgramGraph;
+import de.uni_passau.fim.se2.sa.slicing.coverage.TraceListener;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
 import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+import org.objectweb.asm.tree.VarInsnNode;
 
 import java.io.IOException;
+import java.util.BitSet;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 class ProgramDependenceGraphTest {
 
@@ -417,4 +428,449 @@ void testLargeBackwardSlice() {
             assertTrue(slice.contains(node));
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void testSliceIndexMatchesTraversal() {
+        for (ProgramDependenceGraph pdg : new ProgramDependenceGraph[] {
+                new ProgramDependenceGraph(calculatorClassNode, evaluateMethodNode),
+                new ProgramDependenceGraph(gcdClassNode, gcdMethodNode)}) {
+            ProgramDependenceGraph indexed = new ProgramDependenceGraph(pdg.computeResult());
+            assertTrue(indexed.buildSliceIndex(ProgramDependenceGraph.DEFAULT_SLICE_INDEX_BUDGET));
+            assertTrue(indexed.hasSliceIndex());
+
+            for (Node node : pdg.computeResult().getNodes()) {
+                assertEquals(pdg.backwardSlice(node), indexed.backwardSlice(node));
+            }
+        }
+    }
+
+    @Test
+    void testSliceIndexWithCycle() {
+        ProgramGraph graph = new ProgramGraph();
+        Node node1 = new Node("node1");
+        Node node2 = new Node("node2");
+        Node node3 = new Node("node3");
+        Node node4 = new Node("node4");
+
+        graph.addNode(node1);
+        graph.addNode(node2);
+        graph.addNode(node3);
+        graph.addNode(node4);
+
+        // Cycle 2 -> 3 -> 2 fed by 1, feeding 4
+        graph.addEdge(node1, node2);
+        graph.addEdge(node2, node3);
+        graph.addEdge(node3, node2);
+        graph.addEdge(node3, node4);
+
+        ProgramDependenceGraph pdg = new ProgramDependenceGraph(graph);
+        assertTrue(pdg.buildSliceIndex(Long.MAX_VALUE));
+
+        assertEquals(Set.of(node1), pdg.backwardSlice(node1));
+        assertEquals(Set.of(node1, node2, node3), pdg.backwardSlice(node2));
+        assertEquals(Set.of(node1, node2, node3), pdg.backwardSlice(node3));
+        assertEquals(Set.of(node1, node2, node3, node4), pdg.backwardSlice(node4));
+    }
+
+    @Test
+    void testSliceIndexExceedingBudgetIsNotBuilt() {
+        ProgramDependenceGraph pdg = new ProgramDependenceGraph(gcdClassNode, gcdMethodNode);
+
+        assertFalse(pdg.buildSliceIndex(0));
+        assertFalse(pdg.hasSliceIndex());
+
+        Node node = pdg.computeResult().getNodes().iterator().next();
+        assertTrue(pdg.backwardSlice(node).contains(node));
+    }
+
+    @Test
+    void testBackwardSliceWithUnknownCriterion() {
+        ProgramGraph graph = new ProgramGraph();
+        graph.addNode(new Node("node1"));
+
+        ProgramDependenceGraph pdg = new ProgramDependenceGraph(graph);
+        assertThrows(IllegalArgumentException.class, () -> pdg.backwardSlice(new Node("other")));
+    }
+
+    @Test
+    void testForwardSliceWithDiamond() {
+        ProgramGraph graph = new ProgramGraph();
+        Node node1 = new Node("node1");
+        Node node2 = new Node("node2");
+        Node node3 = new Node("node3");
+        Node node4 = new Node("node4");
+
+        graph.addNode(node1);
+        graph.addNode(node2);
+        graph.addNode(node3);
+        graph.addNode(node4);
+        graph.addEdge(node1, node2);
+        graph.addEdge(node1, node3);
+        graph.addEdge(node2, node4);
+        graph.addEdge(node3, node4);
+
+        ProgramDependenceGraph pdg = new ProgramDependenceGraph(graph);
+
+        assertEquals(Set.of(node1, node2, node3, node4), pdg.forwardSlice(node1));
+        assertEquals(Set.of(node2, node4), pdg.forwardSlice(node2));
+        assertEquals(Set.of(node4), pdg.forwardSlice(node4));
+    }
+
+    @Test
+    void testChop() {
+        ProgramGraph graph = new ProgramGraph();
+        Node node1 = new Node("node1");
+        Node node2 = new Node("node2");
+        Node node3 = new Node("node3");
+        Node node4 = new Node("node4");
+        Node node5 = new Node("node5");
+
+        graph.addNode(node1);
+        graph.addNode(node2);
+        graph.addNode(node3);
+        graph.addNode(node4);
+        graph.addNode(node5);
+
+        // 1 -> 2 -> 4, 1 -> 3, 5 -> 4
+        graph.addEdge(node1, node2);
+        graph.addEdge(node2, node4);
+        graph.addEdge(node1, node3);
+        graph.addEdge(node5, node4);
+
+        ProgramDependenceGraph pdg = new ProgramDependenceGraph(graph);
+
+        assertEquals(Set.of(node1, node2, node4), pdg.chop(node1, node4));
+        assertEquals(Set.of(node5, node4), pdg.chop(node5, node4));
+        assertTrue(pdg.chop(node3, node4).isEmpty());
+        assertEquals(Set.of(node2), pdg.chop(node2, node2));
+    }
+
+    @Test
+    void testChopEqualsSliceIntersection() {
+        ProgramDependenceGraph pdg = new ProgramDependenceGraph(calculatorClassNode, evaluateMethodNode);
+        Node[] nodes = pdg.computeResult().getNodes().toArray(new Node[0]);
+
+        for (int i = 0; i < nodes.length; i += 3) {
+            for (int j = 0; j < nodes.length; j += 5) {
+                Set<Node> expected = new java.util.HashSet<>(pdg.forwardSlice(nodes[i]));
+                expected.retainAll(pdg.backwardSlice(nodes[j]));
+                assertEquals(expected, pdg.chop(nodes[i], nodes[j]));
+            }
+        }
+    }
+
+    @Test
+    void testCoveredSliceEqualsSliceOfReducedGraph() {
+        ProgramDependenceGraph pdg = new ProgramDependenceGraph(calculatorClassNode, evaluateMethodNode);
+        ProgramGraph full = pdg.computeResult();
+        Node[] nodes = full.getNodes().toArray(new Node[0]);
+        // Every third node is considered uncovered.
+        ProgramGraph reduced = new ProgramGraph();
+        IntStream.range(0, nodes.length).filter(i -> i % 3 != 0).forEach(i -> reduced.addNode(nodes[i]));
+        for (Node src : reduced.getNodes()) {
+            for (Node dst : full.getSuccessors(src)) {
+                if (reduced.getNodes().contains(dst)) {
+                    reduced.addEdge(src, dst);
+                }
+            }
+        }
+        ProgramDependenceGraph reducedPdg = new ProgramDependenceGraph(reduced);
+        BitSet covered = pdg.getIndexedGraph().toBitSet(reduced.getNodes());
+
+        for (int i = 0; i < nodes.length; i++) {
+            Set<Node> slice = pdg.backwardSlice(nodes[i], covered);
+            if (i % 3 == 0) {
+                assertTrue(slice.isEmpty());
+                assertTrue(pdg.backwardSlice(nodes[i], new SliceOptions(2, 5), covered).nodes().isEmpty());
+            } else {
+                assertEquals(reducedPdg.backwardSlice(nodes[i]), slice);
+                assertEquals(reducedPdg.backwardSlice(nodes[i], new SliceOptions(2, 5)),
+                        pdg.backwardSlice(nodes[i], new SliceOptions(2, 5), covered));
+            }
+        }
+        assertEquals(pdg.backwardSlice(nodes[0]), pdg.backwardSlice(nodes[0], (BitSet) null));
+    }
+
+    @Test
+    void testAggregateSlicesRestrictedToCoverage() {
+        ProgramGraph graph = new ProgramGraph();
+        Node node1 = new Node("node1");
+        Node node2 = new Node("node2");
+        Node node3 = new Node("node3");
+        Node node4 = new Node("node4");
+
+        graph.addNode(node1);
+        graph.addNode(node2);
+        graph.addNode(node3);
+        graph.addNode(node4);
+
+        // 1 -> 2 -> 4, 3 -> 4
+        graph.addEdge(node1, node2);
+        graph.addEdge(node2, node4);
+        graph.addEdge(node3, node4);
+
+        ProgramDependenceGraph pdg = new ProgramDependenceGraph(graph);
+        IndexedGraph indexed = pdg.getIndexedGraph();
+        SliceAggregation aggregation = pdg.aggregateSlices(node4);
+
+        assertEquals(Set.of(node1, node2, node4), aggregation.add("first", indexed.toBitSet(List.of(node1, node2, node4))));
+        // Node 2 was not covered, hence node 1 is unreachable although it was covered.
+        assertEquals(Set.of(node3, node4), aggregation.add("second", indexed.toBitSet(List.of(node1, node3, node4))));
+        assertEquals(Set.of(node1, node2, node3, node4), aggregation.add("all", null));
+
+        assertEquals(Set.of(node1, node2, node3, node4), aggregation.getUnion());
+        assertEquals(Set.of(node4), aggregation.getIntersection());
+        assertEquals(3, aggregation.getFrequency(node4));
+        assertEquals(2, aggregation.getFrequency(node2));
+        assertEquals(List.of("first", "second", "all"), List.copyOf(aggregation.getTests()));
+        assertEquals(Set.of(node3, node4), aggregation.getSlice("second"));
+        assertThrows(IllegalArgumentException.class, () -> aggregation.add("all", null));
+
+        aggregation.add("uncovered", indexed.toBitSet(List.of(node1)));
+        assertTrue(aggregation.getIntersection().isEmpty());
+        assertEquals(3, aggregation.getFrequencies().get(node4));
+    }
+
+    @Test
+    void testBoundedSliceByDistance() {
+        ProgramGraph graph = new ProgramGraph();
+        Node[] nodes = new Node[5];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new Node("node" + i);
+            graph.addNode(nodes[i]);
+            if (i > 0) {
+                graph.addEdge(nodes[i - 1], nodes[i]);
+            }
+        }
+
+        ProgramDependenceGraph pdg = new ProgramDependenceGraph(graph);
+        SliceResult result = pdg.backwardSlice(nodes[4], SliceOptions.maxDistance(2));
+
+        assertEquals(Set.of(nodes[2], nodes[3], nodes[4]), result.nodes());
+        assertEquals(2, result.distance());
+        assertTrue(result.truncated());
+
+        SliceResult complete = pdg.backwardSlice(nodes[4], SliceOptions.maxDistance(4));
+        assertEquals(5, complete.nodes().size());
+        assertEquals(4, complete.distance());
+        assertFalse(complete.truncated());
+    }
+
+    @Test
+    void testBoundedSliceByNodeBudgetPrefersCloseNodes() {
+        ProgramGraph graph = new ProgramGraph();
+        Node criterion = new Node("criterion");
+        Node near1 = new Node("near1");
+        Node near2 = new Node("near2");
+        Node far = new Node("far");
+
+        graph.addNode(criterion);
+        graph.addNode(near1);
+        graph.addNode(near2);
+        graph.addNode(far);
+        graph.addEdge(far, near1);
+        graph.addEdge(near1, criterion);
+        graph.addEdge(near2, criterion);
+
+        ProgramDependenceGraph pdg = new ProgramDependenceGraph(graph);
+        SliceResult result = pdg.backwardSlice(criterion, SliceOptions.maxNodes(3));
+
+        assertEquals(Set.of(criterion, near1, near2), result.nodes());
+        assertEquals(1, result.distance());
+        assertTrue(result.truncated());
+        assertEquals(criterion, result.nodes().iterator().next());
+    }
+
+    @Test
+    void testUnboundedSliceMatchesBackwardSlice() {
+        ProgramDependenceGraph pdg = new ProgramDependenceGraph(gcdClassNode, gcdMethodNode);
+
+        for (Node node : pdg.computeResult().getNodes()) {
+            SliceResult result = pdg.backwardSlice(node, SliceOptions.UNBOUNDED);
+            assertEquals(pdg.backwardSlice(node), result.nodes());
+            assertFalse(result.truncated());
+        }
+    }
+
+    @Test
+    void testInvalidSliceOptions() {
+        assertThrows(IllegalArgumentException.class, () -> SliceOptions.maxDistance(-1));
+        assertThrows(IllegalArgumentException.class, () -> SliceOptions.maxNodes(0));
+    }
+
+    @Test
+    void testThinSliceIsContainedInBackwardSlice() {
+        ProgramDependenceGraph pdg = new ProgramDependenceGraph(gcdClassNode, gcdMethodNode);
+        boolean smaller = false;
+
+        for (Node node : pdg.computeResult().getNodes()) {
+            Set<Node> thin = pdg.thinSlice(node);
+            Set<Node> full = pdg.backwardSlice(node);
+            assertTrue(thin.contains(node));
+            assertTrue(full.containsAll(thin));
+            smaller |= thin.size() < full.size();
+        }
+
+        assertTrue(smaller, "Thin slices should omit control dependences");
+    }
+
+    @Test
+    void testThinSliceIgnoresBasePointers() {
+        // int m() { Owner o = this; int x = o.f; return x; }
+        ClassNode owner = new ClassNode();
+        owner.name = "Owner";
+        MethodNode method = new MethodNode(Opcodes.ACC_PUBLIC, "m", "()I", null, null);
+        VarInsnNode storeBase = new VarInsnNode(Opcodes.ASTORE, 1);
+        VarInsnNode storeValue = new VarInsnNode(Opcodes.ISTORE, 2);
+        method.instructions.add(new VarInsnNode(Opcodes.ALOAD, 0));
+        method.instructions.add(storeBase);
+        method.instructions.add(new VarInsnNode(Opcodes.ALOAD, 1));
+        method.instructions.add(new FieldInsnNode(Opcodes.GETFIELD, "Owner", "f", "I"));
+        method.instructions.add(storeValue);
+        method.instructions.add(new VarInsnNode(Opcodes.ILOAD, 2));
+        method.instructions.add(new InsnNode(Opcodes.IRETURN));
+        method.maxStack = 1;
+        method.maxLocals = 3;
+        owner.methods.add(method);
+
+        ProgramDependenceGraph pdg = new ProgramDependenceGraph(owner, method);
+        Node base = findNode(pdg, storeBase);
+        Node value = findNode(pdg, storeValue);
+
+        assertTrue(pdg.backwardSlice(value).contains(base));
+        assertFalse(pdg.thinSlice(value).contains(base));
+    }
+
+    @Test
+    void testThinSliceKeepsBasePointerUsedAsValue() {
+        // int m(int k) { Owner x = new Owner(); x.f = k; int r = use(x, x.f); return r; }
+        // and the same with use(x.f), where x is only dereferenced.
+        for (boolean passed : new boolean[] {true, false}) {
+            ClassNode owner = new ClassNode();
+            owner.name = "Owner";
+            MethodNode method = new MethodNode(Opcodes.ACC_PUBLIC, "m", "(I)I", null, null);
+            VarInsnNode storeBase = new VarInsnNode(Opcodes.ASTORE, 2);
+            VarInsnNode storeResult = new VarInsnNode(Opcodes.ISTORE, 3);
+            method.instructions.add(new TypeInsnNode(Opcodes.NEW, "Owner"));
+            method.instructions.add(new InsnNode(Opcodes.DUP));
+            method.instructions.add(new MethodInsnNode(Opcodes.INVOKESPECIAL, "Owner", "<init>", "()V", false));
+            method.instructions.add(storeBase);
+            method.instructions.add(new VarInsnNode(Opcodes.ALOAD, 2));
+            method.instructions.add(new VarInsnNode(Opcodes.ILOAD, 1));
+            method.instructions.add(new FieldInsnNode(Opcodes.PUTFIELD, "Owner", "f", "I"));
+            if (passed) {
+                method.instructions.add(new VarInsnNode(Opcodes.ALOAD, 2));
+            }
+            method.instructions.add(new VarInsnNode(Opcodes.ALOAD, 2));
+            method.instructions.add(new FieldInsnNode(Opcodes.GETFIELD, "Owner", "f", "I"));
+            method.instructions.add(new MethodInsnNode(
+                    Opcodes.INVOKESTATIC, "Owner", "use", passed ? "(LOwner;I)I" : "(I)I", false));
+            method.instructions.add(storeResult);
+            method.instructions.add(new VarInsnNode(Opcodes.ILOAD, 3));
+            method.instructions.add(new InsnNode(Opcodes.IRETURN));
+            method.maxStack = 3;
+            method.maxLocals = 4;
+            owner.methods.add(method);
+
+            ProgramDependenceGraph pdg = new ProgramDependenceGraph(owner, method);
+            Node base = findNode(pdg, storeBase);
+            Node result = findNode(pdg, storeResult);
+
+            assertTrue(pdg.backwardSlice(result).contains(base));
+            assertEquals(passed, pdg.thinSlice(result).contains(base), "x passed: " + passed);
+        }
+    }
+
+    @Test
+    void testThinSliceRequiresMethod() {
+        ProgramDependenceGraph pdg = new ProgramDependenceGraph(new ProgramGraph());
+
+        assertThrows(IllegalStateException.class, () -> pdg.thinSlice(new Node("node")));
+    }
+
+    @Test
+    void testDynamicSliceOnlyContainsInfluencingStatements() {
+        ProgramDependenceGraph pdg = new ProgramDependenceGraph(gcdClassNode, gcdMethodNode);
+        // gcd(42, 7): the loop body runs once, then the condition fails and x is returned.
+        int[] execution = Stream.of(
+                IntStream.range(0, 24), IntStream.range(4, 9), IntStream.range(24, 30))
+                .flatMapToInt(range -> range).toArray();
+        Node tmpStore = findNode(pdg, gcdMethodNode.instructions.get(14));
+        Node xStore = findNode(pdg, gcdMethodNode.instructions.get(18));
+        Node yStore = findNode(pdg, gcdMethodNode.instructions.get(22));
+        Node condition = findNode(pdg, gcdMethodNode.instructions.get(8));
+
+        Set<Node> slice = pdg.dynamicSlice(xStore, List.of(execution));
+
+        assertTrue(slice.contains(xStore));
+        assertTrue(slice.contains(condition));
+        assertFalse(slice.contains(tmpStore));
+        assertFalse(slice.contains(yStore));
+        assertTrue(pdg.backwardSlice(xStore).containsAll(slice));
+        assertTrue(pdg.backwardSlice(xStore).contains(yStore));
+    }
+
+    @Test
+    void testDynamicSliceFollowsLoopCarriedDependences() {
+        ProgramDependenceGraph pdg = new ProgramDependenceGraph(gcdClassNode, gcdMethodNode);
+        // gcd(12, 8): the second iteration of x = y uses the y defined by the first iteration.
+        int[] execution = Stream.of(
+                IntStream.range(0, 24), IntStream.range(4, 24), IntStream.range(4, 9), IntStream.range(24, 30))
+                .flatMapToInt(range -> range).toArray();
+        Node tmpStore = findNode(pdg, gcdMethodNode.instructions.get(14));
+        Node yStore = findNode(pdg, gcdMethodNode.instructions.get(22));
+
+        Set<Node> slice = pdg.dynamicSlice(findNode(pdg, gcdMethodNode.instructions.get(18)), List.of(execution));
+
+        assertTrue(slice.contains(tmpStore));
+        assertTrue(slice.contains(yStore));
+    }
+
+    @Test
+    void testDynamicSliceOfUnexecutedCriterionIsEmpty() {
+        ProgramDependenceGraph pdg = new ProgramDependenceGraph(gcdClassNode, gcdMethodNode);
+        // gcd(42, 0): the loop body is never entered.
+        int[] execution = IntStream.concat(IntStream.range(0, 9), IntStream.range(24, 30)).toArray();
+
+        assertTrue(pdg.dynamicSlice(findNode(pdg, gcdMethodNode.instructions.get(18)), List.of(execution)).isEmpty());
+        assertTrue(pdg.dynamicSlice(findNode(pdg, gcdMethodNode.instructions.get(18)), List.of()).isEmpty());
+    }
+
+    @Test
+    void testOnlineDynamicSliceMatchesTraceBasedSlice() {
+        ProgramDependenceGraph pdg = new ProgramDependenceGraph(gcdClassNode, gcdMethodNode);
+        int[] oneIteration = Stream.of(
+                IntStream.range(0, 24), IntStream.range(4, 9), IntStream.range(24, 30))
+                .flatMapToInt(range -> range).toArray();
+        int[] twoIterations = Stream.of(
+                IntStream.range(0, 24), IntStream.range(4, 24), IntStream.range(4, 9), IntStream.range(24, 30))
+                .flatMapToInt(range -> range).toArray();
+        List<int[]> executions = List.of(oneIteration, twoIterations);
+
+        for (Node criterion : pdg.computeResult().getNodes()) {
+            OnlineDynamicSlice onlineSlice = pdg.onlineDynamicSlice(criterion);
+            for (int[] execution : executions) {
+                TraceListener.Invocation invocation = onlineSlice.enterInvocation();
+                IntStream.of(execution).forEach(invocation::visitInstruction);
+                invocation.visitEnd();
+            }
+
+            assertEquals(pdg.dynamicSlice(criterion, executions), onlineSlice.getSlice(), criterion.toString());
+        }
+    }
+
+    @Test
+    void testDynamicSliceRequiresMethod() {
+        ProgramDependenceGraph pdg = new ProgramDependenceGraph(new ProgramGraph());
+
+        assertThrows(IllegalStateException.class, () -> pdg.dynamicSlice(new Node("node"), List.of()));
+        assertThrows(IllegalStateException.class, () -> pdg.onlineDynamicSlice(new Node("node")));
+    }
+
+    private Node findNode(ProgramDependenceGraph pdg, Object instruction) {
+        return pdg.computeResult().getNodes().stream()
+                .filter(n -> n.getInstruction() == instruction)
+                .findFirst()
+                .orElseThrow();
+    }
+}
@@ -0,0 +1,166 @@
+package de.uni_passau.fim.se2.sa.slicing.graph;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.google.common.hash.HashCode;
+import de.uni_passau.fim.se2.sa.slicing.cfg.Node;
+import de.uni_passau.fim.se2.sa.slicing.cfg.ProgramGraph;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Set;
+
+class SliceCacheTest {
+
+    private ClassNode gcdClassNode;
+    private MethodNode gcdMethodNode;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ClassReader gcdReader = new ClassReader("de.uni_passau.fim.se2.sa.examples.GCD");
+        gcdClassNode = new ClassNode();
+        gcdReader.accept(gcdClassNode, 0);
+        gcdMethodNode = gcdClassNode.methods.stream()
+                .filter(m -> "gcd".equals(m.name) && "(II)I".equals(m.desc))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    @Test
+    void testRepeatedSliceIsServedFromCache() {
+        SliceCache cache = new SliceCache(1024);
+        ProgramDependenceGraph pdg = new ProgramDependenceGraph(gcdClassNode, gcdMethodNode);
+        pdg.setSliceCache(cache);
+
+        Node criterion = pdg.computeResult().getNodes().iterator().next();
+        Set<Node> first = pdg.backwardSlice(criterion);
+        Set<Node> second = pdg.backwardSlice(criterion);
+
+        assertEquals(first, second);
+        assertEquals(1, cache.getStats().missCount());
+        assertEquals(1, cache.getStats().hitCount());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testCacheIsSharedBetweenGraphsOfSameMethod() {
+        SliceCache cache = new SliceCache(1024);
+        ProgramDependenceGraph first = new ProgramDependenceGraph(gcdClassNode, gcdMethodNode);
+        ProgramDependenceGraph second = new ProgramDependenceGraph(gcdClassNode, gcdMethodNode);
+        first.setSliceCache(cache);
+        second.setSliceCache(cache);
+
+        int index = 3;
+        Node firstCriterion = first.getIndexedGraph().getNode(index);
+        Node secondCriterion = second.getIndexedGraph().getNode(index);
+
+        assertEquals(first.backwardSlice(firstCriterion).size(),
+                second.backwardSlice(secondCriterion).size());
+        assertEquals(1, cache.getStats().hitCount());
+    }
+
+    @Test
+    void testCachedSlicesMatchUncachedSlices() {
+        ProgramDependenceGraph cached = new ProgramDependenceGraph(gcdClassNode, gcdMethodNode);
+        cached.setSliceCache(new SliceCache(1024));
+        ProgramDependenceGraph uncached = new ProgramDependenceGraph(cached.computeResult());
+
+        for (Node node : cached.computeResult().getNodes()) {
+            assertEquals(uncached.backwardSlice(node), cached.backwardSlice(node));
+            assertEquals(uncached.backwardSlice(node), cached.backwardSlice(node));
+        }
+    }
+
+    @Test
+    void testCoveredSlicesAreCachedPerCoverage() {
+        SliceCache cache = new SliceCache(1024);
+        ProgramDependenceGraph cached = new ProgramDependenceGraph(gcdClassNode, gcdMethodNode);
+        cached.setSliceCache(cache);
+        ProgramDependenceGraph uncached = new ProgramDependenceGraph(gcdClassNode, gcdMethodNode);
+        int size = cached.getIndexedGraph().size();
+        Node criterion = cached.getIndexedGraph().getNode(size - 1);
+        BitSet all = new BitSet();
+        all.set(0, size);
+        BitSet half = new BitSet();
+        half.set(size / 2, size);
+
+        Set<Node> fullSlice = cached.backwardSlice(criterion, all);
+        half.clear(size / 2);
+        Set<Node> halfSlice = cached.backwardSlice(criterion, half);
+        Set<Node> halfAgain = cached.backwardSlice(criterion, (BitSet) half.clone());
+
+        assertEquals(uncached.backwardSlice(uncached.getIndexedGraph().getNode(size - 1), half).size(),
+                halfSlice.size());
+        assertEquals(halfSlice, halfAgain);
+        assertTrue(fullSlice.containsAll(halfSlice));
+        assertEquals(2, cache.getStats().missCount());
+        assertEquals(1, cache.getStats().hitCount());
+    }
+
+    @Test
+    void testEvictionWhenWeightIsExceeded() {
+        SliceCache cache = new SliceCache(4);
+        ProgramDependenceGraph pdg = new ProgramDependenceGraph(gcdClassNode, gcdMethodNode);
+        pdg.setSliceCache(cache);
+
+        for (Node node : pdg.computeResult().getNodes()) {
+            pdg.backwardSlice(node);
+        }
+
+        assertTrue(cache.getStats().evictionCount() > 0);
+        assertTrue(cache.size() <= 2);
+    }
+
+    @Test
+    void testCoveredNodesCountTowardsWeight() {
+        SliceCache cache = new SliceCache(5);
+        HashCode classHash = HashCode.fromInt(42);
+        BitSet slice = new BitSet();
+        slice.set(3);
+
+        // Two slices of a single word each fit.
+        cache.get(new SliceCache.Key(classHash, "gcd(II)I", 0, null), () -> slice);
+        cache.get(new SliceCache.Key(classHash, "gcd(II)I", 1, null), () -> slice);
+        assertEquals(2, cache.size());
+
+        // With a word of covered nodes in each key, only one of them does.
+        cache.clear();
+        BitSet first = new BitSet();
+        first.set(1);
+        BitSet second = new BitSet();
+        second.set(2);
+        cache.get(new SliceCache.Key(classHash, "gcd(II)I", 0, first), () -> slice);
+        cache.get(new SliceCache.Key(classHash, "gcd(II)I", 0, second), () -> slice);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testClearKeepsStatistics() {
+        SliceCache cache = new SliceCache(1024);
+        ProgramDependenceGraph pdg = new ProgramDependenceGraph(gcdClassNode, gcdMethodNode);
+        pdg.setSliceCache(cache);
+        pdg.backwardSlice(pdg.getIndexedGraph().getNode(0));
+
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getStats().missCount());
+    }
+
+    @Test
+    void testCacheRequiresClassAndMethod() {
+        ProgramDependenceGraph pdg = new ProgramDependenceGraph(new ProgramGraph());
+
+        assertThrows(IllegalStateException.class, () -> pdg.setSliceCache(new SliceCache(1)));
+    }
+
+    @Test
+    void testNegativeWeightIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new SliceCache(-1));
+    }
+}
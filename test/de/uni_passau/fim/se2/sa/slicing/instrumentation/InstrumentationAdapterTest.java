@@ -2,6 +2,9 @@
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import de.uni_passau.fim.se2.sa.slicing.coverage.CoverageMode;
+import de.uni_passau.fim.se2.sa.slicing.coverage.CoverageSnapshot;
+import de.uni_passau.fim.se2.sa.slicing.coverage.CoverageTracker;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.objectweb.asm.*;
@@ -11,7 +14,10 @@
 import org.objectweb.asm.tree.MethodNode;
 
 import java.io.IOException;
+import java.util.BitSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 class InstrumentationAdapterTest {
 
@@ -229,8 +235,8 @@ void testInstrumentationWithComplexMethod() throws IOException {
         assertNotNull(gcdMethod);
         assertTrue(gcdMethod.instructions.size() > 0);
 
-        // Should contain calls to trackLineVisit
-        verifyTrackLineVisitCalls(gcdMethod);
+        // Should contain probe calls
+        verifyProbeCalls(gcdMethod);
     }
 
     @Test
@@ -275,7 +281,7 @@ void testInstrumentationWithStaticMethods() throws IOException {
         // Static methods should also be instrumented
         for (MethodNode method : staticMethods) {
             if (method.instructions.size() > 10) { // Skip trivial methods
-                verifyTrackLineVisitCalls(method);
+                verifyProbeCalls(method);
             }
         }
     }
@@ -346,6 +352,193 @@ void testMethodVisitorNesting() {
         assertNotSame(mv1, mv2);
     }
 
+    @Test
+    void testInstrumentedCodeRecordsExecutedLines() throws Exception {
+        ClassReader reader = new ClassReader("de.uni_passau.fim.se2.sa.examples.GCD");
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        reader.accept(new InstrumentationAdapter(Opcodes.ASM9, writer), 0);
+
+        Class<?> gcdClass = defineClass("de.uni_passau.fim.se2.sa.examples.GCD", writer.toByteArray());
+        Object gcd = gcdClass.getConstructor().newInstance();
+
+        CoverageTracker.reset();
+        Object result = gcdClass.getMethod("gcd", int.class, int.class).invoke(gcd, 4, 0);
+        Set<Integer> visitedLines = CoverageTracker.getVisitedLines();
+        CoverageTracker.reset();
+
+        assertEquals(4, result);
+        assertTrue(visitedLines.containsAll(Set.of(6, 7, 12)));
+        assertFalse(visitedLines.contains(8));
+    }
+
+    @Test
+    void testBlockProbesRecordExecutedLinesAndInstructions() throws Exception {
+        ClassReader reader = new ClassReader("de.uni_passau.fim.se2.sa.examples.GCD");
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        reader.accept(new InstrumentationAdapter(Opcodes.ASM9, writer, ProbeGranularity.BLOCK), 0);
+
+        Class<?> gcdClass = defineClass("de.uni_passau.fim.se2.sa.examples.GCD", writer.toByteArray());
+        Object gcd = gcdClass.getConstructor().newInstance();
+
+        CoverageTracker.reset();
+        Object result = gcdClass.getMethod("gcd", int.class, int.class).invoke(gcd, 4, 0);
+        String owner = "de/uni_passau/fim/se2/sa/examples/GCD";
+        Set<Integer> visitedLines = CoverageTracker.getVisitedLines(owner, "gcd", "(II)I");
+        BitSet visitedInstructions =
+                CoverageTracker.getVisitedInstructions(owner, "gcd", "(II)I").orElseThrow();
+        CoverageTracker.reset();
+
+        assertEquals(4, result);
+        assertEquals(Set.of(6, 7, 12), visitedLines);
+
+        // Map the visited instructions back onto the original method
+        ClassNode original = new ClassNode();
+        reader.accept(original, 0);
+        MethodNode gcdMethod = original.methods.stream()
+                .filter(m -> "gcd".equals(m.name))
+                .findFirst()
+                .orElseThrow();
+        for (int i = 0; i < gcdMethod.instructions.size(); i++) {
+            AbstractInsnNode insn = gcdMethod.instructions.get(i);
+            if (insn.getOpcode() == Opcodes.IREM) {
+                assertFalse(visitedInstructions.get(i), "Loop body must not be visited");
+            } else if (insn.getOpcode() == Opcodes.IRETURN) {
+                assertTrue(visitedInstructions.get(i), "Return must be visited");
+            }
+        }
+    }
+
+    @Test
+    void testBlockProbesAreFewerThanLineProbesForStraightLineCode() throws IOException {
+        ClassReader reader = new ClassReader("de.uni_passau.fim.se2.sa.examples.SimpleInteger");
+
+        ClassWriter lineWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        reader.accept(new InstrumentationAdapter(Opcodes.ASM9, lineWriter, ProbeGranularity.LINE), 0);
+        ClassWriter blockWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        reader.accept(new InstrumentationAdapter(Opcodes.ASM9, blockWriter, ProbeGranularity.BLOCK), 0);
+
+        assertTrue(countProbeCalls(blockWriter.toByteArray()) < countProbeCalls(lineWriter.toByteArray()));
+    }
+
+    @Test
+    void testInlineProbesContainNoCalls() throws Exception {
+        for (ProbeGranularity granularity : ProbeGranularity.values()) {
+            ClassReader reader = new ClassReader("de.uni_passau.fim.se2.sa.examples.GCD");
+            ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+            reader.accept(
+                    new InstrumentationAdapter(Opcodes.ASM9, writer, granularity, ProbeStrategy.INLINE), 0);
+            byte[] instrumentedBytes = writer.toByteArray();
+
+            assertEquals(0, countProbeCalls(instrumentedBytes));
+
+            Class<?> gcdClass = defineClass("de.uni_passau.fim.se2.sa.examples.GCD", instrumentedBytes);
+            Object gcd = gcdClass.getConstructor().newInstance();
+
+            CoverageTracker.reset();
+            Object result = gcdClass.getMethod("gcd", int.class, int.class).invoke(gcd, 4, 0);
+            Set<Integer> visitedLines = CoverageTracker.getVisitedLines(
+                    "de/uni_passau/fim/se2/sa/examples/GCD", "gcd", "(II)I");
+            CoverageTracker.reset();
+
+            assertEquals(4, result);
+            assertEquals(Set.of(6, 7, 12), visitedLines, "Granularity " + granularity);
+        }
+    }
+
+    @Test
+    void testFirstHitProbesRecordHitsOnce() throws Exception {
+        ClassReader reader = new ClassReader("de.uni_passau.fim.se2.sa.examples.GCD");
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        reader.accept(new InstrumentationAdapter(
+                Opcodes.ASM9, writer, ProbeGranularity.LINE, ProbeStrategy.FIRST_HIT), 0);
+        byte[] instrumentedBytes = writer.toByteArray();
+
+        assertEquals(0, countProbeCalls(instrumentedBytes));
+
+        Class<?> gcdClass = defineClass("de.uni_passau.fim.se2.sa.examples.GCD", instrumentedBytes);
+        Object gcd = gcdClass.getConstructor().newInstance();
+        String owner = "de/uni_passau/fim/se2/sa/examples/GCD";
+
+        CoverageTracker.reset();
+        CoverageTracker.setMode(CoverageMode.COUNTING);
+        try {
+            assertEquals(2, gcdClass.getMethod("gcd", int.class, int.class).invoke(gcd, 4, 6));
+            gcdClass.getMethod("gcd", int.class, int.class).invoke(gcd, 4, 6);
+            Map<Integer, Integer> hitCounts = CoverageTracker.getLineHitCounts(owner, "gcd", "(II)I");
+
+            // The call sites are disabled after their first hit
+            assertEquals(Set.of(6, 7, 8, 9, 10, 12), hitCounts.keySet());
+            assertTrue(hitCounts.values().stream().allMatch(count -> count == 1), hitCounts.toString());
+        } finally {
+            CoverageTracker.setMode(CoverageMode.SHARED);
+            CoverageTracker.reset();
+        }
+    }
+
+    @Test
+    void testFirstHitProbesAreRearmedByReset() throws Exception {
+        ClassReader reader = new ClassReader("de.uni_passau.fim.se2.sa.examples.GCD");
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        reader.accept(new InstrumentationAdapter(
+                Opcodes.ASM9, writer, ProbeGranularity.LINE, ProbeStrategy.FIRST_HIT), 0);
+        Class<?> gcdClass = defineClass("de.uni_passau.fim.se2.sa.examples.GCD", writer.toByteArray());
+        Object gcd = gcdClass.getConstructor().newInstance();
+        String owner = "de/uni_passau/fim/se2/sa/examples/GCD";
+
+        // Two tests covering the same lines, with a reset in between as before every test
+        CoverageTracker.reset();
+        gcdClass.getMethod("gcd", int.class, int.class).invoke(gcd, 4, 6);
+        CoverageSnapshot first = CoverageTracker.snapshot();
+        CoverageTracker.reset();
+        gcdClass.getMethod("gcd", int.class, int.class).invoke(gcd, 9, 6);
+        CoverageSnapshot second = CoverageTracker.snapshot();
+        CoverageTracker.reset();
+
+        assertEquals(Set.of(6, 7, 8, 9, 10, 12), first.getVisitedLines(owner, "gcd", "(II)I"));
+        assertEquals(Set.of(6, 7, 8, 9, 10, 12), second.getVisitedLines(owner, "gcd", "(II)I"));
+    }
+
+    @Test
+    void testInlineProbesFallBackToCallsForOldClassFiles() {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        InstrumentationAdapter inlineAdapter =
+                new InstrumentationAdapter(Opcodes.ASM9, writer, ProbeGranularity.LINE, ProbeStrategy.INLINE);
+        inlineAdapter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "test/Old", null, "java/lang/Object", null);
+        MethodVisitor mv = inlineAdapter.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "run", "()V", null, null);
+        mv.visitCode();
+        Label start = new Label();
+        mv.visitLabel(start);
+        mv.visitLineNumber(3, start);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        inlineAdapter.visitEnd();
+
+        assertEquals(1, countProbeCalls(writer.toByteArray()));
+    }
+
+    private int countProbeCalls(byte[] classBytes) {
+        ClassNode node = new ClassNode();
+        new ClassReader(classBytes).accept(node, 0);
+        int count = 0;
+        for (MethodNode method : node.methods) {
+            for (AbstractInsnNode insn : method.instructions) {
+                if (insn instanceof MethodInsnNode methodInsn && methodInsn.name.equals("hitProbe")) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    static Class<?> defineClass(String name, byte[] bytes) {
+        return new ClassLoader(InstrumentationAdapterTest.class.getClassLoader()) {
+            Class<?> define() {
+                return defineClass(name, bytes, 0, bytes.length);
+            }
+        }.define();
+    }
+
     private void verifyInstrumentationPresent(byte[] instrumentedBytes) throws IOException {
         ClassReader reader = new ClassReader(instrumentedBytes);
         ClassNode node = new ClassNode();
@@ -354,7 +547,7 @@ private void verifyInstrumentationPresent(byte[] instrumentedBytes) throws IOExc
         boolean foundTrackingCall = false;
 
         for (MethodNode method : node.methods) {
-            if (hasTrackLineVisitCall(method)) {
+            if (hasProbeCall(method)) {
                 foundTrackingCall = true;
                 break;
             }
@@ -363,17 +556,17 @@ private void verifyInstrumentationPresent(byte[] instrumentedBytes) throws IOExc
         assertTrue(foundTrackingCall, "Instrumented class should contain coverage tracking calls");
     }
 
-    private void verifyTrackLineVisitCalls(MethodNode method) {
-        assertTrue(hasTrackLineVisitCall(method),
-                "Method " + method.name + " should contain trackLineVisit calls");
+    private void verifyProbeCalls(MethodNode method) {
+        assertTrue(hasProbeCall(method),
+                "Method " + method.name + " should contain hitProbe calls");
     }
 
-    private boolean hasTrackLineVisitCall(MethodNode method) {
+    private boolean hasProbeCall(MethodNode method) {
         // Iterate through instructions manually since ListIterator doesn't have asIterable()
         for (AbstractInsnNode insn : method.instructions) {
             if (insn instanceof MethodInsnNode methodInsn &&
                     methodInsn.owner.equals("de/uni_passau/fim/se2/sa/slicing/coverage/CoverageTracker") &&
-                    methodInsn.name.equals("trackLineVisit")) {
+                    methodInsn.name.equals("hitProbe")) {
                 return true;
             }
         }
@@ -0,0 +1,147 @@
+package de.uni_passau.fim.se2.sa.slicing.instrumentation;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import de.uni_passau.fim.se2.sa.slicing.coverage.CoverageTracker;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+class InstrumentationCacheTest {
+
+    private static final byte[] ORIGINAL = {1, 2, 3, 4};
+    private static final byte[] INSTRUMENTED = {5, 6, 7, 8, 9};
+
+    @TempDir
+    Path cacheDirectory;
+
+    @AfterEach
+    void tearDown() {
+        CoverageTracker.reset();
+    }
+
+    @Test
+    void testLookupOfMissingEntry() throws IOException {
+        InstrumentationCache cache =
+                new InstrumentationCache(cacheDirectory, ProbeGranularity.LINE, ProbeStrategy.INVOKE, MethodFilter.ALL);
+
+        assertNull(cache.lookup("test/Cached", ORIGINAL));
+    }
+
+    @Test
+    void testStoredEntryIsFoundAndRegistersProbes() throws IOException {
+        InstrumentationCache cache =
+                new InstrumentationCache(cacheDirectory, ProbeGranularity.BLOCK, ProbeStrategy.INVOKE, MethodFilter.ALL);
+        int methodId = CoverageTracker.registerMethod("test/Cached", "run", "()V");
+        MethodProbes probes =
+                new MethodProbes("run", "()V", methodId, new int[][] {{3, 4}, {6}}, new int[] {0, 5, 9});
+
+        cache.store(ORIGINAL, List.of(probes), INSTRUMENTED);
+        byte[] cached = cache.lookup("test/Cached", ORIGINAL);
+
+        assertArrayEquals(INSTRUMENTED, cached);
+        assertTrue(CoverageTracker.isInstrumented("test/Cached", "run", "()V"));
+        CoverageTracker.hitProbe(methodId, 1);
+        assertEquals(Set.of(6), CoverageTracker.getVisitedLines("test/Cached", "run", "()V"));
+    }
+
+    @Test
+    void testEntriesAreSeparatedByConfiguration() throws IOException {
+        InstrumentationCache lineCache =
+                new InstrumentationCache(cacheDirectory, ProbeGranularity.LINE, ProbeStrategy.INVOKE, MethodFilter.ALL);
+        InstrumentationCache inlineCache =
+                new InstrumentationCache(cacheDirectory, ProbeGranularity.LINE, ProbeStrategy.INLINE, MethodFilter.ALL);
+
+        lineCache.store(ORIGINAL, List.of(), INSTRUMENTED);
+
+        assertNotEquals(lineCache.entryPath(ORIGINAL), inlineCache.entryPath(ORIGINAL));
+        assertNull(inlineCache.lookup("test/Cached", ORIGINAL));
+        assertNull(lineCache.lookup("test/Cached", new byte[] {1, 2, 3}));
+
+        InstrumentationCache filteredCache = new InstrumentationCache(cacheDirectory,
+                ProbeGranularity.LINE, ProbeStrategy.INVOKE, MethodFilter.of(List.of("run")));
+        assertNotEquals(lineCache.entryPath(ORIGINAL), filteredCache.entryPath(ORIGINAL));
+    }
+
+    @Test
+    void testAgentHashCoversCodeOfAgent(@TempDir Path pAgent) throws IOException {
+        Path classFile = pAgent.resolve("Probe.class");
+        Files.write(classFile, ORIGINAL);
+        String hash = InstrumentationCache.hashAgentCode(pAgent);
+
+        assertEquals(hash, InstrumentationCache.hashAgentCode(pAgent));
+        Files.write(classFile, INSTRUMENTED);
+        assertNotEquals(hash, InstrumentationCache.hashAgentCode(pAgent));
+        assertNotEquals(InstrumentationCache.hashAgentCode(pAgent), InstrumentationCache.hashAgentCode(classFile));
+    }
+
+    @Test
+    void testEntryWithDifferentMethodIdsIsNotUsed() throws IOException {
+        InstrumentationCache cache =
+                new InstrumentationCache(cacheDirectory, ProbeGranularity.LINE, ProbeStrategy.INVOKE, MethodFilter.ALL);
+        int methodId = CoverageTracker.registerMethod("test/Stale", "run", "()V");
+        MethodProbes probes = new MethodProbes("run", "()V", methodId + 1, new int[][] {{1}}, null);
+
+        cache.store(ORIGINAL, List.of(probes), INSTRUMENTED);
+
+        assertNull(cache.lookup("test/Stale", ORIGINAL));
+    }
+
+    @Test
+    void testEntryIsUsedRegardlessOfLoadOrder() throws Exception {
+        byte[] original;
+        try (InputStream input = ClassLoader.getSystemResourceAsStream("de/uni_passau/fim/se2/sa/examples/GCD.class")) {
+            assertNotNull(input);
+            original = input.readAllBytes();
+        }
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        InstrumentationAdapter adapter = new InstrumentationAdapter(Opcodes.ASM9, writer);
+        new ClassReader(original).accept(adapter, 0);
+        // Simulate an entry created in a run that loaded other classes first
+        List<MethodProbes> shifted = adapter.getInstrumentedMethods().stream()
+                .map(m -> new MethodProbes(m.name(), m.descriptor(), m.methodId() + 100, m.lines(), m.boundaries()))
+                .toList();
+        InstrumentationCache cache =
+                new InstrumentationCache(cacheDirectory, ProbeGranularity.LINE, ProbeStrategy.INVOKE, MethodFilter.ALL);
+
+        cache.store(original, shifted, writer.toByteArray());
+        byte[] cached = cache.lookup("de/uni_passau/fim/se2/sa/examples/GCD", original);
+
+        assertNotNull(cached);
+        Class<?> gcdClass = new ClassLoader(InstrumentationCacheTest.class.getClassLoader()) {
+            Class<?> define() {
+                return defineClass("de.uni_passau.fim.se2.sa.examples.GCD", cached, 0, cached.length);
+            }
+        }.define();
+        CoverageTracker.reset();
+        gcdClass.getMethod("gcd", int.class, int.class).invoke(gcdClass.getConstructor().newInstance(), 4, 0);
+        assertEquals(Set.of(6, 7, 12),
+                CoverageTracker.getVisitedLines("de/uni_passau/fim/se2/sa/examples/GCD", "gcd", "(II)I"));
+    }
+
+    @Test
+    void testCorruptedEntryIsTreatedAsMissing() throws IOException {
+        InstrumentationCache cache =
+                new InstrumentationCache(cacheDirectory, ProbeGranularity.LINE, ProbeStrategy.INVOKE, MethodFilter.ALL);
+        cache.store(ORIGINAL, List.of(), INSTRUMENTED);
+        Path entry = cache.entryPath(ORIGINAL);
+        byte[] bytes = Files.readAllBytes(entry);
+
+        Files.write(entry, Arrays.copyOf(bytes, bytes.length - 2));
+        assertNull(cache.lookup("test/Cached", ORIGINAL));
+
+        bytes[0] ^= 0x7F;
+        Files.write(entry, bytes);
+        assertNull(cache.lookup("test/Cached", ORIGINAL));
+    }
+}
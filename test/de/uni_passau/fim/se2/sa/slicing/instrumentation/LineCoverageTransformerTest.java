@@ -0,0 +1,217 @@
+package de.uni_passau.fim.se2.sa.slicing.instrumentation;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import de.uni_passau.fim.se2.sa.slicing.coverage.CoverageTracker;
+import de.uni_passau.fim.se2.sa.slicing.coverage.TraceListener;
+import de.uni_passau.fim.se2.sa.slicing.coverage.TraceRecorder;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+class LineCoverageTransformerTest {
+
+    private static final String[] EXAMPLES = {
+            "Allocation", "Calculator", "Complex", "GCD", "NestedLoop", "Rational", "SimpleInteger",
+            "TestClass"
+    };
+
+    @AfterEach
+    void tearDown() {
+        CoverageTracker.reset();
+    }
+
+    @Test
+    void testIgnoresClassesOutsideTarget() throws IOException {
+        LineCoverageTransformer transformer = new LineCoverageTransformer("de.uni_passau.fim.se2.sa.examples");
+        byte[] bytes = readClass("de/uni_passau/fim/se2/sa/slicing/coverage/CoverageTracker");
+
+        assertSame(bytes, transformer.transform(
+                null, "de/uni_passau/fim/se2/sa/slicing/coverage/CoverageTracker", null, null, bytes));
+    }
+
+    @Test
+    void testIgnoresTestClasses() throws IOException {
+        LineCoverageTransformer transformer = new LineCoverageTransformer("de.uni_passau.fim.se2.sa.examples");
+        byte[] bytes = readClass("de/uni_passau/fim/se2/sa/examples/GCDTest");
+
+        assertSame(bytes, transformer.transform(
+                null, "de/uni_passau/fim/se2/sa/examples/GCDTest", null, null, bytes));
+    }
+
+    @Test
+    void testInstrumentedClassesPassVerificationWithOriginalFrames() throws Exception {
+        for (ProbeGranularity granularity : ProbeGranularity.values()) {
+            for (ProbeStrategy strategy : ProbeStrategy.values()) {
+                LineCoverageTransformer transformer =
+                        new LineCoverageTransformer("de.uni_passau.fim.se2.sa.examples", granularity, strategy);
+                for (String example : EXAMPLES) {
+                    String internalName = "de/uni_passau/fim/se2/sa/examples/" + example;
+                    byte[] original = readClass(internalName);
+                    byte[] instrumented = transformer.transform(null, internalName, null, null, original);
+
+                    assertNotSame(original, instrumented, example + " must be instrumented");
+                    // Initializing the class links it, which verifies all of its methods
+                    Class<?> instrumentedClass = defineClass(internalName.replace('/', '.'), instrumented);
+                    assertDoesNotThrow(
+                            () -> Class.forName(instrumentedClass.getName(), true, instrumentedClass.getClassLoader()),
+                            example + " with " + granularity + "/" + strategy);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testInstrumentedLoopRecordsCoverage() throws Exception {
+        LineCoverageTransformer transformer = new LineCoverageTransformer("de.uni_passau.fim.se2.sa.examples");
+        String internalName = "de/uni_passau/fim/se2/sa/examples/GCD";
+        byte[] instrumented = transformer.transform(null, internalName, null, null, readClass(internalName));
+
+        Class<?> gcdClass = defineClass("de.uni_passau.fim.se2.sa.examples.GCD", instrumented);
+        Object gcd = gcdClass.getConstructor().newInstance();
+        CoverageTracker.reset();
+        Object result = gcdClass.getMethod("gcd", int.class, int.class).invoke(gcd, 12, 8);
+
+        assertEquals(4, result);
+        assertEquals(Set.of(6, 7, 8, 9, 10, 12), CoverageTracker.getVisitedLines(internalName, "gcd", "(II)I"));
+    }
+
+    @Test
+    void testTracedMethodRecordsExecutions() throws Exception {
+        LineCoverageTransformer transformer = new LineCoverageTransformer(
+                "de.uni_passau.fim.se2.sa.examples", ProbeGranularity.BLOCK, ProbeStrategy.TRACE);
+        String internalName = "de/uni_passau/fim/se2/sa/examples/GCD";
+        byte[] instrumented = transformer.transform(null, internalName, null, null, readClass(internalName));
+
+        Class<?> gcdClass = defineClass("de.uni_passau.fim.se2.sa.examples.GCD", instrumented);
+        Object gcd = gcdClass.getConstructor().newInstance();
+        CoverageTracker.reset();
+        TraceRecorder.reset();
+        gcdClass.getMethod("gcd", int.class, int.class).invoke(gcd, 42, 7);
+        gcdClass.getMethod("gcd", int.class, int.class).invoke(gcd, 42, 0);
+
+        List<int[]> executions = TraceRecorder.getExecutions(internalName, "gcd", "(II)I").orElseThrow();
+        assertEquals(2, executions.size());
+        // The loop body is executed once by the first and never by the second invocation.
+        assertTrue(executions.get(0).length > executions.get(1).length);
+        assertEquals(0, executions.get(1)[0]);
+        assertEquals(Set.of(6, 7, 8, 9, 10, 12), CoverageTracker.getVisitedLines(internalName, "gcd", "(II)I"));
+        TraceRecorder.reset();
+    }
+
+    @Test
+    void testInvocationLeftByExceptionEndsOnline() throws Exception {
+        LineCoverageTransformer transformer = new LineCoverageTransformer(
+                "de.uni_passau.fim.se2.sa.examples", ProbeGranularity.BLOCK, ProbeStrategy.TRACE);
+        String internalName = "de/uni_passau/fim/se2/sa/examples/Rational";
+        String descriptor = "(Ljava/math/BigInteger;Ljava/math/BigInteger;)L" + internalName + ";";
+        byte[] instrumented = transformer.transform(null, internalName, null, null, readClass(internalName));
+        Class<?> rationalClass = defineClass("de.uni_passau.fim.se2.sa.examples.Rational", instrumented);
+        Method of = rationalClass.getMethod("of", BigInteger.class, BigInteger.class);
+
+        List<Integer> ended = new ArrayList<>();
+        TraceListener listener = () -> {
+            int invocation = ended.size();
+            return new TraceListener.Invocation() {
+                @Override
+                public void visitInstruction(int pIndex) {}
+
+                @Override
+                public void visitEnd() {
+                    ended.add(invocation);
+                }
+            };
+        };
+        TraceRecorder.reset();
+        TraceRecorder.setOnline(true);
+        TraceRecorder.addListener(null, internalName, "of", descriptor, listener);
+        try {
+            for (int i = 0; i < 2; i++) {
+                // The criterion executes before the zero denominator is rejected.
+                InvocationTargetException thrown = assertThrows(
+                        InvocationTargetException.class, () -> of.invoke(null, BigInteger.ONE, BigInteger.ZERO));
+                assertInstanceOf(IllegalArgumentException.class, thrown.getCause());
+                assertEquals(i + 1, ended.size(), "Invocation " + i + " must end with the exception");
+            }
+        } finally {
+            TraceRecorder.removeListener(listener);
+            TraceRecorder.setOnline(false);
+            TraceRecorder.reset();
+        }
+        assertEquals(List.of(0, 1), ended);
+    }
+
+    @Test
+    void testCachedClassesAreReused(@TempDir Path cacheDirectory) throws Exception {
+        LineCoverageTransformer transformer = new LineCoverageTransformer(
+                "de.uni_passau.fim.se2.sa.examples", ProbeGranularity.LINE, ProbeStrategy.INVOKE,
+                MethodFilter.ALL, cacheDirectory);
+        String internalName = "de/uni_passau/fim/se2/sa/examples/GCD";
+        byte[] original = readClass(internalName);
+
+        byte[] instrumented = transformer.transform(null, internalName, null, null, original);
+        try (Stream<Path> entries = Files.list(cacheDirectory)) {
+            assertEquals(1, entries.count());
+        }
+        byte[] cached = transformer.transform(null, internalName, null, null, original);
+
+        assertNotSame(instrumented, cached);
+        assertArrayEquals(instrumented, cached);
+
+        Class<?> gcdClass = defineClass("de.uni_passau.fim.se2.sa.examples.GCD", cached);
+        Object gcd = gcdClass.getConstructor().newInstance();
+        CoverageTracker.reset();
+        gcdClass.getMethod("gcd", int.class, int.class).invoke(gcd, 4, 0);
+        assertEquals(Set.of(6, 7, 12), CoverageTracker.getVisitedLines(internalName, "gcd", "(II)I"));
+    }
+
+    @Test
+    void testMethodFilterRestrictsInstrumentation() throws Exception {
+        LineCoverageTransformer transformer = new LineCoverageTransformer(
+                "de.uni_passau.fim.se2.sa.examples", ProbeGranularity.LINE, ProbeStrategy.INVOKE,
+                MethodFilter.of(List.of("de.uni_passau.fim.se2.sa.examples.GCD#gcd:(II)I")), null);
+
+        String calculator = "de/uni_passau/fim/se2/sa/examples/Calculator";
+        byte[] calculatorBytes = readClass(calculator);
+        assertSame(calculatorBytes, transformer.transform(null, calculator, null, null, calculatorBytes));
+
+        String internalName = "de/uni_passau/fim/se2/sa/examples/GCD";
+        byte[] instrumented = transformer.transform(null, internalName, null, null, readClass(internalName));
+        ClassNode classNode = new ClassNode();
+        new ClassReader(instrumented).accept(classNode, 0);
+        for (MethodNode method : classNode.methods) {
+            boolean hasProbe = false;
+            for (AbstractInsnNode insn : method.instructions) {
+                hasProbe |= insn instanceof MethodInsnNode methodInsn && methodInsn.name.equals("hitProbe");
+            }
+            assertEquals(method.name.equals("gcd"), hasProbe, method.name);
+        }
+    }
+
+    private static byte[] readClass(String internalName) throws IOException {
+        try (InputStream input = ClassLoader.getSystemResourceAsStream(internalName + ".class")) {
+            assertNotNull(input, "Missing class file for " + internalName);
+            return input.readAllBytes();
+        }
+    }
+
+    private static Class<?> defineClass(String name, byte[] bytes) {
+        return InstrumentationAdapterTest.defineClass(name, bytes);
+    }
+}
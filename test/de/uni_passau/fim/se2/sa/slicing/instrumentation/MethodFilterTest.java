@@ -0,0 +1,54 @@
+package de.uni_passau.fim.se2.sa.slicing.instrumentation;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class MethodFilterTest {
+
+    @Test
+    void testAllMatchesEverything() {
+        assertTrue(MethodFilter.ALL.matchesClass("a/B"));
+        assertTrue(MethodFilter.ALL.matches("a/B", "c", "()V"));
+    }
+
+    @Test
+    void testQualifiedPattern() {
+        MethodFilter filter = MethodFilter.of(List.of("a.B#gcd:(II)I"));
+
+        assertTrue(filter.matchesClass("a/B"));
+        assertFalse(filter.matchesClass("a/C"));
+        assertTrue(filter.matches("a/B", "gcd", "(II)I"));
+        assertFalse(filter.matches("a/B", "gcd", "(JJ)J"));
+        assertFalse(filter.matches("a/C", "gcd", "(II)I"));
+    }
+
+    @Test
+    void testUnqualifiedPatternMatchesAllClassesAndOverloads() {
+        MethodFilter filter = MethodFilter.of(List.of("gcd"));
+
+        assertTrue(filter.matchesClass("a/C"));
+        assertTrue(filter.matches("a/C", "gcd", "(JJ)J"));
+        assertFalse(filter.matches("a/C", "lcm", "(JJ)J"));
+    }
+
+    @Test
+    void testAnyPatternMatches() {
+        MethodFilter filter = MethodFilter.of(List.of("a.B#run", "a.C#stop:()V"));
+
+        assertTrue(filter.matches("a/B", "run", "()V"));
+        assertTrue(filter.matches("a/C", "stop", "()V"));
+        assertFalse(filter.matches("a/C", "run", "()V"));
+    }
+
+    @Test
+    void testPatternWithoutNameIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> MethodFilter.of(List.of("a.B#:()V")));
+    }
+
+    @Test
+    void testToStringIsCanonical() {
+        assertEquals("a/B#run:()V;stop", MethodFilter.of(List.of(" a.B#run:()V", "stop")).toString());
+    }
+}
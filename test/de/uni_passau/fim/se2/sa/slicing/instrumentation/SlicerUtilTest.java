@@ -3,13 +3,19 @@
 import de.uni_passau.fim.se2.sa.slicing.SlicerUtil;
 import de.uni_passau.fim.se2.sa.slicing.cfg.Node;
 import de.uni_passau.fim.se2.sa.slicing.cfg.ProgramGraph;
+import de.uni_passau.fim.se2.sa.slicing.coverage.CoverageMode;
+import de.uni_passau.fim.se2.sa.slicing.coverage.CoverageSnapshot;
 import de.uni_passau.fim.se2.sa.slicing.coverage.CoverageTracker;
 import de.uni_passau.fim.se2.sa.slicing.graph.ProgramDependenceGraph;
+import de.uni_passau.fim.se2.sa.slicing.graph.SliceAggregation;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.MockedStatic;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
@@ -361,6 +367,152 @@ void testSimplify_LargeLineNumbers() {
         }
     }
 
+    @Test
+    void testSimplify_UsesCoverageOfSlicedMethod() {
+        ProgramDependenceGraph mockPDG = mock(ProgramDependenceGraph.class);
+        ProgramGraph mockFullGraph = mock(ProgramGraph.class);
+        ClassNode classNode = new ClassNode();
+        classNode.name = "test/Owner";
+        MethodNode methodNode = new MethodNode();
+        methodNode.name = "run";
+        methodNode.desc = "()V";
+
+        Node node1 = mock(Node.class);
+        Node node2 = mock(Node.class);
+        when(node1.getLineNumber()).thenReturn(10);
+        when(node2.getLineNumber()).thenReturn(20);
+
+        try (MockedStatic<CoverageTracker> mockedTracker = mockStatic(CoverageTracker.class)) {
+            // Line 20 was executed, but in a different method
+            mockedTracker.when(CoverageTracker::getVisitedLines).thenReturn(Set.of(10, 20));
+            mockedTracker.when(() -> CoverageTracker.isInstrumented("test/Owner", "run", "()V"))
+                    .thenReturn(true);
+            mockedTracker.when(() -> CoverageTracker.getVisitedLines("test/Owner", "run", "()V"))
+                    .thenReturn(Set.of(10));
+            when(mockPDG.getClassNode()).thenReturn(classNode);
+            when(mockPDG.getMethodNode()).thenReturn(methodNode);
+            when(mockPDG.computeResult()).thenReturn(mockFullGraph);
+            when(mockFullGraph.getNodes()).thenReturn(Arrays.asList(node1, node2));
+            when(mockFullGraph.getSuccessors(node1)).thenReturn(Arrays.asList(node2));
+
+            ProgramDependenceGraph result = SlicerUtil.simplify(mockPDG);
+
+            assertEquals(Set.of(node1), new HashSet<>(result.computeResult().getNodes()));
+        }
+    }
+
+    @Test
+    void testExecuteTestClass_RecordsCoverageOfEveryTest() {
+        List<String> finished = new ArrayList<>();
+
+        Map<String, CoverageSnapshot> coverage = SlicerUtil.executeTestClass(
+                "de.uni_passau.fim.se2.sa.examples.GCD", (test, snapshot) -> finished.add(test));
+
+        assertTrue(coverage.keySet().containsAll(Set.of("testGcd1", "testGcd2")));
+        assertEquals(new ArrayList<>(coverage.keySet()), finished);
+    }
+
+    @Test
+    void testExecuteTestClass_NonExistentClass() {
+        assertTrue(SlicerUtil.executeTestClass("com.nonexistent.Class").isEmpty());
+    }
+
+    @Test
+    void testExecuteTestsConcurrently_RecordsEveryTestInItsOwnContext() {
+        CoverageTracker.setMode(CoverageMode.PER_THREAD);
+        try {
+            Map<String, String> contexts = SlicerUtil.executeTestsConcurrently(
+                    "de.uni_passau.fim.se2.sa.examples.GCD", List.of());
+
+            assertTrue(contexts.keySet().containsAll(Set.of("testGcd1", "testGcd2")));
+            assertEquals(contexts.size(), new HashSet<>(contexts.values()).size());
+            assertTrue(contexts.get("testGcd2").contains("testGcd2"));
+        } finally {
+            CoverageTracker.setMode(CoverageMode.SHARED);
+            CoverageTracker.reset();
+        }
+    }
+
+    @Test
+    void testExecuteTestsConcurrently_SelectsTestCases() {
+        CoverageTracker.setMode(CoverageMode.PER_THREAD);
+        try {
+            Map<String, String> contexts = SlicerUtil.executeTestsConcurrently(
+                    "de.uni_passau.fim.se2.sa.examples.GCD", List.of("testGcd1"));
+
+            assertEquals(Set.of("testGcd1"), contexts.keySet());
+        } finally {
+            CoverageTracker.setMode(CoverageMode.SHARED);
+            CoverageTracker.reset();
+        }
+    }
+
+    @Test
+    void testExecuteTestsConcurrently_RequiresPerThreadCoverage() {
+        assertThrows(IllegalStateException.class, () -> SlicerUtil.executeTestsConcurrently(
+                "de.uni_passau.fim.se2.sa.examples.GCD", List.of()));
+    }
+
+    @Test
+    void testAggregateSlices_SlicesEveryTest() throws Exception {
+        ClassNode classNode = new ClassNode();
+        new ClassReader("de.uni_passau.fim.se2.sa.examples.GCD").accept(classNode, 0);
+        MethodNode methodNode = classNode.methods.stream()
+                .filter(m -> "gcd".equals(m.name))
+                .findFirst()
+                .orElseThrow();
+        ProgramDependenceGraph pdg = new ProgramDependenceGraph(classNode, methodNode);
+        Node criterion = pdg.computeResult().getNodes().stream()
+                .filter(n -> n.getLineNumber() > 0)
+                .reduce((first, second) -> second)
+                .orElseThrow();
+
+        SliceAggregation aggregation =
+                SlicerUtil.aggregateSlices("de.uni_passau.fim.se2.sa.examples.GCD", pdg, criterion);
+
+        // Without instrumentation, no coverage is recorded and every test yields the static slice.
+        assertTrue(aggregation.getTests().containsAll(Set.of("testGcd1", "testGcd2")));
+        assertEquals(pdg.backwardSlice(criterion), aggregation.getIntersection());
+        assertEquals(aggregation.getTests().size(), aggregation.getFrequency(criterion));
+    }
+
+    @Test
+    void testSimplify_UsesCoverageSnapshot() {
+        ProgramDependenceGraph mockPDG = mock(ProgramDependenceGraph.class);
+        ProgramGraph mockFullGraph = mock(ProgramGraph.class);
+        ClassNode classNode = new ClassNode();
+        classNode.name = "test/Snapshot";
+        MethodNode methodNode = new MethodNode();
+        methodNode.name = "run";
+        methodNode.desc = "()V";
+
+        Node node1 = mock(Node.class);
+        Node node2 = mock(Node.class);
+        when(node1.getLineNumber()).thenReturn(10);
+        when(node2.getLineNumber()).thenReturn(20);
+        when(mockPDG.getClassNode()).thenReturn(classNode);
+        when(mockPDG.getMethodNode()).thenReturn(methodNode);
+        when(mockPDG.computeResult()).thenReturn(mockFullGraph);
+        when(mockFullGraph.getNodes()).thenReturn(Arrays.asList(node1, node2));
+
+        CoverageTracker.reset();
+        int methodId = CoverageTracker.registerMethod("test/Snapshot", "run", "()V");
+        CoverageTracker.registerProbes(methodId, new int[] {10, 20});
+        CoverageTracker.hitProbe(methodId, 0);
+        CoverageSnapshot snapshot = CoverageTracker.snapshot();
+        // Coverage recorded after the snapshot, e.g., by the next test, is not part of it.
+        CoverageTracker.reset();
+        CoverageTracker.hitProbe(methodId, 1);
+
+        try {
+            ProgramDependenceGraph result = SlicerUtil.simplify(mockPDG, snapshot);
+
+            assertEquals(Set.of(node1), new HashSet<>(result.computeResult().getNodes()));
+        } finally {
+            CoverageTracker.reset();
+        }
+    }
+
     void tearDown() {
         // Restore original System.err
         System.setErr(originalErr);
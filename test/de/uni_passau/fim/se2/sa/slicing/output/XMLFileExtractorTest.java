@@ -0,0 +1,72 @@
+package de.uni_passau.fim.se2.sa.slicing.output;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import de.uni_passau.fim.se2.sa.slicing.cfg.Node;
+import de.uni_passau.fim.se2.sa.slicing.graph.ProgramDependenceGraph;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+class XMLFileExtractorTest {
+
+    private Set<Node> slice;
+    private String expected;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ClassReader gcdReader = new ClassReader("de.uni_passau.fim.se2.sa.examples.GCD");
+        ClassNode gcdClassNode = new ClassNode();
+        gcdReader.accept(gcdClassNode, 0);
+        MethodNode gcdMethodNode = gcdClassNode.methods.stream()
+                .filter(m -> "gcd".equals(m.name) && "(II)I".equals(m.desc))
+                .findFirst()
+                .orElseThrow();
+        ProgramDependenceGraph pdg = new ProgramDependenceGraph(gcdClassNode, gcdMethodNode);
+        // The criterion of expected-results/GCD.xml: x = y in line 9
+        Node criterion = pdg.computeResult().getNodes().stream()
+                .filter(n -> n.getLineNumber() == 9
+                        && n.getInstruction() instanceof VarInsnNode store
+                        && store.getOpcode() == Opcodes.ISTORE
+                        && store.var == 1)
+                .findFirst()
+                .orElseThrow();
+        slice = pdg.backwardSlice(criterion);
+        expected = Files.readString(Path.of("expected-results", "GCD.xml"));
+    }
+
+    @Test
+    void testOutputWithoutCountsMatchesExpectedResult() {
+        assertEquals(expected, new XMLFileExtractor(slice).extract());
+        assertEquals(expected, new XMLFileExtractor(slice, Map.of(), 1).extract());
+    }
+
+    @Test
+    void testHitsAndSamplingAreEmitted() {
+        Map<Node, Integer> hitCounts = new HashMap<>();
+        for (Node node : slice) {
+            if (node.getID().equals("24")) {
+                hitCounts.put(node, 7);
+            }
+        }
+
+        String report = new XMLFileExtractor(slice, hitCounts, 16).extract();
+
+        assertTrue(report.contains("<report sampling=\"16\">"), report);
+        assertTrue(report.contains("<line nr=\"9\" id=\"24\" instruction=\"ISTORE 1\" hits=\"7\"/>"), report);
+        assertEquals(1, report.split("hits=", -1).length - 1, "Only counted lines get a hits attribute");
+        // Apart from the attributes, the report is unchanged.
+        assertEquals(expected, report.replace(" sampling=\"16\"", "").replace(" hits=\"7\"", ""));
+    }
+}